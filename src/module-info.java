@@ -10,6 +10,7 @@
  */
 module squire {
 	exports squire.circuit;
+	exports squire.circuit.components;
 	exports squire.circuit.gates;
 	exports squire.complex;
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package squire.circuit;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples indices from a fixed discrete distribution in constant time, using
+ * Vose's alias method. The table is built once in linear time from the weights
+ * of the outcomes; each draw then picks a column uniformly and either keeps it
+ * or takes its alias, using a single random number.
+ *
+ * @see QuantumCircuitSimulator#run(int)
+ */
+final class AliasTable {
+
+	/**
+	 * The probability of keeping each column rather than taking its alias.
+	 */
+	private final double[] keep;
+	private final int[] alias;
+
+	/**
+	 * Builds the table for the distribution given by some non-negative weights,
+	 * which need not sum to 1.
+	 *
+	 * @param weights The weight of each outcome.
+	 * @throws IllegalArgumentException If no weight is positive.
+	 */
+	AliasTable(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		for (double w : weights) {
+			total += w;
+		}
+		if (!(total > 0)) {
+			throw new IllegalArgumentException("Cannot sample from weights that sum to " + total);
+		}
+
+		this.keep = new double[n];
+		this.alias = new int[n];
+		// Split the scaled weights into those below and above the mean, kept as
+		// two stacks at either end of one array.
+		int[] stack = new int[n];
+		int small = 0;
+		int large = n;
+		for (int i = 0; i < n; i++) {
+			this.keep[i] = weights[i] * n / total;
+			if (this.keep[i] < 1) {
+				stack[small++] = i;
+			} else {
+				stack[--large] = i;
+			}
+		}
+
+		// Fill each small column with its share of a large one.
+		while (small > 0 && large < n) {
+			int s = stack[--small];
+			int l = stack[large];
+			this.alias[s] = l;
+			this.keep[l] -= 1 - this.keep[s];
+			if (this.keep[l] < 1) {
+				large++;
+				stack[small++] = l;
+			}
+		}
+
+		// Whatever is left is full up to rounding.
+		while (small > 0) {
+			int s = stack[--small];
+			this.keep[s] = 1;
+			this.alias[s] = s;
+		}
+		for (int i = large; i < n; i++) {
+			this.keep[stack[i]] = 1;
+			this.alias[stack[i]] = stack[i];
+		}
+	}
+
+	/**
+	 * Draws an outcome. The table is never changed after it is built, so any
+	 * number of threads may draw from it at once, each with its own random
+	 * source.
+	 *
+	 * @param random The random source.
+	 * @return The index of the outcome.
+	 */
+	int sample(RandomGenerator random) {
+		double u = random.nextDouble() * this.keep.length;
+		int column = (int) u;
+		return u - column < this.keep[column] ? column : this.alias[column];
+	}
+
+	/**
+	 * Gets the number of outcomes.
+	 *
+	 * @return The number of outcomes.
+	 */
+	int size() {
+		return this.keep.length;
+	}
+}
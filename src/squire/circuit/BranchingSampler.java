@@ -0,0 +1,336 @@
+package squire.circuit;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs many shots of a circuit with mid-circuit measurements and resets
+ * without simulating the circuit once per shot. The circuit is simulated up to
+ * its first measurement once; there the state branches into one collapsed
+ * state per outcome, and the shots are split among the branches by a
+ * multinomial draw with the outcome probabilities. Each branch then continues
+ * with only its own shots, and branches that receive no shots are never
+ * simulated. At the end of the circuit, the shots of a branch are drawn from
+ * its final state with an {@link AliasTable} and handed on as packed outcomes,
+ * so the shots are never held one array each.
+ *
+ * The branches are explored depth first, so at most two states are held per
+ * measurement passed, however many branches there are. When outcomes are
+ * nearly deterministic, most branches receive no shots, and a run of many
+ * shots costs close to a single simulation.
+ *
+ * Postselections keep only the runs in which they succeed, so a run's chance of
+ * taking a branch depends on the postselections that follow it. Before any
+ * shots are split, every branch is followed up to the last postselection of
+ * the circuit to find the probability that its postselections succeed. The
+ * shots are then split in proportion to the probability of each outcome times
+ * the acceptance of its branch, and branches whose postselections cannot
+ * succeed receive none.
+ *
+ * @see QuantumCircuitSimulator#run(int)
+ */
+final class BranchingSampler {
+
+	private final int numQubits;
+	private final List<? extends CircuitModifier> circuit;
+	private final Random random;
+	private final int shots;
+	/**
+	 * The position of the last postselection in the circuit, or -1 if there is
+	 * none.
+	 */
+	private final int lastPostselection;
+	private ShotCounts.CountConsumer outcomes;
+	private double acceptance = 1;
+
+	/**
+	 * Prepares to run the given number of shots of a circuit, starting from the
+	 * zero state.
+	 *
+	 * @param numQubits The number of qubits in the circuit.
+	 * @param circuit   The circuit modifiers, which must be supported.
+	 * @param shots     The number of shots.
+	 * @param random    The random source.
+	 */
+	BranchingSampler(int numQubits, List<? extends CircuitModifier> circuit, int shots, Random random) {
+		this.numQubits = numQubits;
+		this.circuit = circuit;
+		this.random = random;
+		this.shots = shots;
+		int last = -1;
+		for (int i = 0; i < circuit.size(); i++) {
+			if (circuit.get(i) instanceof Postselection) {
+				last = i;
+			}
+		}
+		this.lastPostselection = last;
+	}
+
+	/**
+	 * Checks whether every modifier of a circuit is either unitary or a
+	 * measurement, reset or postselection that the sampler can handle.
+	 *
+	 * @param circuit The circuit modifiers.
+	 * @return True if the circuit can be sampled by branching.
+	 */
+	static boolean supports(List<? extends CircuitModifier> circuit) {
+		for (CircuitModifier cm : circuit) {
+			if (!(BranchingSampler.branches(cm) || cm instanceof Postselection
+					|| QuantumCircuitSimulator.isUnitary(cm))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a circuit has a postselection after a measurement or reset,
+	 * which makes the outcome of the measurement depend on the postselection.
+	 *
+	 * @param circuit The circuit modifiers.
+	 * @return True if a postselection follows a measurement or reset.
+	 */
+	static boolean conditionsBranches(List<? extends CircuitModifier> circuit) {
+		boolean branched = false;
+		for (CircuitModifier cm : circuit) {
+			if (BranchingSampler.branches(cm)) {
+				branched = true;
+			} else if (cm instanceof Postselection && branched) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs the shots and measures every qubit at the end of each.
+	 *
+	 * @param outcomes Receives the measured outcomes, packed with bit q holding
+	 *                 qubit q, together with the number of shots that had each.
+	 * @throws IllegalStateException If the postselections cannot succeed.
+	 */
+	void run(ShotCounts.CountConsumer outcomes) {
+		this.outcomes = outcomes;
+		Weight root = null;
+		if (this.lastPostselection >= 0) {
+			root = this.weigh(StateVector.createZeroState(this.numQubits), 0);
+			if (!(root.acceptance > 0)) {
+				throw new IllegalStateException("The postselections of the circuit cannot succeed");
+			}
+			this.acceptance = root.acceptance;
+		}
+		if (this.shots > 0) {
+			this.explore(StateVector.createZeroState(this.numQubits), 0, this.shots, root);
+		}
+	}
+
+	/**
+	 * Gets the probability that the postselections of the circuit succeed, once
+	 * the shots have been run.
+	 *
+	 * @return The acceptance probability.
+	 */
+	double acceptance() {
+		return this.acceptance;
+	}
+
+	/**
+	 * Continues a branch from the given position in the circuit with the given
+	 * number of shots. The state belongs to this branch and may be changed.
+	 *
+	 * @param weight The acceptances of the branches ahead, as found by
+	 *               {@link #weigh(StateVector, int)}, or null if no
+	 *               postselection follows.
+	 */
+	private void explore(StateVector state, int position, int shots, Weight weight) {
+		// Apply the gates up to the next measurement.
+		while (position < this.circuit.size()) {
+			CircuitModifier cm = this.circuit.get(position);
+			if (BranchingSampler.branches(cm)) {
+				break;
+			}
+			state = cm.apply(state);
+			position++;
+		}
+		if (position == this.circuit.size()) {
+			this.sampleLeaf(state, shots);
+			return;
+		}
+
+		CircuitModifier cm = this.circuit.get(position);
+		int[] qubits = BranchingSampler.qubitsOf(cm);
+		Weight[] next = weight == null ? null : weight.branches;
+
+		// A single shot needs no branching, unless postselections ahead change the
+		// chances of the outcomes.
+		if (shots == 1 && next == null) {
+			this.explore(cm.apply(state), position + 1, 1, null);
+			return;
+		}
+
+		// Weigh each outcome by its probability and, if postselections follow, the
+		// probability that they succeed on its branch.
+		double[] chances = state.marginal(qubits);
+		if (next != null) {
+			double total = 0;
+			for (int k = 0; k < chances.length; k++) {
+				chances[k] *= next[k] == null ? 0 : next[k].acceptance;
+				total += chances[k];
+			}
+			for (int k = 0; k < chances.length; k++) {
+				chances[k] /= total;
+			}
+		}
+
+		// Split the shots among the outcomes, one conditional binomial at a time.
+		// The last possible outcome takes whatever is left, so that rounding never
+		// sends shots to an impossible outcome.
+		int possible = chances.length - 1;
+		while (possible > 0 && !(chances[possible] > 0)) {
+			possible--;
+		}
+		int[] counts = new int[chances.length];
+		int remaining = shots;
+		double rest = 1;
+		for (int k = 0; k <= possible && remaining > 0; k++) {
+			if (k == possible) {
+				counts[k] = remaining;
+			} else if (chances[k] > 0) {
+				counts[k] = this.binomial(remaining, Math.min(1, chances[k] / rest));
+			}
+			remaining -= counts[k];
+			rest -= chances[k];
+		}
+
+		// Explore each outcome that received shots. Once the last branch has been
+		// split off, this branch's state is dropped so it can be reclaimed.
+		int last = -1;
+		for (int k = 0; k < counts.length; k++) {
+			if (counts[k] > 0) {
+				last = k;
+			}
+		}
+		for (int k = 0; k < counts.length; k++) {
+			if (counts[k] == 0) {
+				continue;
+			}
+			StateVector branch = state.branch(qubits, k);
+			if (k == last) {
+				state = null;
+			}
+			if (cm instanceof Reset && k == 1) {
+				branch.moveToZero(qubits[0]);
+			}
+			this.explore(branch, position + 1, counts[k], next == null ? null : next[k]);
+		}
+	}
+
+	/**
+	 * Follows every branch from the given position in the circuit up to the last
+	 * postselection, and finds the probability that the postselections along
+	 * the way succeed. Outcomes too unlikely to tell apart from zero are not
+	 * followed, and postselections that {@link StateVector#chanceOf(int, boolean)}
+	 * finds impossible give an acceptance of zero; others, however unlikely,
+	 * keep their probability. The state belongs to this branch and may be
+	 * changed.
+	 */
+	private Weight weigh(StateVector state, int position) {
+		double accepted = 1;
+		while (position <= this.lastPostselection) {
+			CircuitModifier cm = this.circuit.get(position);
+			if (cm instanceof Postselection postselection) {
+				double chance = state.chanceOf(postselection.getTarget(), postselection.getValue());
+				if (!(chance > 0)) {
+					return new Weight(0, null);
+				}
+				state = postselection.apply(state);
+				accepted *= chance;
+			} else if (BranchingSampler.branches(cm)) {
+				int[] qubits = BranchingSampler.qubitsOf(cm);
+				double[] chances = state.marginal(qubits);
+				Weight[] branches = new Weight[chances.length];
+				double total = 0;
+				for (int k = 0; k < chances.length; k++) {
+					if (chances[k] < StateVector.ZERO_CHANCE) {
+						continue;
+					}
+					StateVector branch = state.branch(qubits, k);
+					if (cm instanceof Reset && k == 1) {
+						branch.moveToZero(qubits[0]);
+					}
+					branches[k] = this.weigh(branch, position + 1);
+					total += chances[k] * branches[k].acceptance;
+				}
+				return new Weight(accepted * total, branches);
+			} else {
+				state = cm.apply(state);
+			}
+			position++;
+		}
+		return new Weight(accepted, null);
+	}
+
+	/**
+	 * Checks whether a modifier is a measurement or reset, on whose outcome the
+	 * sampler branches.
+	 */
+	private static boolean branches(CircuitModifier cm) {
+		return cm instanceof Measurement || cm instanceof JointMeasurement || cm instanceof Reset;
+	}
+
+	/**
+	 * Returns the qubits a measurement or reset reads.
+	 */
+	private static int[] qubitsOf(CircuitModifier cm) {
+		if (cm instanceof Measurement measurement) {
+			return new int[] { measurement.getTarget() };
+		}
+		if (cm instanceof Reset reset) {
+			return new int[] { reset.getTarget() };
+		}
+		return ((JointMeasurement) cm).getTargets();
+	}
+
+	/**
+	 * Draws the final read-out of every shot of a branch that has reached the end
+	 * of the circuit.
+	 */
+	private void sampleLeaf(StateVector state, int shots) {
+		if (shots == 1) {
+			this.outcomes.accept(state.sampleIndex(this.random.nextDouble()), 1);
+			return;
+		}
+		AliasTable table = new AliasTable(state.probabilities());
+		for (int s = 0; s < shots; s++) {
+			this.outcomes.accept(table.sample(this.random), 1);
+		}
+	}
+
+	/**
+	 * Draws the number of successes in n independent trials that each succeed
+	 * with probability p, by counting the trials. The cost is linear in the
+	 * number of shots, which the shots pay for anyway when they are read out.
+	 */
+	private int binomial(int n, double p) {
+		int successes = 0;
+		for (int i = 0; i < n; i++) {
+			if (this.random.nextDouble() < p) {
+				successes++;
+			}
+		}
+		return successes;
+	}
+
+	/**
+	 * The probability that the postselections ahead of a point in the circuit
+	 * succeed, and the same for each outcome of the measurement or reset that
+	 * follows it, if a postselection follows that too.
+	 *
+	 * @param acceptance The probability that the postselections succeed.
+	 * @param branches   The weight of each outcome of the next measurement or
+	 *                   reset, null for an impossible outcome, or null if no
+	 *                   postselection follows it.
+	 */
+	private record Weight(double acceptance, Weight[] branches) {
+	}
+}
@@ -0,0 +1,432 @@
+package squire.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The {@code CircuitDag} class is a dependency graph view of a circuit. Each
+ * circuit modifier is a node, and a node depends on the earlier nodes it must
+ * follow: those on a shared qubit that it does not commute with. The graph is
+ * built incrementally as modifiers are added, so the layer of each node, the
+ * depth of the circuit and its critical path are always up to date.
+ *
+ * Dependencies are tracked per qubit. Every qubit's wire is split into groups
+ * of consecutive gates that act on it in the same way: all diagonal on it, all
+ * commuting with a Pauli-X on it, as a CNOT does on its target, or a single
+ * gate of any other kind. Two gates that act in the same way on every qubit
+ * they share commute, so the gates of a group are free to be reordered. Each
+ * gate is classified once per qubit, so adding it takes constant time per
+ * qubit. Modifiers other than quantum gates, such as measurements, act as
+ * barriers on every qubit.
+ *
+ * Every gate of a group depends on every gate of the group before it on the
+ * same wire. Rather than linking each pair, the two groups are linked through
+ * a barrier between them, so the graph holds one link per gate and group
+ * instead of one per pair of gates.
+ *
+ * The graph can produce a schedule, a topological order of its nodes that
+ * keeps gates on the same qubits next to each other, and a fused version of
+ * that schedule in which neighbouring gates on at most two qubits are
+ * multiplied into one.
+ *
+ * @see QuantumCircuitSimulator#getDag()
+ * @see Commutation
+ */
+public final class CircuitDag {
+
+	/**
+	 * The kind of a group of gates that are all diagonal on its qubit.
+	 */
+	private static final int DIAGONAL = 0;
+	/**
+	 * The kind of a group of gates that all commute with a Pauli-X on its qubit.
+	 */
+	private static final int FLIP = 1;
+	/**
+	 * The kind of a group holding a single gate or modifier of any other kind.
+	 */
+	private static final int OTHER = 2;
+
+	private final int numQubits;
+	private final List<Node> nodes = new ArrayList<>();
+	/**
+	 * The barriers between consecutive groups, over every wire.
+	 */
+	private final List<Barrier> barriers = new ArrayList<>();
+	/**
+	 * For every qubit, the most recent group of gates on its wire.
+	 */
+	private final List<Group> groups = new ArrayList<>();
+	private int deepest = -1;
+
+	/**
+	 * Constructs an empty dependency graph for a circuit on the given number of
+	 * qubits.
+	 *
+	 * @param numQubits The number of qubits in the circuit.
+	 */
+	public CircuitDag(int numQubits) {
+		this.numQubits = numQubits;
+		for (int q = 0; q < numQubits; q++) {
+			this.groups.add(new Group(OTHER, null));
+		}
+	}
+
+	/**
+	 * Builds the dependency graph of a sequence of circuit modifiers.
+	 *
+	 * @param numQubits The number of qubits in the circuit.
+	 * @param circuit   The circuit modifiers, in the order they are applied.
+	 * @return The dependency graph.
+	 */
+	public static CircuitDag of(int numQubits, List<? extends CircuitModifier> circuit) {
+		CircuitDag dag = new CircuitDag(numQubits);
+		for (CircuitModifier modifier : circuit) {
+			dag.add(modifier);
+		}
+		return dag;
+	}
+
+	/**
+	 * Adds a circuit modifier after every modifier added so far, updating the
+	 * dependencies, layers and critical path.
+	 *
+	 * @param modifier The circuit modifier to add.
+	 * @return The index of the new node.
+	 */
+	public int add(CircuitModifier modifier) {
+		int index = this.nodes.size();
+		int[] qubits = this.qubitsOf(modifier);
+		Node node = new Node(modifier, qubits);
+
+		for (int q : qubits) {
+			Group group = this.groups.get(q);
+			boolean diagonal = modifier instanceof QuantumGate gate && Commutation.isDiagonalOn(gate, q);
+			boolean flip = modifier instanceof QuantumGate gate && Commutation.commutesWithXOn(gate, q);
+			if (!(group.members.isEmpty() || group.kind == DIAGONAL && diagonal || group.kind == FLIP && flip)) {
+				// Start a new group after a barrier that closes the current one.
+				group = new Group(diagonal ? DIAGONAL : flip ? FLIP : OTHER, this.close(group));
+				this.groups.set(q, group);
+			} else if (group.members.isEmpty()) {
+				group.kind = diagonal ? DIAGONAL : flip ? FLIP : OTHER;
+			}
+			group.members.add(index);
+			if (group.entry != null) {
+				group.entry.after.add(index);
+				node.entries.add(group.entry);
+				if (group.entry.layer + 1 > node.layer) {
+					node.layer = group.entry.layer + 1;
+					node.parent = group.entry.parent;
+				}
+			}
+		}
+
+		this.nodes.add(node);
+		if (this.deepest < 0 || node.layer > this.nodes.get(this.deepest).layer) {
+			this.deepest = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Closes a group of gates with a barrier, which every gate of the next group
+	 * on the wire will depend on.
+	 */
+	private Barrier close(Group group) {
+		Barrier barrier = new Barrier(this.barriers.size(), group.members);
+		for (int member : group.members) {
+			Node node = this.nodes.get(member);
+			node.exits.add(barrier);
+			if (node.layer > barrier.layer) {
+				barrier.layer = node.layer;
+				barrier.parent = member;
+			}
+		}
+		this.barriers.add(barrier);
+		return barrier;
+	}
+
+	/**
+	 * Returns the qubits a modifier acts on: the targets of a gate, or every
+	 * qubit for anything else.
+	 */
+	private int[] qubitsOf(CircuitModifier modifier) {
+		if (modifier instanceof QuantumGate gate) {
+			return gate.getTargets();
+		}
+		int[] all = new int[this.numQubits];
+		Arrays.setAll(all, q -> q);
+		return all;
+	}
+
+	/**
+	 * Gets the number of nodes in the graph.
+	 *
+	 * @return The number of circuit modifiers added.
+	 */
+	public int size() {
+		return this.nodes.size();
+	}
+
+	/**
+	 * Gets the circuit modifier of a node.
+	 *
+	 * @param index The index of the node, in the order the modifiers were added.
+	 * @return The circuit modifier.
+	 */
+	public CircuitModifier get(int index) {
+		return this.nodes.get(index).modifier;
+	}
+
+	/**
+	 * Gets the nodes that a node directly depends on.
+	 *
+	 * @param index The index of the node.
+	 * @return The indices of its predecessors, in increasing order.
+	 */
+	public int[] predecessors(int index) {
+		TreeSet<Integer> predecessors = new TreeSet<>();
+		for (Barrier barrier : this.nodes.get(index).entries) {
+			predecessors.addAll(barrier.before);
+		}
+		return predecessors.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Gets the nodes that directly depend on a node.
+	 *
+	 * @param index The index of the node.
+	 * @return The indices of its successors, in increasing order.
+	 */
+	public int[] successors(int index) {
+		TreeSet<Integer> successors = new TreeSet<>();
+		for (Barrier barrier : this.nodes.get(index).exits) {
+			successors.addAll(barrier.after);
+		}
+		return successors.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Gets the layer of a node, the length of the longest chain of dependencies
+	 * that ends at it. Nodes without predecessors are in layer 0.
+	 *
+	 * @param index The index of the node.
+	 * @return The layer of the node.
+	 */
+	public int layer(int index) {
+		return this.nodes.get(index).layer;
+	}
+
+	/**
+	 * Gets the depth of the circuit, the number of layers it needs when every
+	 * modifier runs as early as its dependencies allow.
+	 *
+	 * @return The depth of the circuit.
+	 */
+	public int depth() {
+		return this.deepest < 0 ? 0 : this.nodes.get(this.deepest).layer + 1;
+	}
+
+	/**
+	 * Groups the circuit modifiers by layer. The modifiers within a layer do not
+	 * depend on each other.
+	 *
+	 * @return The modifiers of each layer, in the order they were added.
+	 */
+	public List<List<CircuitModifier>> layers() {
+		List<List<CircuitModifier>> layers = new ArrayList<>();
+		for (int l = 0; l < this.depth(); l++) {
+			layers.add(new ArrayList<>());
+		}
+		for (Node node : this.nodes) {
+			layers.get(node.layer).add(node.modifier);
+		}
+		return layers;
+	}
+
+	/**
+	 * Gets a longest chain of dependent circuit modifiers, whose length is the
+	 * depth of the circuit.
+	 *
+	 * @return The modifiers of the critical path, in the order they are applied.
+	 */
+	public List<CircuitModifier> criticalPath() {
+		List<CircuitModifier> path = new ArrayList<>();
+		for (int i = this.deepest; i >= 0; i = this.nodes.get(i).parent) {
+			path.add(this.nodes.get(i).modifier);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Orders the circuit modifiers so that every modifier follows its
+	 * dependencies, preferring to keep gates on the same qubits together. After
+	 * each modifier, the next one is chosen among those whose dependencies are
+	 * met: first a gate on a subset of the same qubits, which can be fused with
+	 * it, then a gate sharing a qubit with it, and otherwise the earliest added.
+	 *
+	 * @return The circuit modifiers in the scheduled order.
+	 */
+	public List<CircuitModifier> schedule() {
+		// A node waits for the barriers before it, and a barrier for the nodes
+		// before it.
+		int[] waiting = new int[this.nodes.size()];
+		int[] closing = new int[this.barriers.size()];
+		for (Barrier barrier : this.barriers) {
+			closing[barrier.index] = barrier.before.size();
+		}
+		TreeSet<Integer> ready = new TreeSet<>();
+		for (int i = 0; i < waiting.length; i++) {
+			waiting[i] = this.nodes.get(i).entries.size();
+			if (waiting[i] == 0) {
+				ready.add(i);
+			}
+		}
+
+		List<CircuitModifier> order = new ArrayList<>(waiting.length);
+		long last = 0;
+		while (!ready.isEmpty()) {
+			int next = ready.first();
+			int rank = 0;
+			for (int i : ready) {
+				long mask = this.nodes.get(i).mask();
+				int r = (mask & ~last) == 0 ? 2 : (mask & last) != 0 ? 1 : 0;
+				if (r > rank) {
+					rank = r;
+					next = i;
+					if (r == 2) {
+						break;
+					}
+				}
+			}
+
+			ready.remove(next);
+			Node node = this.nodes.get(next);
+			order.add(node.modifier);
+			last = node.mask();
+			for (Barrier barrier : node.exits) {
+				if (--closing[barrier.index] == 0) {
+					for (int s : barrier.after) {
+						if (--waiting[s] == 0) {
+							ready.add(s);
+						}
+					}
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Schedules the circuit and then fuses each run of neighbouring gates that
+	 * together act on at most two qubits into a single gate, so that the run is
+	 * applied to the state in one pass.
+	 *
+	 * @return The fused circuit modifiers, in the order they are applied.
+	 */
+	public List<CircuitModifier> fuse() {
+		List<CircuitModifier> fused = new ArrayList<>();
+		QuantumGate pending = null;
+		for (CircuitModifier modifier : this.schedule()) {
+			if (modifier instanceof QuantumGate gate) {
+				QuantumGate merged = pending == null ? null : GateFusion.fuse(pending, gate);
+				if (merged != null) {
+					pending = merged;
+					continue;
+				}
+				if (pending != null) {
+					fused.add(pending);
+				}
+				pending = gate;
+			} else {
+				if (pending != null) {
+					fused.add(pending);
+					pending = null;
+				}
+				fused.add(modifier);
+			}
+		}
+		if (pending != null) {
+			fused.add(pending);
+		}
+		return fused;
+	}
+
+	/**
+	 * A circuit modifier together with its dependencies.
+	 */
+	private static final class Node {
+		private final CircuitModifier modifier;
+		private final int[] qubits;
+		/**
+		 * The barriers this node follows, at most one per qubit.
+		 */
+		private final List<Barrier> entries = new ArrayList<>();
+		/**
+		 * The barriers that close the groups this node belongs to.
+		 */
+		private final List<Barrier> exits = new ArrayList<>();
+		private int layer;
+		/**
+		 * The predecessor on a longest chain ending at this node, or -1.
+		 */
+		private int parent = -1;
+
+		private Node(CircuitModifier modifier, int[] qubits) {
+			this.modifier = modifier;
+			this.qubits = qubits;
+		}
+
+		private long mask() {
+			long mask = 0;
+			for (int q : this.qubits) {
+				mask |= 1L << q;
+			}
+			return mask;
+		}
+	}
+
+	/**
+	 * The most recent run of gates on a wire that act on it in the same way.
+	 */
+	private static final class Group {
+		private int kind;
+		/**
+		 * The barrier before the group, or null for the first group on a wire.
+		 */
+		private final Barrier entry;
+		private final List<Integer> members = new ArrayList<>();
+
+		private Group(int kind, Barrier entry) {
+			this.kind = kind;
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * The link between two consecutive groups on a wire: every node after it
+	 * depends on every node before it.
+	 */
+	private static final class Barrier {
+		private final int index;
+		private final List<Integer> before;
+		private final List<Integer> after = new ArrayList<>();
+		/**
+		 * The deepest layer of the nodes before the barrier.
+		 */
+		private int layer = -1;
+		/**
+		 * The node before the barrier in the deepest layer.
+		 */
+		private int parent = -1;
+
+		private Barrier(int index, List<Integer> before) {
+			this.index = index;
+			this.before = before;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package squire.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import squire.circuit.gates.CNOTGate;
+import squire.circuit.gates.CPGate;
+import squire.circuit.gates.CZGate;
+import squire.circuit.gates.HGate;
+import squire.circuit.gates.IGate;
+import squire.circuit.gates.PGate;
+import squire.circuit.gates.RXGate;
+import squire.circuit.gates.RYGate;
+import squire.circuit.gates.RZGate;
+import squire.circuit.gates.SGate;
+import squire.circuit.gates.SwapGate;
+import squire.circuit.gates.TGate;
+import squire.circuit.gates.XGate;
+import squire.circuit.gates.YGate;
+import squire.circuit.gates.ZGate;
+
+/**
+ * The {@code CircuitOptimizer} class simplifies a sequence of circuit
+ * modifiers at the level of individual gates, without multiplying any
+ * matrices. It removes identity gates, cancels adjacent pairs of self-inverse
+ * gates (H, X, Y, Z, CNOT, CZ and SWAP), and merges consecutive rotations
+ * about the same axis (RX, RY and RZ) and phase gates (Z, S, T, P and CP) into
+ * a single gate, dropping the result if its angle is a multiple of a full turn.
+ *
+ * Each gate is compared with the earlier gates on its qubits, newest first,
+ * looking past any gate it is known to commute with, such as a diagonal gate
+ * on the control of a CNOT. Modifiers other than quantum gates, such as
+ * measurements, are never moved and nothing is moved past them.
+ *
+ * @see QuantumCircuitSimulator#optimize()
+ * @see Commutation
+ */
+public final class CircuitOptimizer {
+
+	/**
+	 * The tolerance within which an angle is treated as a whole number of turns.
+	 */
+	private static final double ANGLE_TOLERANCE = 1e-12;
+
+	/**
+	 * Marks a pair of gates whose product is the identity.
+	 */
+	private static final QuantumGate CANCELLED = new IGate(1, 0);
+
+	private CircuitOptimizer() {
+	}
+
+	/**
+	 * Optimizes a sequence of circuit modifiers, returning a new sequence that has
+	 * the same effect on every state. The input is not modified.
+	 *
+	 * @param circuit The circuit modifiers, in the order they are applied.
+	 * @return The optimized circuit modifiers, in the order they are applied.
+	 */
+	public static List<CircuitModifier> optimize(List<? extends CircuitModifier> circuit) {
+		int width = 0;
+		for (CircuitModifier modifier : circuit) {
+			width = Math.max(width, modifier.numQubits());
+		}
+
+		// The surviving modifiers, with null marking removed ones, and for every
+		// qubit the positions in that list of the modifiers that touch it.
+		List<CircuitModifier> out = new ArrayList<>(circuit.size());
+		List<List<Integer>> wires = new ArrayList<>(width);
+		for (int q = 0; q < width; q++) {
+			wires.add(new ArrayList<>());
+		}
+
+		for (CircuitModifier modifier : circuit) {
+			if (!(modifier instanceof QuantumGate gate)) {
+				// Anything else is a barrier on every qubit.
+				for (List<Integer> wire : wires) {
+					wire.add(out.size());
+				}
+				out.add(modifier);
+				continue;
+			}
+			if (gate instanceof IGate) {
+				continue;
+			}
+			if (!absorb(gate, out, wires)) {
+				for (int target : gate.getTargets()) {
+					wires.get(target).add(out.size());
+				}
+				out.add(gate);
+			}
+		}
+
+		List<CircuitModifier> result = new ArrayList<>(out.size());
+		for (CircuitModifier modifier : out) {
+			if (modifier != null) {
+				result.add(modifier);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tries to merge a gate into an earlier gate on the same qubits, walking back
+	 * along the gate's wires past the gates it commutes with. Returns true if the
+	 * gate was absorbed, in which case it must not be added to the circuit.
+	 */
+	private static boolean absorb(QuantumGate gate, List<CircuitModifier> out, List<List<Integer>> wires) {
+		int[] targets = gate.getTargets();
+		// The next position to look at on each of the gate's wires.
+		int[] cursor = new int[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			cursor[i] = wires.get(targets[i]).size() - 1;
+		}
+
+		while (true) {
+			// Find the most recent surviving modifier on any of the gate's wires.
+			int position = -1;
+			for (int i = 0; i < targets.length; i++) {
+				List<Integer> wire = wires.get(targets[i]);
+				while (cursor[i] >= 0 && out.get(wire.get(cursor[i])) == null) {
+					cursor[i]--;
+				}
+				if (cursor[i] >= 0) {
+					position = Math.max(position, wire.get(cursor[i]));
+				}
+			}
+			if (position < 0 || !(out.get(position) instanceof QuantumGate earlier)) {
+				return false;
+			}
+
+			QuantumGate merged = merge(earlier, gate);
+			if (merged == CANCELLED) {
+				out.set(position, null);
+				return true;
+			}
+			if (merged != null) {
+				out.set(position, merged);
+				return true;
+			}
+			if (!Commutation.commute(earlier, gate)) {
+				return false;
+			}
+
+			// Step past the earlier gate on every wire it shares with this one.
+			for (int i = 0; i < targets.length; i++) {
+				List<Integer> wire = wires.get(targets[i]);
+				if (cursor[i] >= 0 && wire.get(cursor[i]) == position) {
+					cursor[i]--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the single gate equivalent to applying {@code earlier} and then
+	 * {@code later}, {@link #CANCELLED} if they cancel, or null if they cannot be
+	 * merged.
+	 */
+	private static QuantumGate merge(QuantumGate earlier, QuantumGate later) {
+		int[] a = earlier.getTargets();
+		int[] b = later.getTargets();
+		int n = later.numQubits();
+
+		// Self-inverse gates on the same qubits cancel.
+		if (earlier.getClass() == later.getClass() && isSelfInverse(later)) {
+			boolean symmetric = later instanceof CZGate || later instanceof SwapGate;
+			if (Arrays.equals(a, b) || (symmetric && a[0] == b[1] && a[1] == b[0])) {
+				return CANCELLED;
+			}
+		}
+
+		if (a.length == 1 && b.length == 1 && a[0] == b[0]) {
+			// Rotations about the same axis add.
+			if (earlier instanceof RXGate x && later instanceof RXGate y) {
+				return rotation(new RXGate(n, a[0], x.getTheta() + y.getTheta()));
+			}
+			if (earlier instanceof RYGate x && later instanceof RYGate y) {
+				return rotation(new RYGate(n, a[0], x.getTheta() + y.getTheta()));
+			}
+			if (earlier instanceof RZGate x && later instanceof RZGate y) {
+				return rotation(new RZGate(n, a[0], x.getTheta() + y.getTheta()));
+			}
+			// So do phases.
+			double phase = phase(earlier) + phase(later);
+			if (!Double.isNaN(phase)) {
+				return isWholeTurn(phase, 2 * Math.PI) ? CANCELLED : new PGate(n, a[0], phase);
+			}
+		}
+
+		if (earlier instanceof CPGate x && later instanceof CPGate y
+				&& (Arrays.equals(a, b) || (a[0] == b[1] && a[1] == b[0]))) {
+			double phase = x.getTheta() + y.getTheta();
+			return isWholeTurn(phase, 2 * Math.PI) ? CANCELLED : new CPGate(n, a[0], a[1], phase);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the given rotation, or {@link #CANCELLED} if it is the identity. A
+	 * rotation by one full turn is minus the identity, so only multiples of two
+	 * turns are dropped.
+	 */
+	private static QuantumGate rotation(QuantumGate gate) {
+		double theta = gate instanceof RXGate x ? x.getTheta()
+				: gate instanceof RYGate y ? y.getTheta() : ((RZGate) gate).getTheta();
+		return isWholeTurn(theta, 4 * Math.PI) ? CANCELLED : gate;
+	}
+
+	/**
+	 * Returns the phase applied to |1> by a single-qubit phase gate, or NaN if the
+	 * gate is not one.
+	 */
+	private static double phase(QuantumGate gate) {
+		if (gate instanceof PGate p) {
+			return p.getTheta();
+		}
+		if (gate instanceof ZGate) {
+			return Math.PI;
+		}
+		if (gate instanceof SGate) {
+			return Math.PI / 2;
+		}
+		if (gate instanceof TGate) {
+			return Math.PI / 4;
+		}
+		return Double.NaN;
+	}
+
+	private static boolean isSelfInverse(QuantumGate gate) {
+		return gate instanceof HGate || gate instanceof XGate || gate instanceof YGate || gate instanceof ZGate
+				|| gate instanceof CNOTGate || gate instanceof CZGate || gate instanceof SwapGate;
+	}
+
+	/**
+	 * Checks whether an angle is a whole multiple of the given period.
+	 */
+	private static boolean isWholeTurn(double theta, double period) {
+		double turns = theta / period;
+		return Math.abs(turns - Math.rint(turns)) * period < ANGLE_TOLERANCE;
+	}
+}
@@ -0,0 +1,157 @@
+package squire.circuit;
+
+import squire.circuit.gates.CNOTGate;
+import squire.circuit.gates.RXGate;
+import squire.circuit.gates.XGate;
+import squire.complex.ComplexMatrix;
+
+/**
+ * Decides whether two quantum gates commute, using only their types and
+ * targets. The rules are sufficient rather than complete: when this class
+ * reports that two gates commute they always do, but some commuting pairs are
+ * not recognised.
+ *
+ * @see CircuitOptimizer
+ */
+final class Commutation {
+
+	private Commutation() {
+	}
+
+	/**
+	 * Checks whether two gates are known to commute. This is the case when they
+	 * act on disjoint qubits, when both are diagonal, when a CNOT meets a
+	 * diagonal gate that does not touch its target or an X rotation that only
+	 * touches its target, and when two CNOTs share only controls or only targets.
+	 *
+	 * @param a The first gate.
+	 * @param b The second gate.
+	 * @return True if the gates are known to commute, false otherwise.
+	 */
+	static boolean commute(QuantumGate a, QuantumGate b) {
+		if ((mask(a) & mask(b)) == 0) {
+			return true;
+		}
+		if (isDiagonal(a) && isDiagonal(b)) {
+			return true;
+		}
+		if (a instanceof CNOTGate cnot) {
+			return commutesWithCNOT(cnot, b);
+		}
+		if (b instanceof CNOTGate cnot) {
+			return commutesWithCNOT(cnot, a);
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a gate commutes with a CNOT that it overlaps.
+	 */
+	private static boolean commutesWithCNOT(CNOTGate cnot, QuantumGate other) {
+		int[] targets = cnot.getTargets();
+		long target = 1L << targets[0];
+		long control = 1L << targets[1];
+		long overlap = mask(other) & (target | control);
+
+		// A gate that is diagonal on the control passes through it.
+		if (overlap == control && isDiagonal(other)) {
+			return true;
+		}
+		// A gate built from X acts on the target the same way the CNOT does.
+		if (overlap == target && other.getTargets().length == 1
+				&& (other instanceof XGate || other instanceof RXGate)) {
+			return true;
+		}
+		// Two CNOTs commute unless the target of one is the control of the other.
+		if (other instanceof CNOTGate that) {
+			int[] thatTargets = that.getTargets();
+			return thatTargets[0] != targets[1] && thatTargets[1] != targets[0];
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the local matrix of a gate is diagonal.
+	 *
+	 * @param gate The gate to check.
+	 * @return True if every off-diagonal entry of the gate's matrix is zero.
+	 */
+	static boolean isDiagonal(QuantumGate gate) {
+		boolean[] diagonal = { true };
+		gate.localMatrix().forEachNonZero((i, j, re, im) -> diagonal[0] &= i == j);
+		return diagonal[0];
+	}
+
+	/**
+	 * Checks whether a gate is diagonal on one of its qubits, that is whether it
+	 * never changes the value of that qubit in the computational basis. Such a
+	 * gate commutes with a measurement of the qubit, as does any gate that does
+	 * not act on it.
+	 *
+	 * @param gate  The gate to check.
+	 * @param qubit The qubit.
+	 * @return True if every nonzero entry of the gate's matrix keeps the qubit's
+	 *         value.
+	 */
+	static boolean isDiagonalOn(QuantumGate gate, int qubit) {
+		int[] targets = gate.getTargets();
+		int bit = -1;
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] == qubit) {
+				bit = i;
+			}
+		}
+		if (bit < 0) {
+			return true;
+		}
+		long flip = 1L << bit;
+		boolean[] diagonal = { true };
+		gate.localMatrix().forEachNonZero((i, j, re, im) -> diagonal[0] &= ((i ^ j) & flip) == 0);
+		return diagonal[0];
+	}
+
+	/**
+	 * Checks whether a gate commutes with a Pauli-X on one of its qubits, that is
+	 * whether flipping the qubit on both sides leaves its matrix unchanged. Such
+	 * a gate is diagonal in the X basis of that qubit, as a CNOT is on its target.
+	 *
+	 * @param gate  The gate to check.
+	 * @param qubit The qubit.
+	 * @return True if the gate's matrix is unchanged by flipping the qubit, or the
+	 *         gate does not act on it.
+	 */
+	static boolean commutesWithXOn(QuantumGate gate, int qubit) {
+		int[] targets = gate.getTargets();
+		int bit = -1;
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] == qubit) {
+				bit = i;
+			}
+		}
+		if (bit < 0) {
+			return true;
+		}
+		long flip = 1L << bit;
+		ComplexMatrix matrix = gate.localMatrix();
+		boolean[] symmetric = { true };
+		matrix.forEachNonZero((i, j, re, im) -> {
+			symmetric[0] &= Math.abs(re - matrix.getReal(i ^ flip, j ^ flip)) < 1e-10
+					&& Math.abs(im - matrix.getImag(i ^ flip, j ^ flip)) < 1e-10;
+		});
+		return symmetric[0];
+	}
+
+	/**
+	 * Returns a bit mask with a bit set for every qubit the gate acts on.
+	 *
+	 * @param gate The gate.
+	 * @return The mask of the gate's qubits.
+	 */
+	static long mask(QuantumGate gate) {
+		long mask = 0;
+		for (int target : gate.getTargets()) {
+			mask |= 1L << target;
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,46 @@
+package squire.circuit;
+
+import java.util.List;
+
+/**
+ * The {@code Component} interface represents a reusable subcircuit, such as a
+ * quantum Fourier transform, that is applied as a single circuit modifier.
+ * A component exposes the circuit it is built from, acting on its own register
+ * of {@link #numQubits()} qubits, so that it can be compiled once into an
+ * optimised and fused form and placed on any qubits of a larger circuit.
+ *
+ * Compiled forms are cached by {@link ComponentCache} per component, register
+ * size and qubit mapping, so implementations must define {@code equals} and
+ * {@code hashCode} such that components with the same circuit are equal. A
+ * component is applied on its own through its cached compiled form.
+ *
+ * @see ComponentCache
+ * @see QuantumCircuitSimulator#addComponent(Component, int...)
+ */
+public interface Component extends UncombinableCircuitModifier {
+
+	/**
+	 * Gets the circuit this component is built from, acting on a register of
+	 * {@link #numQubits()} qubits. The circuit must not change once the component
+	 * has been constructed.
+	 *
+	 * @return The circuit modifiers of the component, in the order they are
+	 *         applied.
+	 */
+	public List<CircuitModifier> circuit();
+
+	/**
+	 * Applies the compiled form of this component, taken from the shared
+	 * {@link ComponentCache}, to a state of {@link #numQubits()} qubits.
+	 *
+	 * @param state The quantum state vector to which the component is applied.
+	 * @return The resulting quantum state vector.
+	 */
+	@Override
+	public default StateVector apply(StateVector state) {
+		for (CircuitModifier cm : ComponentCache.shared().compile(this)) {
+			state = cm.apply(state);
+		}
+		return state;
+	}
+}
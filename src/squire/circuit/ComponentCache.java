@@ -0,0 +1,206 @@
+package squire.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code ComponentCache} class holds the compiled forms of reusable
+ * {@link Component}s. A component is compiled for a register of a given size
+ * and a mapping of its qubits onto that register: its circuit is remapped,
+ * simplified by {@link CircuitOptimizer} and fused along its
+ * {@link CircuitDag}. The result is cached per (component, register size,
+ * mapping), so a subroutine applied many times, within one circuit or across
+ * circuits, is compiled only once and then costs a single optimised pass.
+ *
+ * The cache is bounded and evicts the least recently used compiled form once it
+ * is full. It is safe to use from several threads, and counts hits and misses
+ * so that its capacity can be tuned.
+ *
+ * @see Component
+ * @see GateCache
+ */
+public final class ComponentCache {
+
+	/**
+	 * The number of compiled components held by the shared cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 8;
+
+	private static final ComponentCache SHARED = new ComponentCache(DEFAULT_CAPACITY);
+
+	private final LRUCache<Key, List<CircuitModifier>> compiled;
+
+	/**
+	 * Constructs an empty cache that holds at most the given number of compiled
+	 * components.
+	 *
+	 * @param capacity The largest number of compiled components to keep.
+	 * @throws IllegalArgumentException If the capacity is not positive.
+	 */
+	public ComponentCache(int capacity) {
+		this.compiled = new LRUCache<>(capacity);
+	}
+
+	/**
+	 * Gets the cache shared by every {@link QuantumCircuitSimulator}.
+	 *
+	 * @return The shared component cache.
+	 */
+	public static ComponentCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Gets the compiled form of a component acting on its own register, with
+	 * every qubit in place.
+	 *
+	 * @param component The component to compile.
+	 * @return The compiled circuit, acting on {@code component.numQubits()}
+	 *         qubits.
+	 */
+	public List<CircuitModifier> compile(Component component) {
+		int[] mapping = new int[component.numQubits()];
+		Arrays.setAll(mapping, q -> q);
+		return this.compile(component, component.numQubits(), mapping);
+	}
+
+	/**
+	 * Gets the compiled form of a component placed on some qubits of a larger
+	 * register, compiling it if it is not cached.
+	 *
+	 * @param component The component to compile.
+	 * @param numQubits The total number of qubits in the register.
+	 * @param mapping   The qubit of the register on which each qubit of the
+	 *                  component is placed, indexed by its qubit in the
+	 *                  component.
+	 * @return The compiled circuit, acting on {@code numQubits} qubits. The list
+	 *         is shared and cannot be modified.
+	 * @throws IllegalArgumentException If the mapping does not place every qubit
+	 *                                  of the component on a distinct qubit of
+	 *                                  the register, or the component contains a
+	 *                                  modifier that cannot be remapped.
+	 */
+	public List<CircuitModifier> compile(Component component, int numQubits, int[] mapping) {
+		if (mapping.length != component.numQubits()) {
+			throw new IllegalArgumentException("A component of " + component.numQubits()
+					+ " qubits cannot be placed on " + mapping.length + " qubits");
+		}
+		boolean[] used = new boolean[numQubits];
+		for (int q : mapping) {
+			if (q < 0 || q >= numQubits) {
+				throw new IllegalArgumentException(
+						"Cannot access qubit " + q + " of a circuit of " + numQubits + " qubits");
+			}
+			if (used[q]) {
+				throw new IllegalArgumentException("Qubit " + q + " is used more than once");
+			}
+			used[q] = true;
+		}
+		Key key = new Key(component, numQubits, mapping.clone());
+		return this.compiled.computeIfAbsent(key, k -> ComponentCache.build(k.component, k.numQubits, k.mapping));
+	}
+
+	/**
+	 * Remaps, optimises and fuses the circuit of a component.
+	 */
+	private static List<CircuitModifier> build(Component component, int numQubits, int[] mapping) {
+		List<CircuitModifier> remapped = new ArrayList<>();
+		for (CircuitModifier modifier : component.circuit()) {
+			if (modifier instanceof QuantumGate gate) {
+				remapped.add(gate.remap(numQubits, mapping));
+			} else if (modifier instanceof Measurement measurement) {
+				remapped.add(measurement.remap(numQubits, mapping[measurement.getTarget()]));
+			} else if (modifier instanceof Reset reset) {
+				remapped.add(reset.remap(numQubits, mapping[reset.getTarget()]));
+			} else if (modifier instanceof JointMeasurement measurement) {
+				remapped.add(measurement.remap(numQubits,
+						Arrays.stream(measurement.getTargets()).map(q -> mapping[q]).toArray()));
+			} else if (modifier instanceof Component nested) {
+				int[] composed = new int[nested.numQubits()];
+				Arrays.setAll(composed, q -> mapping[q]);
+				remapped.addAll(build(nested, numQubits, composed));
+			} else {
+				throw new IllegalArgumentException(
+						"Cannot compile a " + modifier.getClass().getSimpleName() + " inside a component");
+			}
+		}
+		List<CircuitModifier> optimized = CircuitOptimizer.optimize(remapped);
+		return List.copyOf(CircuitDag.of(numQubits, optimized).fuse());
+	}
+
+	/**
+	 * Gets the number of lookups that found a compiled component.
+	 *
+	 * @return The number of hits.
+	 */
+	public long hits() {
+		return this.compiled.hits();
+	}
+
+	/**
+	 * Gets the number of lookups that had to compile a component.
+	 *
+	 * @return The number of misses.
+	 */
+	public long misses() {
+		return this.compiled.misses();
+	}
+
+	/**
+	 * Gets the number of compiled components currently cached.
+	 *
+	 * @return The number of compiled components.
+	 */
+	public int size() {
+		return this.compiled.size();
+	}
+
+	/**
+	 * Gets the largest number of compiled components the cache will hold.
+	 *
+	 * @return The capacity.
+	 */
+	public int capacity() {
+		return this.compiled.capacity();
+	}
+
+	/**
+	 * Removes every compiled component from the cache and resets the hit and
+	 * miss counters.
+	 */
+	public void clear() {
+		this.compiled.clear();
+	}
+
+	/**
+	 * Returns a human-readable summary of the cache's occupancy and hit rate.
+	 *
+	 * @return The string representation of the cache.
+	 */
+	@Override
+	public String toString() {
+		long hits = this.hits();
+		long total = hits + this.misses();
+		return "ComponentCache[size=" + this.size() + "/" + this.capacity() + ", hits=" + hits + ", misses="
+				+ this.misses() + ", hitRate=" + (total == 0 ? 0 : (double) hits / total) + "]";
+	}
+
+	/**
+	 * Identifies a compiled component by the component, the register size and
+	 * the placement of its qubits.
+	 */
+	private record Key(Component component, int numQubits, int[] mapping) {
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key that && this.numQubits == that.numQubits
+					&& this.component.equals(that.component) && Arrays.equals(this.mapping, that.mapping);
+		}
+
+		@Override
+		public int hashCode() {
+			return (this.component.hashCode() * 31 + this.numQubits) * 31 + Arrays.hashCode(this.mapping);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package squire.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Rewrites a circuit so that its measurements happen as late as possible,
+ * following the principle of deferred measurement. A measurement of a qubit
+ * commutes with every later gate that does not act on the qubit or is diagonal
+ * on it, such as the control of a CNOT or any phase gate, and with other
+ * measurements. Every measurement that commutes with all of the modifiers after
+ * it is moved to the end of the circuit, where all of them are replaced by a
+ * single {@link JointMeasurement}.
+ *
+ * Since measurements are barriers to gate fusion, moving them out of the way
+ * lets the gates around them fuse, and the moved measurements are sampled in
+ * one pass over the state instead of one pass each. Measurements that are
+ * followed by a gate that can change their qubit, by a reset of their qubit or
+ * by another kind of modifier stay where they are.
+ *
+ * @see QuantumCircuitSimulator#deferMeasurements()
+ */
+public final class DeferredMeasurement {
+
+	private DeferredMeasurement() {
+	}
+
+	/**
+	 * Moves every measurement that can be deferred to a single joint measurement
+	 * at the end of the circuit.
+	 *
+	 * @param numQubits The number of qubits in the circuit.
+	 * @param circuit   The circuit modifiers, in the order they are applied.
+	 * @param random    The random source of the joint measurement.
+	 * @return The rewritten circuit, or a copy of the circuit if no measurement
+	 *         can be deferred.
+	 */
+	public static List<CircuitModifier> defer(int numQubits, List<? extends CircuitModifier> circuit,
+			Random random) {
+		// Walk backwards, tracking which qubits a measurement could be moved from
+		// the current position to the end.
+		boolean[] clear = new boolean[numQubits];
+		Arrays.fill(clear, true);
+		boolean[] measured = new boolean[numQubits];
+		List<CircuitModifier> kept = new ArrayList<>(circuit.size());
+		for (int i = circuit.size() - 1; i >= 0; i--) {
+			CircuitModifier modifier = circuit.get(i);
+			if (modifier instanceof Measurement measurement) {
+				int q = measurement.getTarget();
+				if (clear[q]) {
+					measured[q] = true;
+					continue;
+				}
+			} else if (modifier instanceof QuantumGate gate) {
+				for (int q : gate.getTargets()) {
+					clear[q] &= Commutation.isDiagonalOn(gate, q);
+				}
+			} else if (modifier instanceof Reset reset) {
+				clear[reset.getTarget()] = false;
+			} else if (!(modifier instanceof JointMeasurement)) {
+				Arrays.fill(clear, false);
+			}
+			kept.add(modifier);
+		}
+		Collections.reverse(kept);
+
+		int count = 0;
+		for (boolean m : measured) {
+			count += m ? 1 : 0;
+		}
+		if (count == 1) {
+			for (int q = 0; q < numQubits; q++) {
+				if (measured[q]) {
+					kept.add(new Measurement(numQubits, q, random));
+				}
+			}
+		} else if (count > 1) {
+			int[] targets = new int[count];
+			for (int q = 0, k = 0; q < numQubits; q++) {
+				if (measured[q]) {
+					targets[k++] = q;
+				}
+			}
+			kept.add(new JointMeasurement(numQubits, targets, random));
+		}
+		return kept;
+	}
+}
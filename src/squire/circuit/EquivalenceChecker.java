@@ -0,0 +1,211 @@
+package squire.circuit;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code EquivalenceChecker} class decides whether two circuits implement
+ * the same unitary, up to a global phase, without building the matrix of
+ * either. Both circuits are run on the same input states and the fidelity of
+ * the two outputs is compared with 1: a few computational basis states, which
+ * catch differences in which states are mapped to which, and a number of
+ * random states, which also catch differences in relative phases.
+ *
+ * The number of random states is chosen as if each one revealed a difference
+ * with a probability of one half, so that a difference goes unnoticed with a
+ * probability of at most one minus the confidence. This holds for differences
+ * spread over the state space; a difference confined to a few states is
+ * caught with a lower probability per input, and needs a higher confidence.
+ * Each input costs one run of each circuit, so circuits of 25 qubits and more
+ * can be compared.
+ *
+ * The inputs are run in parallel, and the check stops at the first input whose
+ * outputs differ. Only unitary circuits can be compared: measurements and
+ * resets are rejected.
+ *
+ * @see StateVector#fidelity(StateVector)
+ */
+public final class EquivalenceChecker {
+
+	/**
+	 * The default largest difference from 1 in fidelity that is still taken as
+	 * equal.
+	 */
+	public static final double DEFAULT_TOLERANCE = 1e-9;
+
+	/**
+	 * The default probability with which two different circuits are told apart.
+	 */
+	public static final double DEFAULT_CONFIDENCE = 1 - 1e-6;
+
+	/**
+	 * The number of computational basis states, besides the random states, on
+	 * which the circuits are compared.
+	 */
+	private static final int BASIS_TRIALS = 4;
+
+	private final double tolerance;
+	private final double confidence;
+	private final Random random;
+
+	/**
+	 * Constructs an equivalence checker with the default tolerance and
+	 * confidence.
+	 */
+	public EquivalenceChecker() {
+		this(DEFAULT_TOLERANCE, DEFAULT_CONFIDENCE, new Random());
+	}
+
+	/**
+	 * Constructs an equivalence checker.
+	 *
+	 * @param tolerance  The largest difference from 1 in fidelity that is still
+	 *                   taken as equal.
+	 * @param confidence The smallest probability with which two different
+	 *                   circuits must be told apart, in [0, 1).
+	 * @param random     The random source of the input states.
+	 * @throws IllegalArgumentException If the tolerance is negative or the
+	 *                                  confidence is not in [0, 1).
+	 */
+	public EquivalenceChecker(double tolerance, double confidence, Random random) {
+		if (tolerance < 0) {
+			throw new IllegalArgumentException("The tolerance cannot be negative: " + tolerance);
+		}
+		if (!(confidence >= 0 && confidence < 1)) {
+			throw new IllegalArgumentException("The confidence must be in [0, 1): " + confidence);
+		}
+		this.tolerance = tolerance;
+		this.confidence = confidence;
+		this.random = random;
+	}
+
+	/**
+	 * Gets the number of random input states needed to reach the confidence of
+	 * this checker.
+	 *
+	 * @return The number of random states.
+	 */
+	public int randomTrials() {
+		return Math.max(1, (int) Math.ceil(-Math.log(1 - this.confidence) / Math.log(2)));
+	}
+
+	/**
+	 * Compares two circuits of the same size.
+	 *
+	 * @param a The first circuit.
+	 * @param b The second circuit.
+	 * @return The result of the comparison.
+	 * @throws IllegalArgumentException If the circuits differ in size or contain
+	 *                                  a measurement or reset.
+	 */
+	public Result check(QuantumCircuitSimulator a, QuantumCircuitSimulator b) {
+		if (a.numQubits() != b.numQubits()) {
+			throw new IllegalArgumentException("Cannot compare a circuit of " + a.numQubits()
+					+ " qubits with a circuit of " + b.numQubits() + " qubits");
+		}
+		return this.check(a.numQubits(), a.getCircuit(), b.getCircuit());
+	}
+
+	/**
+	 * Compares two circuits on the same number of qubits.
+	 *
+	 * @param numQubits The number of qubits of both circuits.
+	 * @param a         The modifiers of the first circuit, in the order they are
+	 *                  applied.
+	 * @param b         The modifiers of the second circuit, in the order they are
+	 *                  applied.
+	 * @return The result of the comparison.
+	 * @throws IllegalArgumentException If a circuit contains a measurement or
+	 *                                  reset.
+	 */
+	public Result check(int numQubits, List<? extends CircuitModifier> a, List<? extends CircuitModifier> b) {
+		EquivalenceChecker.requireUnitary(a);
+		EquivalenceChecker.requireUnitary(b);
+
+		// Draw the inputs up front, so that the check is reproducible however the
+		// trials are scheduled.
+		int length = 1 << numQubits;
+		int trials = BASIS_TRIALS + this.randomTrials();
+		int[] basis = new int[BASIS_TRIALS];
+		basis[0] = 0;
+		basis[1] = length - 1;
+		for (int i = 2; i < BASIS_TRIALS; i++) {
+			basis[i] = this.random.nextInt(length);
+		}
+		long[] seeds = new long[trials];
+		for (int i = 0; i < trials; i++) {
+			seeds[i] = this.random.nextLong();
+		}
+
+		AtomicBoolean mismatch = new AtomicBoolean();
+		AtomicInteger run = new AtomicInteger();
+		DoubleAccumulator worst = new DoubleAccumulator(Math::min, 1);
+		IntStream.range(0, trials).parallel().forEach(t -> {
+			if (mismatch.get()) {
+				return;
+			}
+			StateVector input = t < BASIS_TRIALS ? StateVector.createBasisState(numQubits, basis[t])
+					: StateVector.createRandomState(numQubits, new Random(seeds[t]));
+			double fidelity = EquivalenceChecker.run(a, input).fidelity(EquivalenceChecker.run(b, input));
+			run.incrementAndGet();
+			worst.accumulate(fidelity);
+			if (1 - fidelity > this.tolerance) {
+				mismatch.set(true);
+			}
+		});
+		return new Result(!mismatch.get(), run.get(), worst.get());
+	}
+
+	/**
+	 * Checks whether two circuits implement the same unitary up to a global
+	 * phase.
+	 *
+	 * @param a The first circuit.
+	 * @param b The second circuit.
+	 * @return True if no input told the circuits apart, false otherwise.
+	 * @throws IllegalArgumentException If the circuits differ in size or contain
+	 *                                  a measurement or reset.
+	 */
+	public boolean equivalent(QuantumCircuitSimulator a, QuantumCircuitSimulator b) {
+		return this.check(a, b).equivalent();
+	}
+
+	/**
+	 * Runs a circuit on an input state.
+	 */
+	private static StateVector run(List<? extends CircuitModifier> circuit, StateVector state) {
+		for (CircuitModifier cm : circuit) {
+			state = cm.apply(state);
+		}
+		return state;
+	}
+
+	/**
+	 * Throws if a circuit contains a modifier that is not unitary.
+	 */
+	private static void requireUnitary(List<? extends CircuitModifier> circuit) {
+		for (CircuitModifier modifier : circuit) {
+			if (!QuantumCircuitSimulator.isUnitary(modifier)) {
+				throw new IllegalArgumentException(
+						"Cannot check the equivalence of circuits that are not unitary");
+			}
+		}
+	}
+
+	/**
+	 * The outcome of an equivalence check.
+	 *
+	 * @param equivalent  Whether every input gave the same output from both
+	 *                    circuits, up to a global phase.
+	 * @param trials      The number of inputs the circuits were run on before
+	 *                    the check finished.
+	 * @param minFidelity The lowest fidelity between the two outputs of an
+	 *                    input.
+	 */
+	public record Result(boolean equivalent, int trials, double minFidelity) {
+	}
+}
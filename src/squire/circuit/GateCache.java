@@ -0,0 +1,167 @@
+package squire.circuit;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * The {@code GateCache} class interns quantum gates so that circuits which
+ * repeat the same gate, such as a Hadamard on the same qubit or a rotation by
+ * the same angle, share a single immutable instance instead of rebuilding its
+ * matrix every time. Gates are keyed by their class, the size of the register,
+ * their target qubits and the exact bits of their angle, so that two gates
+ * share an instance only if their angles are equal.
+ *
+ * The cache is bounded and evicts the least recently used gate once it is
+ * full. It is safe to use from several threads, and counts hits and misses so
+ * that its capacity can be tuned.
+ *
+ * @see QuantumGate
+ * @see QuantumCircuitSimulator
+ */
+public final class GateCache {
+
+	/**
+	 * The number of gates held by the shared cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 12;
+
+	private static final GateCache SHARED = new GateCache(DEFAULT_CAPACITY);
+
+	private final LRUCache<Key, QuantumGate> gates;
+
+	/**
+	 * Constructs an empty cache that holds at most the given number of gates.
+	 *
+	 * @param capacity The largest number of gates to keep.
+	 * @throws IllegalArgumentException If the capacity is not positive.
+	 */
+	public GateCache(int capacity) {
+		this.gates = new LRUCache<>(capacity);
+	}
+
+	/**
+	 * Gets the cache shared by every {@link QuantumCircuitSimulator}.
+	 *
+	 * @return The shared gate cache.
+	 */
+	public static GateCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Gets the interned gate of the given type on the given targets, creating it
+	 * if it is not cached. The factory is only called on a miss, and must create a
+	 * gate of exactly the given type.
+	 *
+	 * @param <G>       The type of the gate.
+	 * @param type      The class of the gate.
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param targets   The indices of the qubits to which the gate is applied, in
+	 *                  the order the gate's constructor takes them.
+	 * @param factory   Creates the gate on a miss.
+	 * @return The interned gate.
+	 */
+	public <G extends QuantumGate> G intern(Class<G> type, int numQubits, int[] targets, Supplier<G> factory) {
+		return this.intern(type, numQubits, targets, 0, factory);
+	}
+
+	/**
+	 * Gets the interned gate of the given type on the given targets with the
+	 * given angle, creating it if it is not cached. The factory is only called on
+	 * a miss, and must create a gate of exactly the given type. Gates share an
+	 * instance only if their angles are equal; 0.0 and -0.0 are taken as equal.
+	 *
+	 * @param <G>       The type of the gate.
+	 * @param type      The class of the gate.
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param targets   The indices of the qubits to which the gate is applied, in
+	 *                  the order the gate's constructor takes them.
+	 * @param theta     The angle of the gate in radians.
+	 * @param factory   Creates the gate on a miss.
+	 * @return The interned gate.
+	 * @throws IllegalArgumentException If the angle is infinite or NaN.
+	 */
+	public <G extends QuantumGate> G intern(Class<G> type, int numQubits, int[] targets, double theta,
+			Supplier<G> factory) {
+		if (!Double.isFinite(theta)) {
+			throw new IllegalArgumentException("Cannot create a gate with an angle of " + theta);
+		}
+		// Adding 0.0 turns -0.0 into 0.0, so that the two share a key.
+		Key key = new Key(type, numQubits, targets.clone(), Double.doubleToLongBits(theta + 0.0));
+		return type.cast(this.gates.computeIfAbsent(key, k -> factory.get()));
+	}
+
+	/**
+	 * Gets the number of lookups that found an interned gate.
+	 *
+	 * @return The number of hits.
+	 */
+	public long hits() {
+		return this.gates.hits();
+	}
+
+	/**
+	 * Gets the number of lookups that had to create a gate.
+	 *
+	 * @return The number of misses.
+	 */
+	public long misses() {
+		return this.gates.misses();
+	}
+
+	/**
+	 * Gets the number of gates currently cached.
+	 *
+	 * @return The number of gates.
+	 */
+	public int size() {
+		return this.gates.size();
+	}
+
+	/**
+	 * Gets the largest number of gates the cache will hold.
+	 *
+	 * @return The capacity.
+	 */
+	public int capacity() {
+		return this.gates.capacity();
+	}
+
+	/**
+	 * Removes every gate from the cache and resets the hit and miss counters.
+	 */
+	public void clear() {
+		this.gates.clear();
+	}
+
+	/**
+	 * Returns a human-readable summary of the cache's occupancy and hit rate.
+	 *
+	 * @return The string representation of the cache.
+	 */
+	@Override
+	public String toString() {
+		long hits = this.hits();
+		long total = hits + this.misses();
+		return "GateCache[size=" + this.size() + "/" + this.capacity() + ", hits=" + hits + ", misses="
+				+ this.misses() + ", hitRate=" + (total == 0 ? 0 : (double) hits / total) + "]";
+	}
+
+	/**
+	 * Identifies a gate by its class, register size, targets and the bits of its angle.
+	 */
+	private record Key(Class<?> type, int numQubits, int[] targets, long angle) {
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key that && this.type == that.type && this.numQubits == that.numQubits
+					&& this.angle == that.angle && Arrays.equals(this.targets, that.targets);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((this.type.hashCode() * 31 + this.numQubits) * 31 + Arrays.hashCode(this.targets)) * 31
+					+ Long.hashCode(this.angle);
+		}
+	}
+}
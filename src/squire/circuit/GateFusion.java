@@ -0,0 +1,76 @@
+package squire.circuit;
+
+import squire.circuit.gates.UnitaryGate;
+import squire.complex.ComplexMatrix2;
+import squire.complex.ComplexMatrix4;
+
+/**
+ * Fuses consecutive quantum gates that together act on at most two qubits into
+ * a single {@link UnitaryGate}, by multiplying their dense 2x2 or 4x4 local
+ * matrices. A single-qubit gate is lifted to the 4x4 space of a two-qubit gate
+ * by a tensor product with the identity, so every fused gate is applied to the
+ * state in one pass.
+ *
+ * @see CircuitDag#fuse()
+ */
+final class GateFusion {
+
+	private GateFusion() {
+	}
+
+	/**
+	 * Fuses two gates applied one after the other into a single gate.
+	 *
+	 * @param earlier The gate applied first.
+	 * @param later   The gate applied second.
+	 * @return The fused gate, or null if the two gates together act on more than
+	 *         two qubits.
+	 */
+	static QuantumGate fuse(QuantumGate earlier, QuantumGate later) {
+		int[] a = earlier.getTargets();
+		int[] b = later.getTargets();
+		if (a.length > 2 || b.length > 2) {
+			return null;
+		}
+
+		// Collect the qubits of both gates, those of the earlier gate first.
+		int[] union = new int[4];
+		int size = 0;
+		for (int q : a) {
+			union[size++] = q;
+		}
+		for (int q : b) {
+			if (q != union[0] && (size < 2 || q != union[1])) {
+				if (size == 2) {
+					return null;
+				}
+				union[size++] = q;
+			}
+		}
+
+		int n = later.numQubits();
+		if (size == 1) {
+			ComplexMatrix2 product = ComplexMatrix2.of(later.localMatrix())
+					.mult(ComplexMatrix2.of(earlier.localMatrix()));
+			return new UnitaryGate(product, n, union[0]);
+		}
+		ComplexMatrix4 product = lift(later, union[0], union[1]).mult(lift(earlier, union[0], union[1]));
+		return new UnitaryGate(product, n, union[0], union[1]);
+	}
+
+	/**
+	 * Returns the 4x4 matrix of a one- or two-qubit gate acting on the qubits
+	 * {@code low} (bit 0 of the index) and {@code high} (bit 1).
+	 */
+	private static ComplexMatrix4 lift(QuantumGate gate, int low, int high) {
+		int[] targets = gate.getTargets();
+		if (targets.length == 1) {
+			ComplexMatrix2 matrix = ComplexMatrix2.of(gate.localMatrix());
+			// The first factor of a tensor product acts on the more significant bit.
+			return targets[0] == low ? ComplexMatrix2.IDENTITY.tensor(matrix)
+					: matrix.tensor(ComplexMatrix2.IDENTITY);
+		}
+		ComplexMatrix4 matrix = ComplexMatrix4.of(gate.localMatrix());
+		return targets[0] == low ? matrix : matrix.swapQubits();
+	}
+}
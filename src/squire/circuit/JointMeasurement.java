@@ -0,0 +1,68 @@
+package squire.circuit;
+
+import java.util.Random;
+
+/**
+ * The JointMeasurement class represents measuring several qubits in a single
+ * step. The outcomes of all of them are drawn together from one random number
+ * with {@link StateVector#measure(int[], double)}, which takes one pass over
+ * the state instead of one per qubit. It implements the
+ * UncombinableCircuitModifier interface, since a measurement cannot be combined
+ * with other circuit modifiers. The state it is applied to is collapsed in
+ * place.
+ *
+ * @see DeferredMeasurement
+ */
+public class JointMeasurement implements UncombinableCircuitModifier {
+
+	private int[] targets;
+	private Random random;
+	private int size;
+
+	/**
+	 * Constructs a JointMeasurement object with the specified number of qubits,
+	 * target qubit indices, and random number generator.
+	 *
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param targets   The indices of the qubits to be measured.
+	 * @param rand      The random number generator used for probabilistic
+	 *                  measurement outcomes.
+	 */
+	public JointMeasurement(int numQubits, int[] targets, Random rand) {
+		this.targets = targets.clone();
+		this.random = rand;
+		this.size = numQubits;
+	}
+
+	/**
+	 * Gets the indices of the qubits this measurement reads.
+	 *
+	 * @return The measured qubits.
+	 */
+	public int[] getTargets() {
+		return this.targets.clone();
+	}
+
+	/**
+	 * Creates the same measurement, with the same random source, on qubits of a
+	 * different register.
+	 *
+	 * @param numQubits The total number of qubits in the new register.
+	 * @param targets   The indices of the qubits to measure in the new register.
+	 * @return The remapped measurement.
+	 */
+	JointMeasurement remap(int numQubits, int[] targets) {
+		return new JointMeasurement(numQubits, targets, this.random);
+	}
+
+	@Override
+	public StateVector apply(StateVector state) {
+		return state.measure(this.targets, this.random.nextDouble());
+	}
+
+	@Override
+	public int numQubits() {
+		return this.size;
+	}
+
+}
@@ -0,0 +1,122 @@
+package squire.circuit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache that evicts the least recently used entry once
+ * it holds more than its capacity. Lookups and insertions synchronize on a
+ * single access-ordered {@link LinkedHashMap}, while values are computed
+ * outside the lock, so a slow computation never blocks other lookups. Two
+ * threads that miss on the same key at once may both compute a value, in which
+ * case the first one stored is kept and returned to both.
+ *
+ * The numbers of hits and misses are counted so that the capacity can be tuned.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the cached values.
+ */
+final class LRUCache<K, V> {
+
+	private final int capacity;
+	private final Map<K, V> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructs an empty cache that holds at most the given number of entries.
+	 *
+	 * @param capacity The largest number of entries to keep.
+	 * @throws IllegalArgumentException If the capacity is not positive.
+	 */
+	LRUCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity of a cache must be positive, not " + capacity);
+		}
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return this.size() > LRUCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the value cached for the given key, computing and caching it if it is
+	 * not present.
+	 *
+	 * @param key     The key to look up.
+	 * @param compute The function used to compute a missing value. It must not
+	 *                return null.
+	 * @return The cached value.
+	 */
+	V computeIfAbsent(K key, Function<? super K, ? extends V> compute) {
+		synchronized (this.entries) {
+			V value = this.entries.get(key);
+			if (value != null) {
+				this.hits.increment();
+				return value;
+			}
+		}
+		this.misses.increment();
+		V value = compute.apply(key);
+		synchronized (this.entries) {
+			V existing = this.entries.putIfAbsent(key, value);
+			return existing != null ? existing : value;
+		}
+	}
+
+	/**
+	 * Removes every entry from the cache and resets the counters.
+	 */
+	void clear() {
+		synchronized (this.entries) {
+			this.entries.clear();
+		}
+		this.hits.reset();
+		this.misses.reset();
+	}
+
+	/**
+	 * Gets the number of entries currently cached.
+	 *
+	 * @return The number of entries.
+	 */
+	int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * Gets the largest number of entries the cache will hold.
+	 *
+	 * @return The capacity.
+	 */
+	int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Gets the number of lookups that found a cached value.
+	 *
+	 * @return The number of hits.
+	 */
+	long hits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that had to compute a value.
+	 *
+	 * @return The number of misses.
+	 */
+	long misses() {
+		return this.misses.sum();
+	}
+}
@@ -0,0 +1,194 @@
+package squire.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code LightCone} class is the part of a circuit that can influence a
+ * chosen set of qubits. It is found by walking the circuit backwards from its
+ * end: a gate is kept if it touches a qubit already in the cone, and its other
+ * qubits then join the cone. Gates that never reach the chosen qubits are
+ * dropped, as are measurements and resets of qubits outside the cone, since
+ * measuring one qubit does not change the outcome probabilities of the others.
+ * Postselections are always kept, and bring their qubit into the cone.
+ *
+ * The qubits of the cone are renumbered from zero in increasing order of their
+ * original index, so the pruned circuit can be simulated on a register of only
+ * {@link #width()} qubits. Modifiers that are neither gates, measurements nor
+ * resets are assumed to touch every qubit.
+ *
+ * @see QuantumCircuitSimulator#lightCone(int...)
+ */
+public final class LightCone {
+
+	private final int originalWidth;
+	private final int originalSize;
+	private final int[] qubits;
+	private final int[] mapping;
+	private final List<CircuitModifier> circuit;
+
+	private LightCone(int originalWidth, int originalSize, int[] qubits, int[] mapping,
+			List<CircuitModifier> circuit) {
+		this.originalWidth = originalWidth;
+		this.originalSize = originalSize;
+		this.qubits = qubits;
+		this.mapping = mapping;
+		this.circuit = circuit;
+	}
+
+	/**
+	 * Finds the backward light cone of the given qubits in a circuit.
+	 *
+	 * @param numQubits The number of qubits in the circuit.
+	 * @param circuit   The circuit modifiers, in the order they are applied.
+	 * @param qubits    The qubits whose outcomes are of interest.
+	 * @return The light cone of the qubits.
+	 * @throws IllegalArgumentException If a qubit is out of range.
+	 */
+	public static LightCone of(int numQubits, List<? extends CircuitModifier> circuit, int... qubits) {
+		boolean[] inCone = new boolean[numQubits];
+		for (int q : qubits) {
+			if (q < 0 || q >= numQubits) {
+				throw new IllegalArgumentException(
+						"Cannot access qubit " + q + " of a circuit of " + numQubits + " qubits");
+			}
+			inCone[q] = true;
+		}
+
+		// Walk backwards, keeping whatever can reach the cone.
+		List<CircuitModifier> kept = new ArrayList<>();
+		for (int i = circuit.size() - 1; i >= 0; i--) {
+			CircuitModifier modifier = circuit.get(i);
+			if (modifier instanceof QuantumGate gate) {
+				int[] targets = gate.getTargets();
+				boolean touches = false;
+				for (int q : targets) {
+					touches |= inCone[q];
+				}
+				if (touches) {
+					for (int q : targets) {
+						inCone[q] = true;
+					}
+					kept.add(gate);
+				}
+			} else if (modifier instanceof Measurement measurement) {
+				if (inCone[measurement.getTarget()]) {
+					kept.add(measurement);
+				}
+			} else if (modifier instanceof Reset reset) {
+				if (inCone[reset.getTarget()]) {
+					kept.add(reset);
+				}
+			} else if (modifier instanceof Postselection postselection) {
+				// Conditioning on a qubit changes the others it is entangled with.
+				inCone[postselection.getTarget()] = true;
+				kept.add(postselection);
+			} else if (modifier instanceof JointMeasurement measurement) {
+				int[] targets = Arrays.stream(measurement.getTargets()).filter(q -> inCone[q]).toArray();
+				if (targets.length > 0) {
+					kept.add(measurement.remap(numQubits, targets));
+				}
+			} else {
+				Arrays.fill(inCone, true);
+				kept.add(modifier);
+			}
+		}
+		Collections.reverse(kept);
+
+		// Renumber the qubits of the cone.
+		int[] mapping = new int[numQubits];
+		int width = 0;
+		for (int q = 0; q < numQubits; q++) {
+			mapping[q] = inCone[q] ? width++ : -1;
+		}
+		int[] coneQubits = new int[width];
+		for (int q = 0; q < numQubits; q++) {
+			if (inCone[q]) {
+				coneQubits[mapping[q]] = q;
+			}
+		}
+
+		if (width < numQubits) {
+			for (int i = 0; i < kept.size(); i++) {
+				CircuitModifier modifier = kept.get(i);
+				if (modifier instanceof QuantumGate gate) {
+					kept.set(i, gate.remap(width, mapping));
+				} else if (modifier instanceof Measurement measurement) {
+					kept.set(i, measurement.remap(width, mapping[measurement.getTarget()]));
+				} else if (modifier instanceof Reset reset) {
+					kept.set(i, reset.remap(width, mapping[reset.getTarget()]));
+				} else if (modifier instanceof Postselection postselection) {
+					kept.set(i, postselection.remap(width, mapping[postselection.getTarget()]));
+				} else if (modifier instanceof JointMeasurement measurement) {
+					int[] targets = Arrays.stream(measurement.getTargets()).map(q -> mapping[q]).toArray();
+					kept.set(i, measurement.remap(width, targets));
+				}
+			}
+		}
+
+		return new LightCone(numQubits, circuit.size(), coneQubits, mapping, kept);
+	}
+
+	/**
+	 * Gets the circuit restricted to the light cone, acting on a register of
+	 * {@link #width()} qubits.
+	 *
+	 * @return The pruned circuit modifiers, in the order they are applied.
+	 */
+	public List<CircuitModifier> circuit() {
+		return Collections.unmodifiableList(this.circuit);
+	}
+
+	/**
+	 * Gets the number of qubits in the light cone.
+	 *
+	 * @return The width of the pruned circuit.
+	 */
+	public int width() {
+		return this.qubits.length;
+	}
+
+	/**
+	 * Gets the original indices of the qubits in the light cone. Qubit i of the
+	 * pruned circuit is qubit {@code qubits()[i]} of the original circuit.
+	 *
+	 * @return The qubits of the light cone, in increasing order.
+	 */
+	public int[] qubits() {
+		return this.qubits.clone();
+	}
+
+	/**
+	 * Gets the index in the pruned circuit of a qubit of the original circuit.
+	 *
+	 * @param qubit The index of the qubit in the original circuit.
+	 * @return The index of the qubit in the pruned circuit, or -1 if it is
+	 *         outside the light cone.
+	 */
+	public int indexOf(int qubit) {
+		return this.mapping[qubit];
+	}
+
+	/**
+	 * Gets the number of circuit modifiers that were dropped because they cannot
+	 * influence the chosen qubits.
+	 *
+	 * @return The number of modifiers pruned.
+	 */
+	public int prunedCount() {
+		return this.originalSize - this.circuit.size();
+	}
+
+	/**
+	 * Returns a human-readable summary of the light cone.
+	 *
+	 * @return The string representation of the light cone.
+	 */
+	@Override
+	public String toString() {
+		return "LightCone[width=" + this.width() + "/" + this.originalWidth + ", modifiers=" + this.circuit.size()
+				+ "/" + this.originalSize + ", qubits=" + Arrays.toString(this.qubits) + "]";
+	}
+}
@@ -6,7 +6,8 @@ import java.util.Random;
  * The Measurement class represents a quantum measurement operation on a single
  * qubit. It implements the UncombinableCircuitModifier interface, providing a
  * specific implementation for the quantum measurement operation that cannot be
- * combined with other circuit modifiers.
+ * combined with other circuit modifiers. The state a measurement is applied to
+ * is collapsed in place.
  */
 public class Measurement implements UncombinableCircuitModifier {
 
@@ -29,6 +30,27 @@ public class Measurement implements UncombinableCircuitModifier {
 		this.size = numQubits;
 	}
 
+	/**
+	 * Gets the index of the qubit this measurement reads.
+	 *
+	 * @return The measured qubit.
+	 */
+	public int getTarget() {
+		return this.target;
+	}
+
+	/**
+	 * Creates the same measurement, with the same random source, on a qubit of a
+	 * different register.
+	 *
+	 * @param numQubits The total number of qubits in the new register.
+	 * @param target    The index of the qubit to measure in the new register.
+	 * @return The remapped measurement.
+	 */
+	Measurement remap(int numQubits, int target) {
+		return new Measurement(numQubits, target, this.random);
+	}
+
 	@Override
 	public StateVector apply(StateVector state) {
 		return state.measure(this.target, this.random.nextDouble());
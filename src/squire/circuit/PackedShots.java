@@ -0,0 +1,287 @@
+package squire.circuit;
+
+/**
+ * The {@code PackedShots} class stores the measured outcomes of many shots with
+ * one bit per qubit. Each shot takes {@link #words()} consecutive
+ * {@code long}s of a single contiguous array, bit q % 64 of word q / 64
+ * holding the value of qubit q, so a shot costs 8 to 64 times less memory than
+ * a {@code boolean[]}, and questions about a shot, such as its parity or
+ * Hamming weight, are answered a word at a time with bitwise operations.
+ *
+ * Unlike {@link ShotCounts}, the shots keep their order and their number of
+ * qubits is not limited to 64.
+ *
+ * @see QuantumCircuitSimulator#runPacked(int)
+ */
+public final class PackedShots {
+
+	private final int numQubits;
+	private final int shots;
+	private final int words;
+	/**
+	 * The outcomes, shot after shot, {@link #words} words per shot.
+	 */
+	private final long[] bits;
+
+	/**
+	 * Constructs a block of shots with every qubit of every shot false.
+	 *
+	 * @param numQubits The number of qubits in each shot.
+	 * @param shots     The number of shots.
+	 * @throws IllegalArgumentException If either number is negative or the
+	 *                                  block is too large for one array.
+	 */
+	public PackedShots(int numQubits, int shots) {
+		if (numQubits < 0) {
+			throw new IllegalArgumentException("Cannot store shots of " + numQubits + " qubits");
+		}
+		if (shots < 0) {
+			throw new IllegalArgumentException("Cannot store " + shots + " shots");
+		}
+		this.numQubits = numQubits;
+		this.shots = shots;
+		this.words = (numQubits + Long.SIZE - 1) / Long.SIZE;
+		long length = (long) shots * this.words;
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException(
+					"Cannot store " + shots + " shots of " + numQubits + " qubits in one array");
+		}
+		this.bits = new long[(int) length];
+	}
+
+	/**
+	 * Gets the number of qubits in each shot.
+	 *
+	 * @return The number of qubits.
+	 */
+	public int numQubits() {
+		return this.numQubits;
+	}
+
+	/**
+	 * Gets the number of shots.
+	 *
+	 * @return The number of shots.
+	 */
+	public int shots() {
+		return this.shots;
+	}
+
+	/**
+	 * Gets the number of words each shot takes.
+	 *
+	 * @return The number of words per shot.
+	 */
+	public int words() {
+		return this.words;
+	}
+
+	/**
+	 * Gets the value of a qubit in a shot.
+	 *
+	 * @param shot  The shot.
+	 * @param qubit The qubit.
+	 * @return The measured value of the qubit.
+	 * @throws IllegalArgumentException If the shot or qubit is out of range.
+	 */
+	public boolean get(int shot, int qubit) {
+		this.checkShot(shot);
+		this.checkQubit(qubit);
+		return ((this.bits[shot * this.words + (qubit >>> 6)] >>> qubit) & 1) == 1;
+	}
+
+	/**
+	 * Sets the value of a qubit in a shot.
+	 *
+	 * @param shot  The shot.
+	 * @param qubit The qubit.
+	 * @param value The measured value of the qubit.
+	 * @throws IllegalArgumentException If the shot or qubit is out of range.
+	 */
+	public void set(int shot, int qubit, boolean value) {
+		this.checkShot(shot);
+		this.checkQubit(qubit);
+		int word = shot * this.words + (qubit >>> 6);
+		if (value) {
+			this.bits[word] |= 1L << qubit;
+		} else {
+			this.bits[word] &= ~(1L << qubit);
+		}
+	}
+
+	/**
+	 * Gets one word of a shot: the values of qubits 64w to 64w + 63.
+	 *
+	 * @param shot The shot.
+	 * @param w    The word of the shot.
+	 * @return The packed values of the qubits of the word.
+	 * @throws IllegalArgumentException If the shot or word is out of range.
+	 */
+	public long word(int shot, int w) {
+		this.checkShot(shot);
+		if (w < 0 || w >= this.words) {
+			throw new IllegalArgumentException("Cannot access word " + w + " of shots of " + this.words + " words");
+		}
+		return this.bits[shot * this.words + w];
+	}
+
+	/**
+	 * Sets one word of a shot: the values of qubits 64w to 64w + 63. Bits beyond
+	 * the last qubit are ignored.
+	 *
+	 * @param shot  The shot.
+	 * @param w     The word of the shot.
+	 * @param value The packed values of the qubits of the word.
+	 * @throws IllegalArgumentException If the shot or word is out of range.
+	 */
+	public void setWord(int shot, int w, long value) {
+		this.checkShot(shot);
+		if (w < 0 || w >= this.words) {
+			throw new IllegalArgumentException("Cannot access word " + w + " of shots of " + this.words + " words");
+		}
+		if (w == this.words - 1 && this.numQubits % Long.SIZE != 0) {
+			value &= (1L << this.numQubits) - 1;
+		}
+		this.bits[shot * this.words + w] = value;
+	}
+
+	/**
+	 * Gets the values of every qubit in a shot.
+	 *
+	 * @param shot The shot.
+	 * @return The measured values, indexed by qubit.
+	 * @throws IllegalArgumentException If the shot is out of range.
+	 */
+	public boolean[] shot(int shot) {
+		this.checkShot(shot);
+		boolean[] vals = new boolean[this.numQubits];
+		int base = shot * this.words;
+		for (int q = 0; q < this.numQubits; q++) {
+			vals[q] = ((this.bits[base + (q >>> 6)] >>> q) & 1) == 1;
+		}
+		return vals;
+	}
+
+	/**
+	 * Counts the qubits of a shot that were measured true.
+	 *
+	 * @param shot The shot.
+	 * @return The Hamming weight of the shot.
+	 * @throws IllegalArgumentException If the shot is out of range.
+	 */
+	public int weight(int shot) {
+		this.checkShot(shot);
+		int weight = 0;
+		for (int w = shot * this.words, end = w + this.words; w < end; w++) {
+			weight += Long.bitCount(this.bits[w]);
+		}
+		return weight;
+	}
+
+	/**
+	 * Gets the parity of a shot: whether an odd number of its qubits were
+	 * measured true.
+	 *
+	 * @param shot The shot.
+	 * @return True if the Hamming weight of the shot is odd.
+	 * @throws IllegalArgumentException If the shot is out of range.
+	 */
+	public boolean parity(int shot) {
+		return (this.weight(shot) & 1) == 1;
+	}
+
+	/**
+	 * Gets the parity of some of the qubits of a shot, as used for the value of a
+	 * product of Pauli-Z operators.
+	 *
+	 * @param shot The shot.
+	 * @param mask The qubits to include, packed like a shot: bit q % 64 of word
+	 *             q / 64 selects qubit q.
+	 * @return True if an odd number of the selected qubits were measured true.
+	 * @throws IllegalArgumentException If the shot is out of range or the mask
+	 *                                  has the wrong number of words.
+	 */
+	public boolean parity(int shot, long... mask) {
+		this.checkShot(shot);
+		if (mask.length != this.words) {
+			throw new IllegalArgumentException(
+					"Cannot apply a mask of " + mask.length + " words to shots of " + this.words + " words");
+		}
+		long parity = 0;
+		int base = shot * this.words;
+		for (int w = 0; w < this.words; w++) {
+			parity ^= this.bits[base + w] & mask[w];
+		}
+		return (Long.bitCount(parity) & 1) == 1;
+	}
+
+	/**
+	 * Gets the values of one qubit across every shot, packed in shot order: bit
+	 * s % 64 of word s / 64 is the value of the qubit in shot s.
+	 *
+	 * @param qubit The qubit.
+	 * @return The packed column of the qubit.
+	 * @throws IllegalArgumentException If the qubit is out of range.
+	 */
+	public long[] column(int qubit) {
+		this.checkQubit(qubit);
+		long[] column = new long[(this.shots + Long.SIZE - 1) / Long.SIZE];
+		int offset = qubit >>> 6;
+		for (int s = 0; s < this.shots; s++) {
+			column[s >>> 6] |= ((this.bits[s * this.words + offset] >>> qubit) & 1) << s;
+		}
+		return column;
+	}
+
+	/**
+	 * Counts the shots in which a qubit was measured true.
+	 *
+	 * @param qubit The qubit.
+	 * @return The number of shots.
+	 * @throws IllegalArgumentException If the qubit is out of range.
+	 */
+	public int countTrue(int qubit) {
+		int count = 0;
+		for (long word : this.column(qubit)) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the shots by outcome.
+	 *
+	 * @return The histogram of the shots.
+	 * @throws IllegalArgumentException If the shots have more than 64 qubits.
+	 */
+	public ShotCounts counts() {
+		ShotCounts counts = new ShotCounts(this.numQubits);
+		if (this.words == 1) {
+			for (long shot : this.bits) {
+				counts.add(shot);
+			}
+		} else if (this.words == 0) {
+			counts.add(0, this.shots);
+		}
+		return counts;
+	}
+
+	/**
+	 * Throws if a shot is out of range.
+	 */
+	private void checkShot(int shot) {
+		if (shot < 0 || shot >= this.shots) {
+			throw new IllegalArgumentException("Cannot access shot " + shot + " of " + this.shots + " shots");
+		}
+	}
+
+	/**
+	 * Throws if a qubit is out of range.
+	 */
+	private void checkQubit(int qubit) {
+		if (qubit < 0 || qubit >= this.numQubits) {
+			throw new IllegalArgumentException(
+					"Cannot access qubit " + qubit + " of shots of " + this.numQubits + " qubits");
+		}
+	}
+}
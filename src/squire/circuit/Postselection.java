@@ -0,0 +1,84 @@
+package squire.circuit;
+
+/**
+ * The Postselection class represents keeping only the runs of a circuit in
+ * which a qubit has a chosen value. Instead of discarding runs, the state is
+ * projected onto that value and renormalized, and the probability of the value
+ * is recorded as the acceptance probability of the state, so every run is a
+ * valid sample of the postselected circuit. It implements the
+ * UncombinableCircuitModifier interface, since a projection is not unitary and
+ * cannot be combined with other circuit modifiers. The state it is applied to
+ * is changed in place.
+ *
+ * A postselection after a mid-circuit measurement also conditions that
+ * measurement: outcomes under which the postselection is more likely to
+ * succeed are kept more often. Applied to a single state, the postselection
+ * can only project the branch the measurement already chose, so
+ * {@link QuantumCircuitSimulator#run(int)} weighs every branch by the
+ * probability that its postselections succeed before splitting the shots.
+ *
+ * @see StateVector#postselect(int, boolean)
+ */
+public class Postselection implements UncombinableCircuitModifier {
+
+	private int target;
+	private boolean value;
+	private int size;
+
+	/**
+	 * Constructs a Postselection object with the specified number of qubits,
+	 * target qubit index, and value to keep.
+	 *
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param target    The index of the qubit to postselect.
+	 * @param value     The value of the qubit to keep.
+	 */
+	public Postselection(int numQubits, int target, boolean value) {
+		this.target = target;
+		this.value = value;
+		this.size = numQubits;
+	}
+
+	/**
+	 * Gets the index of the qubit this operation postselects.
+	 *
+	 * @return The postselected qubit.
+	 */
+	public int getTarget() {
+		return this.target;
+	}
+
+	/**
+	 * Gets the value of the qubit that is kept.
+	 *
+	 * @return The kept value.
+	 */
+	public boolean getValue() {
+		return this.value;
+	}
+
+	/**
+	 * Creates the same postselection on a qubit of a different register.
+	 *
+	 * @param numQubits The total number of qubits in the new register.
+	 * @param target    The index of the qubit to postselect in the new register.
+	 * @return The remapped postselection.
+	 */
+	Postselection remap(int numQubits, int target) {
+		return new Postselection(numQubits, target, this.value);
+	}
+
+	/**
+	 * @throws IllegalStateException If the qubit cannot have the kept value.
+	 */
+	@Override
+	public StateVector apply(StateVector state) {
+		return state.postselect(this.target, this.value);
+	}
+
+	@Override
+	public int numQubits() {
+		return this.size;
+	}
+
+}
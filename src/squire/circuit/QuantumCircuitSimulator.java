@@ -1,7 +1,10 @@
 package squire.circuit;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.function.Consumer;
 
 import squire.circuit.gates.CNOTGate;
 import squire.circuit.gates.CPGate;
@@ -30,8 +33,9 @@ import squire.circuit.gates.ZGate;
  * {@code QuantumCircuitSimulator} utilizes a {@link StateVector} to represent
  * the quantum state of the system and applies {@link QuantumGate} and
  * {@link Measurement} operations to simulate the evolution of the quantum
- * circuit. The class supports optimization techniques to improve simulation
- * efficiency by combining adjacent gates when possible.
+ * circuit. Each gate is stored as its small local matrix and applied directly
+ * to the amplitudes it affects, so circuits on many qubits can be built and run
+ * without ever forming a 2<sup>n</sup>x2<sup>n</sup> matrix.
  *
  * @see CircuitModifier
  * @see QuantumGate
@@ -68,6 +72,34 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see Random
 	 */
 	private Random random;
+	/**
+	 * The cache from which the gates added by the convenience methods such as
+	 * {@link #h(int)} are taken, so that repeated gates share one instance.
+	 *
+	 * @see GateCache
+	 */
+	private GateCache gateCache = GateCache.shared();
+	/**
+	 * The cache from which the compiled forms of the components added by
+	 * {@link #addComponent(Component, int...)} are taken.
+	 *
+	 * @see ComponentCache
+	 */
+	private ComponentCache componentCache = ComponentCache.shared();
+	/**
+	 * The dependency graph of the circuit, kept in step with the gate list as
+	 * modifiers are added.
+	 *
+	 * @see CircuitDag
+	 */
+	private CircuitDag dag;
+	/**
+	 * The probability that the postselections of the circuit succeeded in the
+	 * most recent run.
+	 *
+	 * @see Postselection
+	 */
+	private double acceptance = 1;
 
 	/**
 	 * Initializes a Quantum Circuit Simulator with the specified number of qubits
@@ -94,7 +126,9 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	public QuantumCircuitSimulator(int n, Random random) {
 		this.numQubits = n;
 		this.gates = new ArrayList<>();
+		this.dag = new CircuitDag(this.numQubits);
 		this.gates.add(new IGate(this.numQubits, 0));
+		this.dag.add(this.gates.get(0));
 		this.random = random;
 	}
 
@@ -106,10 +140,54 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	public QuantumCircuitSimulator(int n) {
 		this.numQubits = n;
 		this.gates = new ArrayList<>();
+		this.dag = new CircuitDag(this.numQubits);
 		this.gates.add(new IGate(this.numQubits, 0));
+		this.dag.add(this.gates.get(0));
 		this.random = new Random();
 	}
 
+	/**
+	 * Gets the cache from which this circuit takes the gates added by its
+	 * convenience methods, such as {@link #h(int)} and {@link #cx(int, int)}.
+	 * 
+	 * @return The gate cache used by this circuit.
+	 */
+	public GateCache getGateCache() {
+		return this.gateCache;
+	}
+
+	/**
+	 * Sets the cache from which this circuit takes the gates added by its
+	 * convenience methods. By default every circuit uses
+	 * {@link GateCache#shared()}.
+	 * 
+	 * @param gateCache The gate cache to use.
+	 */
+	public void setGateCache(GateCache gateCache) {
+		this.gateCache = gateCache;
+	}
+
+	/**
+	 * Gets the cache from which this circuit takes the compiled forms of the
+	 * components added to it.
+	 * 
+	 * @return The component cache used by this circuit.
+	 */
+	public ComponentCache getComponentCache() {
+		return this.componentCache;
+	}
+
+	/**
+	 * Sets the cache from which this circuit takes the compiled forms of the
+	 * components added to it. By default every circuit uses
+	 * {@link ComponentCache#shared()}.
+	 * 
+	 * @param componentCache The component cache to use.
+	 */
+	public void setComponentCache(ComponentCache componentCache) {
+		this.componentCache = componentCache;
+	}
+
 	/**
 	 * Adds a Hadamard (H) gate operation to the quantum circuit, creating a
 	 * superposition of states on the specified qubit.
@@ -130,7 +208,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void h(int q) {
-		QuantumGate g = new HGate(this.numQubits, q);
+		QuantumGate g = this.gateCache.intern(HGate.class, this.numQubits, new int[] { q },
+				() -> new HGate(this.numQubits, q));
 		this.addGate(g);
 	}
 
@@ -155,7 +234,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void cx(int q, int c) {
-		QuantumGate g = (new CNOTGate(this.numQubits, q, c));
+		QuantumGate g = this.gateCache.intern(CNOTGate.class, this.numQubits, new int[] { q, c },
+				() -> new CNOTGate(this.numQubits, q, c));
 		this.addGate(g);
 	}
 
@@ -178,7 +258,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void x(int q) {
-		QuantumGate g = (new XGate(this.numQubits, q));
+		QuantumGate g = this.gateCache.intern(XGate.class, this.numQubits, new int[] { q },
+				() -> new XGate(this.numQubits, q));
 		this.addGate(g);
 	}
 
@@ -196,7 +277,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void y(int q) {
-		QuantumGate g = (new YGate(this.numQubits, q));
+		QuantumGate g = this.gateCache.intern(YGate.class, this.numQubits, new int[] { q },
+				() -> new YGate(this.numQubits, q));
 		this.addGate(g);
 	}
 
@@ -219,7 +301,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void z(int q) {
-		QuantumGate g = (new ZGate(this.numQubits, q));
+		QuantumGate g = this.gateCache.intern(ZGate.class, this.numQubits, new int[] { q },
+				() -> new ZGate(this.numQubits, q));
 		this.addGate(g);
 	}
 
@@ -244,7 +327,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void p(double theta, int q) {
-		QuantumGate g = (new PGate(this.numQubits, q, theta));
+		QuantumGate g = this.gateCache.intern(PGate.class, this.numQubits, new int[] { q }, theta,
+				() -> new PGate(this.numQubits, q, theta));
 		this.addGate(g);
 	}
 
@@ -268,7 +352,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void i(int q) {
-		QuantumGate g = (new IGate(this.numQubits, q));
+		QuantumGate g = this.gateCache.intern(IGate.class, this.numQubits, new int[] { q },
+				() -> new IGate(this.numQubits, q));
 		this.addGate(g);
 	}
 
@@ -294,7 +379,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void rx(int q, double theta) {
-		QuantumGate g = (new RXGate(this.numQubits, q, theta));
+		QuantumGate g = this.gateCache.intern(RXGate.class, this.numQubits, new int[] { q }, theta,
+				() -> new RXGate(this.numQubits, q, theta));
 		this.addGate(g);
 	}
 
@@ -320,7 +406,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void ry(int q, double theta) {
-		QuantumGate g = (new RYGate(this.numQubits, q, theta));
+		QuantumGate g = this.gateCache.intern(RYGate.class, this.numQubits, new int[] { q }, theta,
+				() -> new RYGate(this.numQubits, q, theta));
 		this.addGate(g);
 	}
 
@@ -345,7 +432,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void rz(int q, double theta) {
-		QuantumGate g = (new RZGate(this.numQubits, q, theta));
+		QuantumGate g = this.gateCache.intern(RZGate.class, this.numQubits, new int[] { q }, theta,
+				() -> new RZGate(this.numQubits, q, theta));
 		this.addGate(g);
 	}
 
@@ -368,7 +456,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void s(int q) {
-		QuantumGate g = (new SGate(this.numQubits, q));
+		QuantumGate g = this.gateCache.intern(SGate.class, this.numQubits, new int[] { q },
+				() -> new SGate(this.numQubits, q));
 		this.addGate(g);
 	}
 
@@ -392,7 +481,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void t(int q) {
-		QuantumGate g = (new TGate(this.numQubits, q));
+		QuantumGate g = this.gateCache.intern(TGate.class, this.numQubits, new int[] { q },
+				() -> new TGate(this.numQubits, q));
 		this.addGate(g);
 	}
 
@@ -416,7 +506,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void cz(int q, int c) {
-		QuantumGate g = (new CZGate(this.numQubits, q, c));
+		QuantumGate g = this.gateCache.intern(CZGate.class, this.numQubits, new int[] { q, c },
+				() -> new CZGate(this.numQubits, q, c));
 		this.addGate(g);
 	}
 
@@ -442,7 +533,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void cp(double theta, int q, int c) {
-		QuantumGate g = (new CPGate(this.numQubits, q, c, theta));
+		QuantumGate g = this.gateCache.intern(CPGate.class, this.numQubits, new int[] { q, c }, theta,
+				() -> new CPGate(this.numQubits, q, c, theta));
 		this.addGate(g);
 	}
 
@@ -466,7 +558,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @see StateVector
 	 */
 	public void swap(int q, int c) {
-		QuantumGate g = (new SwapGate(this.numQubits, q, c));
+		QuantumGate g = this.gateCache.intern(SwapGate.class, this.numQubits, new int[] { q, c },
+				() -> new SwapGate(this.numQubits, q, c));
 		this.addGate(g);
 	}
 
@@ -502,7 +595,48 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * @param q The qubit to measure.
 	 */
 	public void measure(int q) {
-		this.gates.add(new Measurement(this.numQubits, q, this.random));
+		this.addGate(new Measurement(this.numQubits, q, this.random));
+	}
+
+	/**
+	 * Postselects the specified qubit on a value: only runs in which the qubit has
+	 * that value at this point are kept. Rather than discarding runs, the state
+	 * is projected onto the value and renormalized, so every run is a valid
+	 * sample, and the probability of the value is reported by
+	 * {@link #getAcceptance()}.
+	 *
+	 * @param q     The qubit to postselect.
+	 * @param value The value to keep.
+	 *
+	 * @see Postselection
+	 */
+	public void postselect(int q, boolean value) {
+		this.addGate(new Postselection(this.numQubits, q, value));
+	}
+
+	/**
+	 * Gets the probability that the postselections of the circuit succeeded in
+	 * the most recent run, which is the fraction of runs that rejection sampling
+	 * would have kept. After {@link #run(int)}, or a run of a circuit with a
+	 * postselection after a mid-circuit measurement, it is the probability
+	 * summed over the outcomes of the measurements. It is 1 if the circuit has no
+	 * postselections or has not been run.
+	 *
+	 * @return The acceptance probability of the most recent run.
+	 */
+	public double getAcceptance() {
+		return this.acceptance;
+	}
+
+	/**
+	 * Resets the specified qubit to |0> in the middle of the circuit. The qubit is
+	 * measured first, collapsing the state, so it can then be reused as a fresh
+	 * qubit. Uses this circuit's saved random source.
+	 *
+	 * @param q The qubit to reset.
+	 */
+	public void reset(int q) {
+		this.addGate(new Reset(this.numQubits, q, this.random));
 	}
 
 	/**
@@ -510,17 +644,17 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * final state.
 	 *
 	 * The method initializes a StateVector with a zero state for the specified
-	 * number of qubits. It then adds measurement operations to the circuit for each
-	 * qubit, runs the quantum circuit by applying its gates, and finally measures
-	 * the resulting state vector.
+	 * number of qubits. It then runs the quantum circuit by applying its gates, and
+	 * finally measures the resulting state vector.
 	 *
 	 * The StateVector is manipulated by applying CircuitModifier instances, which
 	 * represent quantum gates and measurement operations. The simulation proceeds
 	 * by applying each gate in the order they were added to the circuit.
 	 *
-	 * The measurement outcomes are obtained by applying measurement operations to
-	 * the final state vector. The boolean array returned corresponds to the
-	 * measured outcomes of each qubit in the circuit.
+	 * The measurement outcomes are obtained by drawing a single basis state from
+	 * the final state vector, in one pass over it, and reading every qubit from
+	 * its bits. The boolean array returned corresponds to the measured outcomes of
+	 * each qubit in the circuit.
 	 *
 	 * @return An array of boolean values representing the measured outcomes of the
 	 *         qubits.
@@ -539,9 +673,8 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * final state.
 	 *
 	 * The method initializes a StateVector with a zero state for the specified
-	 * number of qubits. It then adds measurement operations to the circuit for each
-	 * qubit, runs the quantum circuit by applying its gates, and finally measures
-	 * the resulting state vector.
+	 * number of qubits. It then runs the quantum circuit by applying its gates, and
+	 * finally measures the resulting state vector.
 	 *
 	 * The StateVector is manipulated by applying CircuitModifier instances, which
 	 * represent quantum gates and measurement operations. The simulation proceeds
@@ -549,15 +682,22 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 * debug parameter is true, the intermediate state vector is printed for
 	 * debugging purposes.
 	 *
-	 * The measurement outcomes are obtained by applying measurement operations to
-	 * the final state vector. The boolean array returned corresponds to the
-	 * measured outcomes of each qubit in the circuit.
+	 * The measurement outcomes are obtained by drawing a single basis state from
+	 * the final state vector, in one pass over it, and reading every qubit from
+	 * its bits. The boolean array returned corresponds to the measured outcomes of
+	 * each qubit in the circuit.
+	 *
+	 * A circuit with a postselection after a mid-circuit measurement is run as a
+	 * single shot of {@link #run(int)} instead, so that the outcome of the
+	 * measurement is weighted by the chance that the postselection succeeds; no
+	 * state is printed then.
 	 *
 	 * @param debug If true, prints the state vector after applying all gates for
 	 *              debugging purposes.
 	 *
 	 * @return The boolean array representing the measured outcomes of the qubits
 	 *         after the circuit execution.
+	 * @throws IllegalStateException If a postselection cannot succeed.
 	 *
 	 * @see StateVector
 	 * @see CircuitModifier
@@ -566,14 +706,16 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 	 */
 	public boolean[] run(boolean debug) {
 
-		StateVector sv = StateVector.createZeroState(this.numQubits);
-
-		ArrayList<CircuitModifier> measurements = new ArrayList<>();
-		// Add measurements.
-		for (int i = 0; i < this.numQubits; i++) {
-			measurements.add(new Measurement(this.numQubits, i, this.random));
+		// A postselection after a mid-circuit measurement changes the chances of
+		// the measurement's outcomes, which a single pass cannot account for.
+		if (BranchingSampler.conditionsBranches(QuantumCircuitSimulator.flatten(this.gates))) {
+			long[] outcome = new long[1];
+			this.run(1).forEach((o, count) -> outcome[0] = o);
+			return ShotCounts.unpack(outcome[0], this.numQubits);
 		}
 
+		StateVector sv = StateVector.createZeroState(this.numQubits);
+
 		// Run the circuit.
 		for (CircuitModifier cm : this.gates) {
 			sv = cm.apply(sv);
@@ -582,122 +724,396 @@ public class QuantumCircuitSimulator implements UncombinableCircuitModifier {
 		if (debug) {
 			System.out.println(sv);
 		}
+		this.acceptance = sv.getAcceptance();
 
-		// Measure.
-		for (CircuitModifier cm : measurements) {
-			sv = cm.apply(sv);
+		// Measure every qubit at once.
+		return sv.readOut(this.random.nextDouble());
+	}
+
+	/**
+	 * Executes the quantum circuit the given number of times, measuring every
+	 * qubit at the end of each run.
+	 *
+	 * When the only measurements are at the end of the circuit, the state is
+	 * evolved once, an alias table is built from the probabilities of the basis
+	 * states, and every shot is drawn from it in constant time, instead of
+	 * simulating the circuit once per shot. Mid-circuit measurements and resets
+	 * branch the simulation: each part of the circuit is simulated once per
+	 * branch that receives shots, and the shots are split among the branches
+	 * according to the outcome probabilities. When postselections follow a
+	 * measurement, each outcome is also weighted by the probability that the
+	 * postselections of its branch succeed, so the shots follow the distribution
+	 * of the runs that rejection sampling would keep. Circuits containing other
+	 * modifiers that are not unitary are simulated once per shot with
+	 * {@link #run()}.
+	 *
+	 * @param shots The number of runs.
+	 * @return The counts of the measured outcomes, bit q of each outcome holding
+	 *         the value of qubit q.
+	 * @throws IllegalArgumentException If the number of shots is negative, or the
+	 *                                  circuit has more than 64 qubits.
+	 * @throws IllegalStateException    If the postselections of the circuit
+	 *                                  cannot succeed, or the circuit combines
+	 *                                  postselections with modifiers that are
+	 *                                  simulated once per shot.
+	 *
+	 * @see #deferMeasurements()
+	 * @see BranchingSampler
+	 */
+	public ShotCounts run(int shots) {
+		ShotCounts counts = new ShotCounts(this.numQubits);
+		this.sample(shots, counts::add, vals -> counts.add(ShotCounts.pack(vals)));
+		return counts;
+	}
+
+	/**
+	 * Runs the circuit the given number of times, as described by
+	 * {@link #run(int)}, and hands on the measured outcomes. Shots drawn from a
+	 * final state arrive as packed outcomes with their counts, and shots
+	 * simulated one at a time arrive as arrays indexed by qubit.
+	 */
+	private void sample(int shots, ShotCounts.CountConsumer outcomes, Consumer<boolean[]> runs) {
+		if (shots < 0) {
+			throw new IllegalArgumentException("Cannot run a circuit " + shots + " times");
 		}
 
-		boolean[] vals = new boolean[this.numQubits];
+		// Find the measurements at the end of the circuit, which the final read-out
+		// makes redundant.
+		int end = this.gates.size();
+		while (end > 0 && (this.gates.get(end - 1) instanceof Measurement
+				|| this.gates.get(end - 1) instanceof JointMeasurement)) {
+			end--;
+		}
+		List<CircuitModifier> circuit = QuantumCircuitSimulator.flatten(this.gates.subList(0, end));
+		if (BranchingSampler.supports(circuit)) {
+			BranchingSampler sampler = new BranchingSampler(this.numQubits, circuit, shots, this.random);
+			sampler.run(outcomes);
+			this.acceptance = sampler.acceptance();
+			return;
+		}
 
-		// Take measurements.
-		for (int i = 0; i < this.numQubits; i++) {
-			vals[i] = sv.getMeasurement(i);
+		// Fall back on simulating every shot. Runs simulated one at a time cannot
+		// weigh the outcomes of earlier modifiers by the postselections that
+		// follow them, so postselections are refused here.
+		for (CircuitModifier cm : circuit) {
+			if (cm instanceof Postselection) {
+				throw new IllegalStateException("Cannot sample a circuit that combines postselections "
+						+ "with modifiers other than gates, measurements and resets");
+			}
+		}
+		for (int s = 0; s < shots; s++) {
+			runs.accept(this.run());
 		}
+	}
 
-		return vals;
+	/**
+	 * Executes the quantum circuit the given number of times, measuring every
+	 * qubit at the end of each run, and keeps the outcome of every run, one bit
+	 * per qubit. The runs are sampled as by {@link #run(int)} and laid out in a
+	 * random order, so that they are distributed as independent runs would be.
+	 * The outcomes are written straight into the packed block without going
+	 * through a {@link ShotCounts}. The width of the register is still bounded
+	 * by the state vector that simulates it, so every outcome fits in the first
+	 * word of its shot.
+	 *
+	 * @param shots The number of runs.
+	 * @return The measured outcomes of the qubits, one shot per run.
+	 * @throws IllegalArgumentException If the number of shots is negative, or the
+	 *                                  block of shots is too large for one array.
+	 * @throws IllegalStateException    If the postselections of the circuit
+	 *                                  cannot succeed, or the circuit combines
+	 *                                  postselections with modifiers that are
+	 *                                  simulated once per shot.
+	 *
+	 * @see PackedShots
+	 */
+	public PackedShots runPacked(int shots) {
+		PackedShots packed = new PackedShots(this.numQubits, shots);
+		int words = packed.words();
+		int[] next = { 0 };
+		this.sample(shots, (outcome, count) -> {
+			// A state vector has far fewer than 64 qubits, so one word holds the
+			// whole outcome.
+			for (long c = 0; c < count; c++) {
+				packed.setWord(next[0]++, 0, outcome);
+			}
+		}, vals -> {
+			for (int q = 0; q < vals.length; q++) {
+				packed.set(next[0], q, vals[q]);
+			}
+			next[0]++;
+		});
+
+		// The shots were laid out outcome by outcome; shuffle them so that their
+		// order carries no information.
+		for (int i = shots - 1; i > 0; i--) {
+			int j = this.random.nextInt(i + 1);
+			for (int w = 0; w < words; w++) {
+				long tmp = packed.word(i, w);
+				packed.setWord(i, w, packed.word(j, w));
+				packed.setWord(j, w, tmp);
+			}
+		}
+		return packed;
 	}
 
 	/**
-	 * Adds a QuantumGate to the quantum circuit, optimizing the circuit structure
-	 * for better efficiency. The method checks if the provided gate is an instance
-	 * of UncombinableCircuitModifier, and if so, attempts to simplify the circuit
-	 * by combining adjacent CombinableCircuitModifier gates in pairs. After the
-	 * simplification process, the provided gate is added to the circuit.
-	 * 
-	 * The method optimizes the circuit by iteratively combining pairs of adjacent
-	 * gates while preserving the order of UncombinableCircuitModifier gates. If the
-	 * provided gate is an instance of UncombinableCircuitModifier, the circuit is
-	 * simplified before adding the gate. The simplification process involves
-	 * merging adjacent CombinableCircuitModifier gates until no further
-	 * combinations are possible.
+	 * Checks whether a circuit modifier is unitary: a gate, a matrix, or a
+	 * component or circuit built only from those.
 	 *
-	 * The optimization process ensures that the circuit remains valid, and the
-	 * gates are combined based on the rules defined by the
-	 * CombinableCircuitModifier interface.
+	 * @param modifier The circuit modifier.
+	 * @return True if the modifier contains no measurement, reset or other
+	 *         non-unitary operation.
+	 */
+	static boolean isUnitary(CircuitModifier modifier) {
+		if (modifier instanceof CombinableCircuitModifier) {
+			return true;
+		}
+		List<CircuitModifier> inner;
+		if (modifier instanceof Component component) {
+			inner = component.circuit();
+		} else if (modifier instanceof QuantumCircuitSimulator circuit) {
+			inner = circuit.getCircuit();
+		} else {
+			return false;
+		}
+		for (CircuitModifier cm : inner) {
+			if (!QuantumCircuitSimulator.isUnitary(cm)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces every component and nested circuit that is not unitary by the
+	 * modifiers it is built from, so that its measurements, resets and
+	 * postselections are seen by the sampler. Unitary ones are kept whole.
 	 *
-	 * The method has a time complexity of approximately O(lg r), where r is the
-	 * number of CombinableCircuitModifier gates in a row. However, the overall
-	 * complexity is influenced by the structure of the circuit and the type of
-	 * gates present.
+	 * @param circuit The circuit modifiers.
+	 * @return The flattened circuit modifiers.
+	 */
+	private static List<CircuitModifier> flatten(List<? extends CircuitModifier> circuit) {
+		List<CircuitModifier> flat = new ArrayList<>(circuit.size());
+		for (CircuitModifier cm : circuit) {
+			if (QuantumCircuitSimulator.isUnitary(cm)) {
+				flat.add(cm);
+			} else if (cm instanceof Component component) {
+				flat.addAll(QuantumCircuitSimulator.flatten(component.circuit()));
+			} else if (cm instanceof QuantumCircuitSimulator inner) {
+				flat.addAll(QuantumCircuitSimulator.flatten(inner.gates));
+			} else {
+				flat.add(cm);
+			}
+		}
+		return flat;
+	}
+
+	/**
+	 * Executes only the part of the quantum circuit that can influence the given
+	 * qubits, and measures them.
 	 *
-	 * @param g The QuantumGate to be added to the circuit.
+	 * The backward light cone of the qubits is traced through the circuit, and
+	 * every gate outside it is dropped. The remaining gates are simulated on a
+	 * register holding only the qubits of the cone, so reading a few qubits of a
+	 * wide, shallow circuit needs far less memory and time than {@link #run()}.
 	 *
+	 * @param qubits The qubits to measure.
+	 * @return The measured outcomes, in the order the qubits were given.
+	 * @throws IllegalArgumentException If a qubit is out of range.
 	 *
-	 * @see QuantumGate
-	 * @see UncombinableCircuitModifier
-	 * @see CombinableCircuitModifier
-	 * @see QuantumGate#combine(QuantumGate)
+	 * @see LightCone
 	 */
-	private void addGateFast(CircuitModifier g) {
+	public boolean[] runQubits(int... qubits) {
+		if (qubits.length == 0) {
+			return new boolean[0];
+		}
+		LightCone cone = this.lightCone(qubits);
+		StateVector sv = StateVector.createZeroState(cone.width());
 
-		if (g.numQubits() > this.numQubits) {
-			throw new IllegalArgumentException("Cannot apply an operator that takes " + g.numQubits()
-					+ "qubits to a circuit with " + this.numQubits + " qubits");
+		// Run the pruned circuit.
+		for (CircuitModifier cm : cone.circuit()) {
+			sv = cm.apply(sv);
 		}
 
-		// Check if you're adding an uncombinable gate.
-		if (g instanceof UncombinableCircuitModifier) {
-			// If it is uncombinable, simplify the circuit.
-			int i;
-			i = this.gates.size() - 1;
-
-			// While the top two gates can be combined, simplify the circuit in pairs.
-			while (i >= 1 && this.gates.get(i) instanceof CombinableCircuitModifier
-					&& this.gates.get(i - 1) instanceof CombinableCircuitModifier) {
-				// Loop combining each pair until you hit the end.
-				while (i >= 1 && this.gates.get(i) instanceof CombinableCircuitModifier gate1
-						&& this.gates.get(i - 1) instanceof CombinableCircuitModifier gate2) {
-					// Simplify this pair, then move i beneath it.
-					this.gates.remove(i);
-					this.gates.remove(i - 1);
-					this.gates.add(gate1.combine(gate2));
-					i -= 2;
-				}
-				// Reset i to the end of the circuit.
-				i = this.gates.size() - 1;
-			}
+		// Measure the requested qubits at once.
+		int[] mapped = new int[qubits.length];
+		for (int i = 0; i < qubits.length; i++) {
+			mapped[i] = cone.indexOf(qubits[i]);
 		}
+		return sv.readOut(this.random.nextDouble(), mapped);
+	}
 
-		// Now add the gate.
-		this.gates.add(g);
+	/**
+	 * Finds the backward light cone of the given qubits in this circuit: the gates
+	 * that can influence them, acting on a register of only the qubits they touch.
+	 *
+	 * @param qubits The qubits whose outcomes are of interest.
+	 * @return The light cone of the qubits.
+	 * @throws IllegalArgumentException If a qubit is out of range.
+	 *
+	 * @see LightCone
+	 */
+	public LightCone lightCone(int... qubits) {
+		return LightCone.of(this.numQubits, this.gates, qubits);
 	}
 
 	/**
-	 * Adds a QuantumGate to the quantum circuit, optimizing the circuit structure
-	 * for better efficiency. The method checks if the provided gate is an instance
-	 * of UncombinableCircuitModifier, and if so, attempts to simplify the circuit
-	 * by combining adjacent CombinableCircuitModifier gates in pairs. After the
-	 * simplification process, the provided gate is added to the circuit.
+	 * Compiles this circuit onto as few qubits as possible: once a qubit's last
+	 * gate has been applied, it is measured, reset, and reused for a qubit that
+	 * has not been touched yet. The compiled circuit measures every qubit of
+	 * this circuit when run, and its width reports how many qubits were saved.
 	 *
-	 * The method optimizes the circuit by iteratively combining pairs of adjacent
-	 * gates while preserving the order of UncombinableCircuitModifier gates. If the
-	 * provided gate is an instance of UncombinableCircuitModifier, the circuit is
-	 * simplified before adding the gate. The simplification process involves
-	 * merging adjacent CombinableCircuitModifier gates until no further
-	 * combinations are possible.
+	 * @return The compiled circuit.
 	 *
-	 * The optimization process ensures that the circuit remains valid, and the
-	 * gates are combined based on the rules defined by the
-	 * CombinableCircuitModifier interface.
+	 * @see QubitReuse
+	 */
+	public QubitReuse compileQubitReuse() {
+		return QubitReuse.compile(this.numQubits, this.gates, this.random);
+	}
+
+	/**
+	 * Adds a circuit modifier, such as a quantum gate or measurement, to the end
+	 * of the quantum circuit.
 	 *
-	 * The method has a time complexity of approximately O(lg r), where r is the
-	 * number of CombinableCircuitModifier gates in a row. However, the overall
-	 * complexity is influenced by the structure of the circuit and the type of
-	 * gates present.
+	 * Gates are recorded exactly as they are added, so adding a gate takes
+	 * constant time and never builds the matrix of the gate over the whole
+	 * register. The dependency graph of the circuit is updated in amortised
+	 * constant time per qubit of the modifier. Adjacent gates are not combined
+	 * here; gates are applied to the state one at a time through their small
+	 * local matrices when the circuit is run.
 	 *
-	 * @param g The QuantumGate to be added to the circuit.
+	 * @param g The circuit modifier to be added to the circuit.
+	 * @return This circuit, with the modifier added.
+	 * @throws IllegalArgumentException If the modifier acts on more qubits than
+	 *                                  the circuit has.
 	 *
 	 * @see QuantumGate
 	 * @see UncombinableCircuitModifier
 	 * @see CombinableCircuitModifier
-	 * @see QuantumGate#combine(QuantumGate)
 	 */
 	public QuantumCircuitSimulator addGate(CircuitModifier g) {
-		this.addGateFast(g);
+		if (g.numQubits() > this.numQubits) {
+			throw new IllegalArgumentException("Cannot apply an operator that takes " + g.numQubits()
+					+ " qubits to a circuit with " + this.numQubits + " qubits");
+		}
+		this.gates.add(g);
+		this.dag.add(g);
+		return this;
+	}
+
+	/**
+	 * Adds a reusable component, such as a quantum Fourier transform, to the end
+	 * of the circuit, placing qubit i of the component on qubit qubits[i] of this
+	 * circuit. The component is compiled into an optimised and fused form once
+	 * per placement and taken from this circuit's component cache afterwards, so
+	 * adding the same component repeatedly does not replay its inner gates.
+	 *
+	 * @param component The component to add.
+	 * @param qubits    The qubits of this circuit on which to place the
+	 *                  component, one for each of its qubits.
+	 * @return This circuit, with the component added.
+	 * @throws IllegalArgumentException If the qubits do not match the size of the
+	 *                                  component or are not distinct qubits of
+	 *                                  this circuit.
+	 *
+	 * @see ComponentCache
+	 */
+	public QuantumCircuitSimulator addComponent(Component component, int... qubits) {
+		for (CircuitModifier cm : this.componentCache.compile(component, this.numQubits, qubits)) {
+			this.addGate(cm);
+		}
+		return this;
+	}
+
+	/**
+	 * Simplifies the circuit in place at the level of individual gates. Identity
+	 * gates, including the one every circuit starts with, are removed, adjacent
+	 * self-inverse gates cancel, and consecutive rotations and phases on the same
+	 * qubits are merged, looking past gates they commute with. Measurements are
+	 * left where they are.
+	 *
+	 * @return This circuit, after optimization.
+	 *
+	 * @see CircuitOptimizer
+	 */
+	public QuantumCircuitSimulator optimize() {
+		this.setGates(CircuitOptimizer.optimize(this.gates));
+		return this;
+	}
+
+	/**
+	 * Moves measurements to the end of the circuit in place wherever the gates
+	 * after them cannot change the measured qubit, and replaces all of the moved
+	 * measurements by a single joint measurement. Gates on either side of a
+	 * moved measurement can then be fused by {@link #fuse()}, and the moved
+	 * measurements are sampled in one pass over the state.
+	 *
+	 * @return This circuit, after the rewrite.
+	 *
+	 * @see DeferredMeasurement
+	 */
+	public QuantumCircuitSimulator deferMeasurements() {
+		this.setGates(DeferredMeasurement.defer(this.numQubits, this.gates, this.random));
+		return this;
+	}
+
+	/**
+	 * Reorders the circuit along its dependency graph so that gates on the same
+	 * qubits are next to each other, then fuses each run of neighbouring gates
+	 * that together act on at most two qubits into a single gate. This reduces
+	 * the number of passes over the state vector when the circuit is run.
+	 *
+	 * @return This circuit, after fusion.
+	 *
+	 * @see CircuitDag#fuse()
+	 */
+	public QuantumCircuitSimulator fuse() {
+		this.setGates(this.dag.fuse());
 		return this;
 	}
 
+	/**
+	 * Gets the dependency graph of the circuit, which tracks which modifiers must
+	 * run before which, and gives the layers, depth and critical path of the
+	 * circuit. The graph is updated as modifiers are added.
+	 *
+	 * @return The dependency graph of the circuit.
+	 *
+	 * @see CircuitDag
+	 */
+	public CircuitDag getDag() {
+		return this.dag;
+	}
+
+	/**
+	 * Replaces the circuit modifiers and rebuilds the dependency graph.
+	 */
+	private void setGates(List<CircuitModifier> gates) {
+		this.gates = new ArrayList<>(gates);
+		this.dag = CircuitDag.of(this.numQubits, this.gates);
+	}
+
+	/**
+	 * Returns the number of circuit modifiers, such as gates and measurements, in
+	 * the circuit.
+	 *
+	 * @return The number of circuit modifiers.
+	 */
+	public int gateCount() {
+		return this.gates.size();
+	}
+
+	/**
+	 * Returns the circuit modifiers of the circuit, in the order they are
+	 * applied.
+	 *
+	 * @return An unmodifiable view of the circuit.
+	 */
+	public List<CircuitModifier> getCircuit() {
+		return Collections.unmodifiableList(this.gates);
+	}
+
 	@Override
 	public StateVector apply(StateVector state) {
 		// Run the circuit.
@@ -1,11 +1,12 @@
 package squire.circuit;
 
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 
+import squire.circuit.gates.UnitaryGate;
 import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix2;
+import squire.complex.ComplexMatrix4;
 
 /**
  * The {@code QuantumGate} class is an abstract implementation of the
@@ -20,8 +21,25 @@ import squire.complex.ComplexNumber;
  */
 public abstract class QuantumGate implements CombinableCircuitModifier {
 
-	private ComplexMatrix matrix;
+	/**
+	 * The full matrix of the gate, built from the local matrix on first request.
+	 * Gates may be shared between circuits and threads through a
+	 * {@link GateCache}, so this is published through a volatile write.
+	 */
+	private volatile ComplexMatrix matrix;
+	/**
+	 * The matrix of the gate as it acts on its target qubits alone.
+	 */
 	private ComplexMatrix originalMatrix;
+	/**
+	 * The dense form of a single-qubit gate matrix, or null for larger gates.
+	 */
+	private ComplexMatrix2 matrix2;
+	/**
+	 * The dense form of a two-qubit gate matrix, or null for other gates.
+	 */
+	private ComplexMatrix4 matrix4;
+	private int[] targets;
 	private int size;
 
 	/**
@@ -31,166 +49,169 @@ public abstract class QuantumGate implements CombinableCircuitModifier {
 	 * matrix to the specified target qubits within a quantum register of the
 	 * provided size.
 	 * 
+	 * Only the matrix and its targets are stored, so constructing a gate takes
+	 * constant time regardless of the size of the register. The matrix over the
+	 * whole register is built only if {@link #asMatrix()} is called.
+	 * 
 	 * @param matrix     The complex matrix defining the quantum gate.
 	 * @param numQubits  The total number of qubits in the quantum system.
 	 * @param targetBits The indices of the qubits to which the gate is applied.
-	 * @throws IllegalArgumentException If the matrix is not square or the number of
-	 *                                  target qubits is invalid.
+	 * @throws IllegalArgumentException If the matrix is not square, the number of
+	 *                                  target qubits is invalid, or a target is
+	 *                                  out of range or repeated.
 	 */
 	public QuantumGate(ComplexMatrix matrix, int numQubits, int... targetBits) {
 
 		// Check if the matrix is square and of the same size as the
 		// number of bits it's being applied to.
-		if (matrix.getRows().compareTo(matrix.getCols()) != 0) {
+		if (matrix.rows() != matrix.cols()) {
 			throw new IllegalArgumentException("The matrix for a quantum gate must be square.");
 		}
-		if (matrix.getRows().compareTo(BigInteger.valueOf(1 << targetBits.length)) != 0) {
+		if (matrix.rows() != 1L << targetBits.length) {
 			throw new IllegalArgumentException("The matrix cannot be applied to that number of bits.");
 		}
-		// Save the number of qubits.
-		this.size = numQubits;
-		
-		// Copy over the data.
-		this.originalMatrix = matrix;
-
-		// Generate a matrix that applies the original matrix to the specified bits of a
-		// quantum register of length numQubits.
-		// The number of qubits that need to be added to get to the full size.
-		int sizeDiff = numQubits - targetBits.length;
-
-		if (sizeDiff < 0) {
+		if (targetBits.length > numQubits) {
 			throw new IllegalArgumentException(
 					"The matrix for a quantum gate cannot have more rows than the system has qubits.");
 		}
 
-		// Now, create a matrix that brings the target bits to the top of the matrix.
-		ComplexMatrix rearrangeBits = ComplexMatrix.ident(1 << numQubits);
-		ComplexMatrix restoreBits = ComplexMatrix.ident(1 << numQubits);
-		// Will store the matrices used to rearrange the wires so the gate is simpler,
-		// in order.
-		ArrayList<ComplexMatrix> swapMatrices = new ArrayList<>();
-		HashSet<UnorderedPair> swaps = new HashSet<>();
-		for (int i = 0; i < targetBits.length; i++) {
-			// Forms a set of unordered pairs for the swaps.
-			// This prevents duplicates.
-			if (i != targetBits[i]) {
-				swaps.add(new UnorderedPair(i, targetBits[i]));
+		// Check that every target is a distinct qubit of the register.
+		BitSet seen = new BitSet();
+		for (int target : targetBits) {
+			if (target < 0 || target >= numQubits) {
+				throw new IllegalArgumentException(
+						"Cannot apply a gate to qubit " + target + " of a system of " + numQubits + " qubits");
 			}
+			if (seen.get(target)) {
+				throw new IllegalArgumentException("Cannot apply a gate to qubit " + target + " more than once");
+			}
+			seen.set(target);
 		}
 
-		// Applies the swaps.
-		for (UnorderedPair pair : swaps) {
-			swapMatrices.add(swapQubitsMatrix(numQubits, pair.x(), pair.y()));
-		}
-
-		// Now, multiply them in order to get the initial matrix, and multiply them in
-		// reverse order to get the inverse matrix.
-		// This works since the bit swapping matrices should (theoretically) be their
-		// own inverses.
-		for (int i = 0; i < swaps.size(); i++) {
-			rearrangeBits = rearrangeBits.mult(swapMatrices.get(i));
-			restoreBits = restoreBits.mult(swapMatrices.get(swaps.size() - i - 1));
-		}
+		// Save the number of qubits.
+		this.size = numQubits;
 
-		// Now, construct the matrix when applied to the first few bits.
-		ComplexMatrix appliedGate = this.originalMatrix;
-		if (sizeDiff > 0) {
-			appliedGate = ComplexMatrix.ident(1 << (sizeDiff));
-			appliedGate = appliedGate.tensor(this.originalMatrix);
+		// Copy over the data. Gates are shared between circuits through the gate
+		// cache, so the caller must not keep a handle on the matrix.
+		this.originalMatrix = matrix.copy();
+		this.targets = targetBits.clone();
+		if (targetBits.length == 1) {
+			this.matrix2 = ComplexMatrix2.of(matrix);
+		} else if (targetBits.length == 2) {
+			this.matrix4 = ComplexMatrix4.of(matrix);
 		}
-
-		// Rearrange the bits so that the targets are in the correct order, apply the
-		// matrix, then reorganize back to the original order.
-		this.matrix = rearrangeBits.mult(appliedGate).mult(restoreBits);
-
 	}
 
 	/**
-	 * Generates a complex matrix representing the operation of swapping the
-	 * positions of two qubits in a quantum system.
-	 *
+	 * Constructs a single-qubit quantum gate from a dense 2x2 matrix.
+	 * 
+	 * @param matrix    The 2x2 matrix defining the quantum gate.
 	 * @param numQubits The total number of qubits in the quantum system.
-	 * @param bit1      The index of the first qubit to be swapped.
-	 * @param bit2      The index of the second qubit to be swapped.
-	 * @return A complex matrix representing the qubit swap operation.
-	 * @throws IllegalArgumentException If either {@code bit1} or {@code bit2} is
-	 *                                  out of bounds for a matrix of size
-	 *                                  {@code numQubits}.
+	 * @param target    The index of the qubit to which the gate is applied.
 	 */
-	private ComplexMatrix swapQubitsMatrix(int numQubits, int bit1, int bit2) {
-
-		// Check if the bits are out of bounds.
-		if (bit1 >= numQubits || bit2 >= numQubits) {
-			throw new IllegalArgumentException(
-					"Cannot access row " + Math.max(bit1, bit2) + " in matrix of size " + numQubits);
-		}
-
-		if (bit1 < 0 || bit2 < 0) {
-			throw new IllegalArgumentException(
-					"Cannot access row " + Math.min(bit1, bit2) + " in matrix of size " + numQubits);
-		}
-
-		// If the bits aren't being switched, return the identity.
-		if (bit1 == bit2) {
-			return ComplexMatrix.ident(1 << numQubits);
-		}
-
-		// Create a zero matrix.
-		ComplexMatrix retval = ComplexMatrix.zero(1 << numQubits);
-
-		// Loop over every row
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(retval.getRows()) < 0; i = i.add(BigInteger.ONE)) {
-			boolean temp1, temp2;
-			// First, find out what row to swap with.
-			BigInteger r1 = i;
-			BigInteger r2 = i;
-
-			temp1 = r1.testBit(bit1);
-			temp2 = r1.testBit(bit2);
-
-			if (temp1) {
-				r2 = r2.setBit(bit2);
-			} else {
-				r2 = r2.clearBit(bit2);
-			}
-
-			if (temp2) {
-				r2 = r2.setBit(bit1);
-			} else {
-				r2 = r2.clearBit(bit1);
-			}
-
-			// Now set r1, r2 here and r2, r1 there.
-			retval.set(r1, r2, ComplexNumber.ONE);
-			retval.set(r2, r1, ComplexNumber.ONE);
+	public QuantumGate(ComplexMatrix2 matrix, int numQubits, int target) {
+		this(matrix.toComplexMatrix(), numQubits, target);
+		this.matrix2 = matrix;
+	}
 
-		}
-		return retval;
+	/**
+	 * Constructs a two-qubit quantum gate from a dense 4x4 matrix. Bit 0 of the
+	 * matrix index corresponds to {@code target} and bit 1 to {@code control}.
+	 * 
+	 * @param matrix    The 4x4 matrix defining the quantum gate.
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param target    The index of the qubit corresponding to bit 0 of the
+	 *                  matrix index.
+	 * @param control   The index of the qubit corresponding to bit 1 of the
+	 *                  matrix index.
+	 */
+	public QuantumGate(ComplexMatrix4 matrix, int numQubits, int target, int control) {
+		this(matrix.toComplexMatrix(), numQubits, target, control);
+		this.matrix4 = matrix;
 	}
 
 	/**
-	 * Applies the quantum gate to a given quantum state vector.
+	 * Applies the quantum gate to a given quantum state vector. The gate's local
+	 * matrix is applied directly to each group of amplitudes that differ only in
+	 * the target qubits, so the full matrix is never built.
 	 *
 	 * @param state The quantum state vector to which the gate is applied.
 	 * @return The resulting quantum state vector after applying the gate.
+	 * @throws IllegalArgumentException If the state does not have the same number
+	 *                                  of qubits as the gate.
 	 */
 	public StateVector apply(StateVector state) {
-		return state.applyMatrix(this.matrix);
+		if (state.numQubits() != this.size) {
+			throw new IllegalArgumentException("Cannot apply a gate on " + this.size + " qubits to a state of "
+					+ state.numQubits() + " qubits");
+		}
+		if (this.matrix2 != null) {
+			return state.applyGate(this.matrix2, this.targets[0]);
+		}
+		if (this.matrix4 != null) {
+			return state.applyGate(this.matrix4, this.targets[0], this.targets[1]);
+		}
+		return state.applyGate(this.originalMatrix, this.targets);
 	}
 
 	/**
-	 * Returns the complex matrix representation of the quantum gate.
+	 * Returns the complex matrix representation of the quantum gate over the whole
+	 * register. The full matrix has 2<sup>n</sup> rows, so it is only built the
+	 * first time it is requested; each call returns a copy of it, so changing the
+	 * result does not change the gate.
 	 *
 	 * @return The complex matrix of the quantum gate.
 	 */
 	public ComplexMatrix asMatrix() {
+		return this.fullMatrix().copy();
+	}
+
+	/**
+	 * Gets the full matrix of the gate without copying it, building it on first
+	 * request. The result must not be changed.
+	 */
+	private ComplexMatrix fullMatrix() {
+		if (this.matrix == null) {
+			this.matrix = this.expand();
+		}
 		return this.matrix;
 	}
 
+	/**
+	 * Builds the full matrix of the gate. Each non-zero entry (i, j) of the local
+	 * matrix is copied to every pair of basis states that agree on the qubits
+	 * outside the targets and whose target bits spell out i and j.
+	 */
+	private ComplexMatrix expand() {
+		int k = this.targets.length;
+		long[] offsets = new long[1 << k];
+		for (int j = 0; j < offsets.length; j++) {
+			for (int i = 0; i < k; i++) {
+				if ((j & (1 << i)) != 0) {
+					offsets[j] |= 1L << this.targets[i];
+				}
+			}
+		}
+		long mask = offsets[offsets.length - 1];
+
+		ComplexMatrix result = new ComplexMatrix(1L << this.size, 1L << this.size);
+		for (long base = 0; base < 1L << this.size; base++) {
+			if ((base & mask) != 0) {
+				continue;
+			}
+			long b = base;
+			this.originalMatrix.forEachNonZero(
+					(i, j, re, im) -> result.set(b | offsets[(int) i], b | offsets[(int) j], re, im));
+		}
+		return result;
+	}
+
 	/**
 	 * Combines the current quantum gate with another combinable circuit modifier.
 	 * The combination is performed by multiplying the matrices representing both
-	 * modifiers. This method is part of the {@link CombinableCircuitModifier}
+	 * modifiers. When both are one- or two-qubit gates on the same qubits, only
+	 * their small dense matrices are multiplied and the result is another gate on
+	 * those qubits. This method is part of the {@link CombinableCircuitModifier}
 	 * interface.
 	 *
 	 * @param c The combinable circuit modifier to be combined with the current
@@ -200,7 +221,79 @@ public abstract class QuantumGate implements CombinableCircuitModifier {
 	 */
 	@Override
 	public CircuitModifier combine(CombinableCircuitModifier c) {
-		return this.asMatrix().mult(c.asMatrix());
+		// Gates on the same qubits are combined through their small dense matrices,
+		// keeping the result a gate on those qubits.
+		if (c instanceof QuantumGate that && that.size == this.size) {
+			if (this.matrix2 != null && that.matrix2 != null && this.targets[0] == that.targets[0]) {
+				return new UnitaryGate(this.matrix2.mult(that.matrix2), this.size, this.targets[0]);
+			}
+			if (this.matrix4 != null && that.matrix4 != null) {
+				if (Arrays.equals(this.targets, that.targets)) {
+					return new UnitaryGate(this.matrix4.mult(that.matrix4), this.size, this.targets[0],
+							this.targets[1]);
+				}
+				if (this.targets[0] == that.targets[1] && this.targets[1] == that.targets[0]) {
+					return new UnitaryGate(this.matrix4.mult(that.matrix4.swapQubits()), this.size,
+							this.targets[0], this.targets[1]);
+				}
+			}
+		}
+		return this.fullMatrix().mult(c.asMatrix());
+	}
+
+	/**
+	 * Returns the indices of the qubits this gate is applied to. Bit i of the
+	 * gate's matrix index corresponds to the i-th qubit returned.
+	 *
+	 * @return The target qubits of this gate.
+	 */
+	public int[] getTargets() {
+		return this.targets.clone();
+	}
+
+	/**
+	 * Creates a gate with the same local matrix acting on different qubits,
+	 * possibly of a register of a different size.
+	 *
+	 * @param numQubits The total number of qubits in the new register.
+	 * @param mapping   The new index of every qubit, indexed by its current index.
+	 * @return The remapped gate.
+	 * @throws IllegalArgumentException If a target is mapped outside the new
+	 *                                  register.
+	 */
+	public QuantumGate remap(int numQubits, int[] mapping) {
+		int[] mapped = new int[this.targets.length];
+		for (int i = 0; i < mapped.length; i++) {
+			mapped[i] = mapping[this.targets[i]];
+		}
+		if (this.matrix2 != null) {
+			return new UnitaryGate(this.matrix2, numQubits, mapped[0]);
+		}
+		if (this.matrix4 != null) {
+			return new UnitaryGate(this.matrix4, numQubits, mapped[0], mapped[1]);
+		}
+		return new UnitaryGate(this.originalMatrix, numQubits, mapped);
+	}
+
+	/**
+	 * Returns the matrix of this gate as it acts on its target qubits alone. The
+	 * result is a copy, so changing it does not change the gate.
+	 *
+	 * @return The 2<sup>k</sup>x2<sup>k</sup> matrix of the gate, where k is the
+	 *         number of target qubits.
+	 */
+	public ComplexMatrix getLocalMatrix() {
+		return this.originalMatrix.copy();
+	}
+
+	/**
+	 * Gets the matrix of this gate as it acts on its target qubits alone, without
+	 * copying it. The result must not be changed.
+	 *
+	 * @return The local matrix of the gate.
+	 */
+	ComplexMatrix localMatrix() {
+		return this.originalMatrix;
 	}
 	
 	@Override
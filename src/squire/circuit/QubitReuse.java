@@ -0,0 +1,256 @@
+package squire.circuit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import squire.circuit.gates.IGate;
+
+/**
+ * The {@code QubitReuse} class compiles a circuit onto fewer qubits by reusing
+ * qubits that are no longer needed. Each qubit of the original circuit is live
+ * from the first to the last modifier that touches it. Once a qubit's last
+ * operation has been applied, it is measured, its outcome is recorded, and it
+ * is reset to |0>, after which the same physical qubit is handed to the next
+ * original qubit to be touched for the first time. Qubits that are never
+ * touched are not simulated at all and always read |0>.
+ *
+ * Since the state vector holds 2<sup>n</sup> amplitudes, every qubit saved this
+ * way halves the memory and time needed to run the circuit. The compiled
+ * circuit is run with {@link #run(Random)}, which returns the outcome of every
+ * original qubit just like {@link QuantumCircuitSimulator#run()}.
+ *
+ * Circuits containing modifiers other than gates and measurements, such as
+ * nested circuits, are not compiled: every qubit is then kept in place.
+ *
+ * @see Reset
+ * @see QuantumCircuitSimulator#compileQubitReuse()
+ */
+public final class QubitReuse {
+
+	private final int originalWidth;
+	private final int width;
+	private final List<CircuitModifier> circuit;
+	/**
+	 * For every modifier of the compiled circuit, the original qubit whose final
+	 * outcome it measures, or -1.
+	 */
+	private final int[] records;
+	/**
+	 * The physical qubit holding each original qubit at the end of the circuit,
+	 * or -1 if the qubit was retired early or never used.
+	 */
+	private final int[] finalQubits;
+
+	private QubitReuse(int originalWidth, int width, List<CircuitModifier> circuit, int[] records,
+			int[] finalQubits) {
+		this.originalWidth = originalWidth;
+		this.width = width;
+		this.circuit = circuit;
+		this.records = records;
+		this.finalQubits = finalQubits;
+	}
+
+	/**
+	 * Compiles a circuit onto as few qubits as possible by measuring, resetting
+	 * and reusing qubits once their last operation has been applied.
+	 *
+	 * @param numQubits The number of qubits in the circuit.
+	 * @param circuit   The circuit modifiers, in the order they are applied.
+	 * @param random    The random source used by the inserted measurements and
+	 *                  resets.
+	 * @return The compiled circuit.
+	 */
+	public static QubitReuse compile(int numQubits, List<? extends CircuitModifier> circuit, Random random) {
+		// Find the first and last use of every qubit, ignoring identity gates.
+		int[] first = new int[numQubits];
+		int[] last = new int[numQubits];
+		Arrays.fill(first, -1);
+		for (int i = 0; i < circuit.size(); i++) {
+			int[] qubits = qubitsOf(circuit.get(i));
+			if (qubits == null) {
+				return identity(numQubits, circuit);
+			}
+			for (int q : qubits) {
+				if (first[q] < 0) {
+					first[q] = i;
+				}
+				last[q] = i;
+			}
+		}
+
+		// A fresh qubit is only allocated when none is free, so the width is the
+		// largest number of qubits live at once.
+		int[] live = new int[circuit.size() + 1];
+		for (int q = 0; q < numQubits; q++) {
+			if (first[q] >= 0) {
+				live[first[q]]++;
+				live[last[q] + 1]--;
+			}
+		}
+		int width = 0;
+		for (int i = 0, count = 0; i < circuit.size(); i++) {
+			count += live[i];
+			width = Math.max(width, count);
+		}
+		width = Math.max(width, 1);
+
+		int[] physical = new int[numQubits];
+		Arrays.fill(physical, -1);
+		Deque<Integer> free = new ArrayDeque<>();
+		int allocated = 0;
+
+		List<CircuitModifier> compiled = new ArrayList<>();
+		List<Integer> records = new ArrayList<>();
+		for (int i = 0; i < circuit.size(); i++) {
+			CircuitModifier modifier = circuit.get(i);
+			int[] qubits = qubitsOf(modifier);
+			if (qubits.length == 0) {
+				continue;
+			}
+
+			// Give every qubit touched for the first time a physical qubit.
+			for (int q : qubits) {
+				if (physical[q] < 0) {
+					physical[q] = free.isEmpty() ? allocated++ : free.pop();
+				}
+			}
+			if (modifier instanceof QuantumGate gate) {
+				compiled.add(gate.remap(width, physical));
+			} else if (modifier instanceof Measurement measurement) {
+				compiled.add(measurement.remap(width, physical[qubits[0]]));
+			} else {
+				compiled.add(((Reset) modifier).remap(width, physical[qubits[0]]));
+			}
+			records.add(-1);
+
+			// Retire every qubit whose last use this was: record its outcome, then
+			// reset it and hand it back to the pool.
+			for (int q : qubits) {
+				if (last[q] == i) {
+					compiled.add(new Measurement(width, physical[q], random));
+					records.add(q);
+					compiled.add(new Reset(width, physical[q], random));
+					records.add(-1);
+					free.push(physical[q]);
+				}
+			}
+		}
+
+		// Every used qubit has been retired, and unused qubits read |0>.
+		int[] finalQubits = new int[numQubits];
+		Arrays.fill(finalQubits, -1);
+		return new QubitReuse(numQubits, width, compiled, records.stream().mapToInt(Integer::intValue).toArray(),
+				finalQubits);
+	}
+
+	/**
+	 * Returns the qubits a modifier touches, an empty array for identity gates,
+	 * or null for modifiers that cannot be remapped.
+	 */
+	private static int[] qubitsOf(CircuitModifier modifier) {
+		if (modifier instanceof IGate) {
+			return new int[0];
+		}
+		if (modifier instanceof QuantumGate gate) {
+			return gate.getTargets();
+		}
+		if (modifier instanceof Measurement measurement) {
+			return new int[] { measurement.getTarget() };
+		}
+		if (modifier instanceof Reset reset) {
+			return new int[] { reset.getTarget() };
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the circuit unchanged, with every qubit measured at the end.
+	 */
+	private static QubitReuse identity(int numQubits, List<? extends CircuitModifier> circuit) {
+		int[] finalQubits = new int[numQubits];
+		Arrays.setAll(finalQubits, q -> q);
+		int[] records = new int[circuit.size()];
+		Arrays.fill(records, -1);
+		return new QubitReuse(numQubits, numQubits, new ArrayList<>(circuit), records, finalQubits);
+	}
+
+	/**
+	 * Runs the compiled circuit from the zero state and returns the outcome of
+	 * every qubit of the original circuit.
+	 *
+	 * @param random The random source used to measure the qubits that are still
+	 *               live at the end of the circuit.
+	 * @return The measured outcome of each original qubit, indexed by its
+	 *         original index.
+	 */
+	public boolean[] run(Random random) {
+		boolean[] vals = new boolean[this.originalWidth];
+		StateVector sv = StateVector.createZeroState(this.width);
+		for (int i = 0; i < this.circuit.size(); i++) {
+			sv = this.circuit.get(i).apply(sv);
+			if (this.records[i] >= 0) {
+				vals[this.records[i]] = sv.getMeasurement(((Measurement) this.circuit.get(i)).getTarget());
+			}
+		}
+		for (int q = 0; q < this.originalWidth; q++) {
+			if (this.finalQubits[q] >= 0) {
+				sv = sv.measure(this.finalQubits[q], random.nextDouble());
+				vals[q] = sv.getMeasurement(this.finalQubits[q]);
+			}
+		}
+		return vals;
+	}
+
+	/**
+	 * Gets the compiled circuit, which acts on {@link #width()} qubits.
+	 *
+	 * @return The compiled circuit modifiers, in the order they are applied.
+	 */
+	public List<CircuitModifier> circuit() {
+		return Collections.unmodifiableList(this.circuit);
+	}
+
+	/**
+	 * Gets the number of qubits the compiled circuit needs.
+	 *
+	 * @return The width of the compiled circuit.
+	 */
+	public int width() {
+		return this.width;
+	}
+
+	/**
+	 * Gets the number of qubits of the original circuit.
+	 *
+	 * @return The width of the original circuit.
+	 */
+	public int originalWidth() {
+		return this.originalWidth;
+	}
+
+	/**
+	 * Gets the number of qubits saved by the compilation. Each saved qubit halves
+	 * the size of the simulated state.
+	 *
+	 * @return The original width minus the compiled width.
+	 */
+	public int widthReduction() {
+		return this.originalWidth - this.width;
+	}
+
+	/**
+	 * Returns a human-readable summary of the compilation.
+	 *
+	 * @return The string representation of the compiled circuit.
+	 */
+	@Override
+	public String toString() {
+		return "QubitReuse[width=" + this.width + "/" + this.originalWidth + ", saved=" + this.widthReduction()
+				+ " qubits, modifiers=" + this.circuit.size() + "]";
+	}
+}
@@ -0,0 +1,67 @@
+package squire.circuit;
+
+import java.util.Random;
+
+/**
+ * The Reset class represents returning a single qubit to |0> in the middle of a
+ * circuit. The qubit is measured, collapsing the state, and flipped back to |0>
+ * if the outcome was |1>, so that it can be reused as a fresh qubit. It
+ * implements the UncombinableCircuitModifier interface, since a reset is not
+ * unitary and cannot be combined with other circuit modifiers. The state a
+ * reset is applied to is changed in place.
+ *
+ * @see StateVector#reset(int, double)
+ */
+public class Reset implements UncombinableCircuitModifier {
+
+	private int target;
+	private Random random;
+	private int size;
+
+	/**
+	 * Constructs a Reset object with the specified number of qubits, target qubit
+	 * index, and random number generator.
+	 *
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param target    The index of the qubit to be reset.
+	 * @param rand      The random number generator used for the probabilistic
+	 *                  outcome of the measurement that precedes the reset.
+	 */
+	public Reset(int numQubits, int target, Random rand) {
+		this.target = target;
+		this.random = rand;
+		this.size = numQubits;
+	}
+
+	/**
+	 * Gets the index of the qubit this operation resets.
+	 *
+	 * @return The reset qubit.
+	 */
+	public int getTarget() {
+		return this.target;
+	}
+
+	/**
+	 * Creates the same reset, with the same random source, on a qubit of a
+	 * different register.
+	 *
+	 * @param numQubits The total number of qubits in the new register.
+	 * @param target    The index of the qubit to reset in the new register.
+	 * @return The remapped reset.
+	 */
+	Reset remap(int numQubits, int target) {
+		return new Reset(numQubits, target, this.random);
+	}
+
+	@Override
+	public StateVector apply(StateVector state) {
+		return state.reset(this.target, this.random.nextDouble());
+	}
+
+	@Override
+	public int numQubits() {
+		return this.size;
+	}
+
+}
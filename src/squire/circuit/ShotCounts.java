@@ -0,0 +1,328 @@
+package squire.circuit;
+
+import java.util.Arrays;
+
+/**
+ * The {@code ShotCounts} class is a histogram of the outcomes of many runs of a
+ * circuit. Each outcome is packed into a {@code long}, bit q holding the value
+ * of qubit q, and counted in a primitive open-addressing hash table, so a
+ * million shots of a circuit with few distinct outcomes take a few kilobytes
+ * rather than an array per shot.
+ *
+ * A histogram is not thread-safe. Threads sampling in parallel each count into
+ * a histogram of their own, without locking, and the histograms are combined
+ * with {@link #merge(ShotCounts)} at the end; the two methods fit
+ * {@code Stream.collect} directly.
+ *
+ * @see QuantumCircuitSimulator#run(int)
+ */
+public final class ShotCounts {
+
+	/**
+	 * The number of slots a new histogram starts with.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int numQubits;
+	/**
+	 * The outcome held by each slot, meaningful only where the count is
+	 * positive.
+	 */
+	private long[] keys;
+	/**
+	 * The count of each slot; a count of zero marks an empty slot.
+	 */
+	private long[] counts;
+	private int size;
+	private long total;
+
+	/**
+	 * Constructs an empty histogram of the outcomes of a register of qubits.
+	 *
+	 * @param numQubits The number of qubits in each outcome.
+	 * @throws IllegalArgumentException If the outcomes do not fit in a
+	 *                                  {@code long}.
+	 */
+	public ShotCounts(int numQubits) {
+		if (numQubits < 0 || numQubits > Long.SIZE) {
+			throw new IllegalArgumentException("Cannot pack the outcomes of " + numQubits + " qubits into a long");
+		}
+		this.numQubits = numQubits;
+		this.keys = new long[INITIAL_CAPACITY];
+		this.counts = new long[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Packs the values of some qubits into a {@code long}, bit q holding the value
+	 * of qubit q.
+	 *
+	 * @param bits The value of each qubit, indexed by qubit.
+	 * @return The packed outcome.
+	 * @throws IllegalArgumentException If there are more than 64 qubits.
+	 */
+	public static long pack(boolean[] bits) {
+		if (bits.length > Long.SIZE) {
+			throw new IllegalArgumentException("Cannot pack the outcomes of " + bits.length + " qubits into a long");
+		}
+		long packed = 0;
+		for (int q = 0; q < bits.length; q++) {
+			if (bits[q]) {
+				packed |= 1L << q;
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * Unpacks an outcome into the value of each qubit.
+	 *
+	 * @param packed    The packed outcome.
+	 * @param numQubits The number of qubits in the outcome.
+	 * @return The value of each qubit, indexed by qubit.
+	 */
+	public static boolean[] unpack(long packed, int numQubits) {
+		boolean[] bits = new boolean[numQubits];
+		for (int q = 0; q < numQubits; q++) {
+			bits[q] = ((packed >>> q) & 1) == 1;
+		}
+		return bits;
+	}
+
+	/**
+	 * Counts one shot with the given outcome.
+	 *
+	 * @param outcome The packed outcome.
+	 */
+	public void add(long outcome) {
+		this.add(outcome, 1);
+	}
+
+	/**
+	 * Counts several shots with the given outcome.
+	 *
+	 * @param outcome The packed outcome.
+	 * @param count   The number of shots.
+	 * @throws IllegalArgumentException If the count is negative.
+	 */
+	public void add(long outcome, long count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Cannot count " + count + " shots");
+		}
+		if (count == 0) {
+			return;
+		}
+		int slot = this.slotOf(outcome);
+		if (this.counts[slot] == 0) {
+			this.keys[slot] = outcome;
+			this.size++;
+		}
+		this.counts[slot] += count;
+		this.total += count;
+		if (this.size * 2 > this.keys.length) {
+			this.grow();
+		}
+	}
+
+	/**
+	 * Adds every count of another histogram of the same register into this one.
+	 *
+	 * @param other The histogram to add.
+	 * @throws IllegalArgumentException If the histograms are of registers of
+	 *                                  different sizes.
+	 */
+	public void merge(ShotCounts other) {
+		if (other.numQubits != this.numQubits) {
+			throw new IllegalArgumentException("Cannot merge the counts of " + other.numQubits
+					+ " qubits into the counts of " + this.numQubits + " qubits");
+		}
+		other.forEach(this::add);
+	}
+
+	/**
+	 * Gets the number of shots with the given outcome.
+	 *
+	 * @param outcome The packed outcome.
+	 * @return The number of shots.
+	 */
+	public long get(long outcome) {
+		return this.counts[this.slotOf(outcome)];
+	}
+
+	/**
+	 * Gets the fraction of shots with the given outcome.
+	 *
+	 * @param outcome The packed outcome.
+	 * @return The frequency of the outcome, or 0 if there are no shots.
+	 */
+	public double frequency(long outcome) {
+		return this.total == 0 ? 0 : (double) this.get(outcome) / this.total;
+	}
+
+	/**
+	 * Gets the number of qubits in each outcome.
+	 *
+	 * @return The number of qubits.
+	 */
+	public int numQubits() {
+		return this.numQubits;
+	}
+
+	/**
+	 * Gets the number of distinct outcomes seen.
+	 *
+	 * @return The number of distinct outcomes.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the total number of shots counted.
+	 *
+	 * @return The number of shots.
+	 */
+	public long total() {
+		return this.total;
+	}
+
+	/**
+	 * Passes every outcome seen, with its count, to a consumer, in no particular
+	 * order.
+	 *
+	 * @param consumer The consumer of the counts.
+	 */
+	public void forEach(CountConsumer consumer) {
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			if (this.counts[slot] != 0) {
+				consumer.accept(this.keys[slot], this.counts[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Gets the most frequent outcomes, most frequent first, breaking ties by the
+	 * smaller packed outcome.
+	 *
+	 * @param k The largest number of outcomes to return.
+	 * @return The packed outcomes, at most k of them.
+	 */
+	public long[] topK(int k) {
+		int n = Math.min(Math.max(k, 0), this.size);
+		Long[] order = new Long[this.size];
+		int i = 0;
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			if (this.counts[slot] != 0) {
+				order[i++] = this.keys[slot];
+			}
+		}
+		Arrays.sort(order, (a, b) -> {
+			int byCount = Long.compare(this.get(b), this.get(a));
+			return byCount != 0 ? byCount : Long.compareUnsigned(a, b);
+		});
+		long[] top = new long[n];
+		for (int j = 0; j < n; j++) {
+			top[j] = order[j];
+		}
+		return top;
+	}
+
+	/**
+	 * Gets the counts of the outcomes of some of the qubits, adding together the
+	 * counts of outcomes that only differ in the other qubits.
+	 *
+	 * @param qubits The qubits to keep. Bit j of each outcome of the result is
+	 *               the value of qubit qubits[j].
+	 * @return The histogram of the outcomes of the qubits.
+	 * @throws IllegalArgumentException If a qubit is out of range.
+	 */
+	public ShotCounts marginal(int... qubits) {
+		for (int q : qubits) {
+			if (q < 0 || q >= this.numQubits) {
+				throw new IllegalArgumentException(
+						"Cannot access qubit " + q + " of counts of " + this.numQubits + " qubits");
+			}
+		}
+		ShotCounts marginal = new ShotCounts(qubits.length);
+		this.forEach((outcome, count) -> {
+			long bits = 0;
+			for (int j = 0; j < qubits.length; j++) {
+				bits |= ((outcome >>> qubits[j]) & 1) << j;
+			}
+			marginal.add(bits, count);
+		});
+		return marginal;
+	}
+
+	/**
+	 * Finds the slot holding an outcome, or the empty slot where it belongs, by
+	 * linear probing from its hash.
+	 */
+	private int slotOf(long outcome) {
+		int mask = this.keys.length - 1;
+		int slot = ShotCounts.hash(outcome) & mask;
+		while (this.counts[slot] != 0 && this.keys[slot] != outcome) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the number of slots and reinserts every outcome.
+	 */
+	private void grow() {
+		long[] oldKeys = this.keys;
+		long[] oldCounts = this.counts;
+		this.keys = new long[oldKeys.length << 1];
+		this.counts = new long[oldCounts.length << 1];
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldCounts[slot] != 0) {
+				int to = this.slotOf(oldKeys[slot]);
+				this.keys[to] = oldKeys[slot];
+				this.counts[to] = oldCounts[slot];
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of an outcome, since outcomes often differ only in their
+	 * low bits.
+	 */
+	private static int hash(long outcome) {
+		long h = outcome * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns the counts as a map from bitstrings, qubit 0 last, to counts.
+	 *
+	 * @return The string representation of the histogram.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("{");
+		for (long outcome : this.topK(this.size)) {
+			if (result.length() > 1) {
+				result.append(", ");
+			}
+			for (int q = this.numQubits - 1; q >= 0; q--) {
+				result.append((outcome >>> q) & 1);
+			}
+			result.append('=').append(this.get(outcome));
+		}
+		return result.append('}').toString();
+	}
+
+	/**
+	 * A consumer of the outcomes of a histogram and their counts.
+	 */
+	@FunctionalInterface
+	public interface CountConsumer {
+		/**
+		 * Accepts one outcome and its count.
+		 *
+		 * @param outcome The packed outcome.
+		 * @param count   The number of shots with the outcome.
+		 */
+		void accept(long outcome, long count);
+	}
+}
@@ -0,0 +1,182 @@
+package squire.circuit;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code StateSnapshot} class is a read-only view of a final state, taken
+ * with {@link StateVector#snapshot()}. A snapshot never changes, so any number
+ * of threads can sample shots from it, compute marginals and evaluate
+ * observables at the same time, without locks and without copying the state.
+ *
+ * A thread that needs to collapse the state takes its own {@link #state()},
+ * which shares the amplitudes of the snapshot until its first measurement,
+ * reset or postselection, and copies them then. Each thread should draw its
+ * random values from a source of its own, such as
+ * {@link ThreadLocalRandom#current()}, rather than share one
+ * {@link java.util.Random}.
+ *
+ * @see StateVector#snapshot()
+ */
+public final class StateSnapshot {
+
+	/**
+	 * The shared state, which copies its amplitudes before any change, and is
+	 * never changed through this snapshot.
+	 */
+	private final StateVector state;
+	/**
+	 * The alias table of the probabilities of the basis states, built by the
+	 * first sample taken.
+	 */
+	private volatile AliasTable table;
+
+	/**
+	 * Constructs a snapshot of a state whose amplitudes are already shared.
+	 *
+	 * @param state The shared state.
+	 */
+	StateSnapshot(StateVector state) {
+		this.state = state;
+	}
+
+	/**
+	 * Gets the number of qubits of the state.
+	 *
+	 * @return The number of qubits.
+	 */
+	public int numQubits() {
+		return this.state.numQubits();
+	}
+
+	/**
+	 * Gets the probability that every postselection applied on the way to the
+	 * state succeeded.
+	 *
+	 * @return The acceptance probability.
+	 */
+	public double getAcceptance() {
+		return this.state.getAcceptance();
+	}
+
+	/**
+	 * Gets a state with the amplitudes of this snapshot, to be evolved or
+	 * collapsed by one thread. The amplitudes are copied when the state first
+	 * changes them in place, so the snapshot is left unchanged.
+	 *
+	 * @return The copy-on-write state.
+	 */
+	public StateVector state() {
+		return this.state.view();
+	}
+
+	/**
+	 * Computes the probability of each basis state.
+	 *
+	 * @return The probabilities, indexed by basis state.
+	 */
+	public double[] probabilities() {
+		return this.state.probabilities();
+	}
+
+	/**
+	 * Computes the marginal probability distribution of some of the qubits.
+	 *
+	 * @param qubits The qubits whose distribution to compute.
+	 * @return The probability of each combination of outcomes.
+	 * @throws IllegalArgumentException If a qubit is not a qubit of the state.
+	 *
+	 * @see StateVector#marginal(int...)
+	 */
+	public double[] marginal(int... qubits) {
+		return this.state.marginal(qubits);
+	}
+
+	/**
+	 * Computes the fidelity of the state with another state.
+	 *
+	 * @param that The other state.
+	 * @return The fidelity of the two states.
+	 *
+	 * @see StateVector#fidelity(StateVector)
+	 */
+	public double fidelity(StateVector that) {
+		return this.state.fidelity(that);
+	}
+
+	/**
+	 * Computes the expectation value of the product of Pauli-Z operators on some
+	 * of the qubits: the probability that an even number of them are measured as
+	 * |1⟩, less the probability that an odd number are.
+	 *
+	 * @param qubits The qubits of the product.
+	 * @return The expectation value, in [-1, 1].
+	 * @throws IllegalArgumentException If a qubit is not a qubit of the state.
+	 */
+	public double expectationZ(int... qubits) {
+		double[] chances = this.state.marginal(qubits);
+		double expectation = 0;
+		for (int k = 0; k < chances.length; k++) {
+			expectation += (Integer.bitCount(k) & 1) == 0 ? chances[k] : -chances[k];
+		}
+		return expectation;
+	}
+
+	/**
+	 * Draws shots from the state, measuring every qubit, without collapsing it.
+	 * Each shot is drawn in constant time from an alias table built once and
+	 * shared by every thread sampling this snapshot.
+	 *
+	 * @param shots  The number of shots.
+	 * @param random The random source, which should not be shared with other
+	 *               threads.
+	 * @return The counts of the outcomes, bit q of each holding qubit q.
+	 * @throws IllegalArgumentException If the number of shots is negative.
+	 */
+	public ShotCounts sample(int shots, RandomGenerator random) {
+		if (shots < 0) {
+			throw new IllegalArgumentException("Cannot draw " + shots + " shots");
+		}
+		AliasTable table = this.table();
+		ShotCounts counts = new ShotCounts(this.numQubits());
+		for (int s = 0; s < shots; s++) {
+			counts.add(table.sample(random));
+		}
+		return counts;
+	}
+
+	/**
+	 * Draws shots from the state in parallel, measuring every qubit, without
+	 * collapsing it. Each worker draws from {@link ThreadLocalRandom} into a
+	 * histogram of its own, and the histograms are merged at the end, so the
+	 * workers never contend. The result is not reproducible; use
+	 * {@link #sample(int, RandomGenerator)} with a seeded source for that.
+	 *
+	 * @param shots The number of shots.
+	 * @return The counts of the outcomes, bit q of each holding qubit q.
+	 * @throws IllegalArgumentException If the number of shots is negative.
+	 */
+	public ShotCounts sample(int shots) {
+		if (shots < 0) {
+			throw new IllegalArgumentException("Cannot draw " + shots + " shots");
+		}
+		AliasTable table = this.table();
+		int numQubits = this.numQubits();
+		return IntStream.range(0, shots).parallel().collect(() -> new ShotCounts(numQubits),
+				(counts, s) -> counts.add(table.sample(ThreadLocalRandom.current())), ShotCounts::merge);
+	}
+
+	/**
+	 * Gets the alias table of the state, building it on first use. Threads that
+	 * race to build it build equal tables, so no lock is needed.
+	 */
+	private AliasTable table() {
+		AliasTable table = this.table;
+		if (table == null) {
+			table = new AliasTable(this.state.probabilities());
+			this.table = table;
+		}
+		return table;
+	}
+}
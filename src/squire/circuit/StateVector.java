@@ -2,9 +2,17 @@ package squire.circuit;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
 
+import squire.complex.CSRMatrix;
+import squire.complex.ComplexAccumulator;
+import squire.complex.ComplexMath;
 import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix2;
+import squire.complex.ComplexMatrix4;
 import squire.complex.ComplexNumber;
+import squire.complex.KroneckerOperator;
 
 /**
  * Represents a quantum state vector, which is a mathematical entity used to
@@ -15,23 +23,95 @@ import squire.complex.ComplexNumber;
  */
 public class StateVector {
 
+	/**
+	 * The number of amplitude groups above which gates are applied in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * The number of amplitude groups handled by each parallel task.
+	 */
+	private static final int BLOCK_SIZE = 1 << 12;
+
+	/**
+	 * The probability below which an outcome is treated as impossible, matching
+	 * the tolerance of {@link ComplexNumber#equals(Object)}.
+	 */
+	static final double ZERO_CHANCE = 1e-10;
+
+	/**
+	 * The magnitude, relative to the norm of the state, below which an amplitude
+	 * is taken to be rounding error left by the gates rather than a genuine
+	 * amplitude: a few hundred units in the last place of 1.
+	 */
+	private static final double ROUNDOFF = 256 * Math.ulp(1.0);
+
 	private int numBits;
-	private ComplexMatrix amplitudes;
+	/**
+	 * The real parts of the probability amplitudes, indexed by basis state.
+	 */
+	private double[] real;
+	/**
+	 * The imaginary parts of the probability amplitudes, indexed by basis state.
+	 */
+	private double[] imag;
+	/**
+	 * The probability that every postselection applied on the way to this state
+	 * succeeded.
+	 */
+	private double acceptance = 1;
+	/**
+	 * Whether the amplitude arrays are shared with a {@link StateSnapshot}, in
+	 * which case they are copied before they are first changed in place.
+	 */
+	private boolean shared;
 
 	/**
-	 * Private constructor used by the static factory method.
+	 * Private constructor used by the static factory method. Null amplitudes are
+	 * treated as zero.
 	 */
 	private StateVector(int size, ComplexNumber[] amplitudes) {
-		this.numBits = size;
-		this.amplitudes = convertToColumnVector(Arrays.copyOf(amplitudes, amplitudes.length));
+		this(size, new double[amplitudes.length], new double[amplitudes.length]);
+		for (int i = 0; i < amplitudes.length; i++) {
+			if (amplitudes[i] != null) {
+				this.real[i] = amplitudes[i].real();
+				this.imag[i] = amplitudes[i].imag();
+			}
+		}
 	}
 
 	/**
 	 * Private constructor used by the static factory method.
 	 */
 	private StateVector(int size, ComplexMatrix matrix) {
+		this(size, new double[Math.toIntExact(matrix.rows())], new double[Math.toIntExact(matrix.rows())]);
+		matrix.forEachNonZero((i, j, re, im) -> {
+			if (j == 0) {
+				this.real[(int) i] = re;
+				this.imag[(int) i] = im;
+			}
+		});
+	}
+
+	/**
+	 * Private constructor that takes ownership of the given amplitude arrays
+	 * without copying them.
+	 */
+	private StateVector(int size, double[] real, double[] imag) {
 		this.numBits = size;
-		this.amplitudes = matrix.add(new ComplexNumber(0, 0));
+		this.real = real;
+		this.imag = imag;
+	}
+
+	/**
+	 * Creates a state of the same size that follows on from this one, taking
+	 * ownership of the given amplitude arrays and carrying over the acceptance
+	 * probability of earlier postselections.
+	 */
+	private StateVector derive(double[] real, double[] imag) {
+		StateVector next = new StateVector(this.numBits, real, imag);
+		next.acceptance = this.acceptance;
+		return next;
 	}
 
 	/**
@@ -69,38 +149,60 @@ public class StateVector {
 	 * @return A new instance of StateVector representing the state |0⟩.
 	 */
 	public static StateVector createZeroState(int numBits) {
-		ComplexNumber[] zeroAmplitudes = new ComplexNumber[1 << numBits];
-		zeroAmplitudes[0] = new ComplexNumber(1, 0); // Probability amplitude of |0⟩ is 1, others are 0
-		return new StateVector(numBits, zeroAmplitudes);
+		return StateVector.createBasisState(numBits, 0);
 	}
 
 	/**
-	 * Constructor: Creates an instance of the StateVector class, initializing it to
-	 * have amplitudes of zero.
+	 * Creates the computational basis state with the given index, in which qubit
+	 * q is |1⟩ exactly when bit q of the index is set.
 	 *
 	 * @param numBits The number of qubits in the system.
-	 * @return A new instance of StateVector with amplitudes of zero.
+	 * @param index   The index of the basis state.
+	 * @return A new instance of StateVector representing the basis state.
+	 * @throws IllegalArgumentException If the index is not a basis state of the
+	 *                                  system.
 	 */
-	public static StateVector empty(int numBits) {
-		ComplexNumber[] zeroAmplitudes = new ComplexNumber[1 << numBits];
-		return new StateVector(numBits, zeroAmplitudes);
+	public static StateVector createBasisState(int numBits, int index) {
+		int length = 1 << numBits;
+		if (index < 0 || index >= length) {
+			throw new IllegalArgumentException(
+					"Cannot create basis state " + index + " of a state of " + numBits + " qubits");
+		}
+		double[] real = new double[length];
+		real[index] = 1;
+		return new StateVector(numBits, real, new double[length]);
 	}
 
 	/**
-	 * Converts an array of complex numbers to a column vector.
+	 * Creates a random state, drawn uniformly from the unit sphere of the state
+	 * space by normalizing independent Gaussian amplitudes.
 	 *
-	 * @param amps The array of complex numbers.
-	 * @return The column vector representing the state.
+	 * @param numBits The number of qubits in the system.
+	 * @param random  The random source.
+	 * @return A new instance of StateVector representing the random state.
 	 */
-	private static ComplexMatrix convertToColumnVector(ComplexNumber[] amps) {
-		int size = amps.length;
-		ComplexMatrix columnVector = new ComplexMatrix(size, 1);
-
-		for (int i = 0; i < size; i++) {
-			columnVector.set(i, 0, amps[i]);
+	public static StateVector createRandomState(int numBits, Random random) {
+		int length = 1 << numBits;
+		double[] real = new double[length];
+		double[] imag = new double[length];
+		for (int i = 0; i < length; i++) {
+			real[i] = random.nextGaussian();
+			imag[i] = random.nextGaussian();
 		}
+		ComplexMath.scale(real, imag, 1 / Math.sqrt(ComplexMath.normSquared(real, imag)));
+		return new StateVector(numBits, real, imag);
+	}
 
-		return columnVector;
+	/**
+	 * Constructor: Creates an instance of the StateVector class, initializing it to
+	 * have amplitudes of zero.
+	 *
+	 * @param numBits The number of qubits in the system.
+	 * @return A new instance of StateVector with amplitudes of zero.
+	 */
+	public static StateVector empty(int numBits) {
+		ComplexNumber[] zeroAmplitudes = new ComplexNumber[1 << numBits];
+		return new StateVector(numBits, zeroAmplitudes);
 	}
 
 	/**
@@ -110,10 +212,11 @@ public class StateVector {
 	 * @return The probability amplitude for the specified basis state.
 	 */
 	public ComplexNumber getAmplitude(BigInteger basisState) {
-		if (basisState.compareTo(BigInteger.ZERO) < 0 || basisState.compareTo(amplitudes.getRows()) >= 0) {
+		if (basisState.signum() < 0 || basisState.compareTo(BigInteger.valueOf(this.real.length)) >= 0) {
 			throw new IllegalArgumentException("Invalid basis state index");
 		}
-		return amplitudes.get(basisState, BigInteger.ZERO);
+		int i = basisState.intValue();
+		return new ComplexNumber(this.real[i], this.imag[i]);
 	}
 
 	/**
@@ -126,6 +229,20 @@ public class StateVector {
 	 * @return A projection matrix for the desired state.
 	 */
 	public static ComplexMatrix projector(int n, int q, boolean s) {
+		return StateVector.projectorOperator(n, q, s).asMatrix();
+	}
+
+	/**
+	 * Returns a projection operator for the specified qubit q (with state s) in an
+	 * n-qubit system, as a Kronecker product that never expands the identities on
+	 * the other qubits.
+	 * 
+	 * @param n The number of qubits in the system.
+	 * @param q The qubit to project onto.
+	 * @param s The qubit state to project onto.
+	 * @return A projection operator for the desired state.
+	 */
+	public static KroneckerOperator projectorOperator(int n, int q, boolean s) {
 
 		if (q >= n) {
 			throw new IllegalArgumentException("Invalid qubit index");
@@ -138,20 +255,8 @@ public class StateVector {
 			retval.set(1, 1, ComplexNumber.ONE);
 		}
 
-		if (n == 1) {
-			return retval;
-		}
-
-		if (n != q - 1) {
-			retval = ComplexMatrix.ident(1 << (n - q - 1)).tensor(retval);
-
-		}
-
-		if (q != 0) {
-			retval = retval.tensor(ComplexMatrix.ident(1 << q));
-		}
-
-		return retval;
+		return KroneckerOperator.identity(1L << (n - q - 1)).tensor(retval)
+				.tensor(KroneckerOperator.identity(1L << q));
 	}
 
 	/**
@@ -162,14 +267,38 @@ public class StateVector {
 	 */
 	public ComplexNumber inner(StateVector that) {
 
-		ComplexNumber prod = ComplexNumber.ZERO;
+		ComplexAccumulator prod = new ComplexAccumulator();
+		ComplexMath.inner(that.real, that.imag, this.real, this.imag, prod);
 
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.amplitudes.getRows()) < 0; i = i.add(BigInteger.ONE)) {
-			prod = prod
-					.add(that.amplitudes.get(i, BigInteger.ZERO).conj().mult(this.amplitudes.get(i, BigInteger.ZERO)));
-		}
+		return prod.toComplexNumber();
+	}
 
-		return prod;
+	/**
+	 * Computes the fidelity of this state with another state of the same size,
+	 * the squared magnitude of their inner product. Two normalized states have a
+	 * fidelity of 1 exactly when they are equal up to a global phase.
+	 * 
+	 * @param that The other state.
+	 * @return The fidelity of the two states.
+	 */
+	public double fidelity(StateVector that) {
+		ComplexAccumulator prod = new ComplexAccumulator();
+		ComplexMath.inner(that.real, that.imag, this.real, this.imag, prod);
+		return ComplexMath.magSquared(prod.real(), prod.imag());
+	}
+
+	/**
+	 * Computes the probability of measuring each basis state, the squared
+	 * magnitude of its amplitude.
+	 * 
+	 * @return The probabilities, indexed by basis state.
+	 */
+	public double[] probabilities() {
+		double[] probabilities = new double[this.real.length];
+		for (int i = 0; i < probabilities.length; i++) {
+			probabilities[i] = ComplexMath.magSquared(this.real[i], this.imag[i]);
+		}
+		return probabilities;
 	}
 
 	/**
@@ -179,13 +308,11 @@ public class StateVector {
 	 */
 	public StateVector norm() {
 
-		StateVector sv = StateVector.empty(this.numBits);
+		StateVector sv = this.derive(this.real.clone(), this.imag.clone());
 
-		double amplitude = Math.sqrt(this.inner(this).real());
+		double amplitude = Math.sqrt(ComplexMath.normSquared(this.real, this.imag));
 
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(sv.amplitudes.getRows()) < 0; i = i.add(BigInteger.ONE)) {
-			sv.amplitudes.set(i, BigInteger.ZERO, this.amplitudes.get(i, BigInteger.ZERO).div(amplitude));
-		}
+		ComplexMath.scale(sv.real, sv.imag, 1 / amplitude);
 		return sv;
 	}
 
@@ -198,7 +325,195 @@ public class StateVector {
 	 */
 	public StateVector applyMatrix(ComplexMatrix matrix) {
 
-		return new StateVector(this.numBits, matrix.mult(this.amplitudes));
+		// Multiply by the frozen CSR form of the matrix, which only visits its
+		// non-zero entries.
+		CSRMatrix csr = matrix.freeze();
+		double[] resultReal = new double[csr.rows()];
+		double[] resultImag = new double[csr.rows()];
+		csr.multVector(this.real, this.imag, resultReal, resultImag);
+		return this.derive(resultReal, resultImag);
+	}
+
+	/**
+	 * Applies the given Kronecker operator to this state, returning a new state
+	 * with the resulting value. The operator is applied factor by factor and is
+	 * never expanded into a full matrix.
+	 * 
+	 * @param operator The operator to apply to this state.
+	 * @return The result of the multiplication.
+	 */
+	public StateVector applyOperator(KroneckerOperator operator) {
+
+		double[] resultReal = new double[this.real.length];
+		double[] resultImag = new double[this.imag.length];
+		operator.multVector(this.real, this.imag, resultReal, resultImag);
+		return this.derive(resultReal, resultImag);
+	}
+
+	/**
+	 * Gets the number of qubits described by this state.
+	 * 
+	 * @return The number of qubits.
+	 */
+	public int numQubits() {
+		return this.numBits;
+	}
+
+	/**
+	 * Applies a single-qubit gate to the specified qubit, returning a new state
+	 * with the resulting value. The 2x2 matrix is applied to each pair of
+	 * amplitudes that differ only in the target qubit.
+	 * 
+	 * @param gate   The matrix of the gate.
+	 * @param target The qubit the gate acts on.
+	 * @return The result of applying the gate.
+	 * @throws IllegalArgumentException If the target is not a qubit of this state.
+	 */
+	public StateVector applyGate(ComplexMatrix2 gate, int target) {
+		this.checkQubit(target);
+		double[] resultReal = this.real.clone();
+		double[] resultImag = this.imag.clone();
+		int bit = 1 << target;
+		forEachBlock(this.real.length >> 1, (from, to) -> {
+			for (int k = from; k < to; k++) {
+				int i0 = insertZero(k, target);
+				gate.apply(resultReal, resultImag, i0, i0 | bit);
+			}
+		});
+		return this.derive(resultReal, resultImag);
+	}
+
+	/**
+	 * Applies a two-qubit gate to the specified qubits, returning a new state with
+	 * the resulting value. The 4x4 matrix is applied to each group of four
+	 * amplitudes that differ only in the two qubits.
+	 * 
+	 * @param gate    The matrix of the gate.
+	 * @param target  The qubit corresponding to bit 0 of the matrix index.
+	 * @param control The qubit corresponding to bit 1 of the matrix index.
+	 * @return The result of applying the gate.
+	 * @throws IllegalArgumentException If either qubit is not a qubit of this
+	 *                                  state, or they are the same qubit.
+	 */
+	public StateVector applyGate(ComplexMatrix4 gate, int target, int control) {
+		this.checkQubit(target);
+		this.checkQubit(control);
+		if (target == control) {
+			throw new IllegalArgumentException("Cannot apply a two-qubit gate to qubit " + target + " twice");
+		}
+		double[] resultReal = this.real.clone();
+		double[] resultImag = this.imag.clone();
+		int bit0 = 1 << target;
+		int bit1 = 1 << control;
+		int low = Math.min(target, control);
+		int high = Math.max(target, control);
+		forEachBlock(this.real.length >> 2, (from, to) -> {
+			for (int k = from; k < to; k++) {
+				int i0 = insertZero(insertZero(k, low), high);
+				gate.apply(resultReal, resultImag, i0, i0 | bit0, i0 | bit1, i0 | bit0 | bit1);
+			}
+		});
+		return this.derive(resultReal, resultImag);
+	}
+
+	/**
+	 * Applies a gate on any number of qubits to the specified qubits, returning a
+	 * new state with the resulting value. For each group of amplitudes that differ
+	 * only in the target qubits, the group is gathered into a short vector,
+	 * multiplied by the gate's matrix and scattered back.
+	 * 
+	 * @param gate    The 2<sup>k</sup>x2<sup>k</sup> matrix of the gate.
+	 * @param targets The k qubits the gate acts on, where {@code targets[i]}
+	 *                corresponds to bit i of the matrix index.
+	 * @return The result of applying the gate.
+	 * @throws IllegalArgumentException If the matrix does not match the number of
+	 *                                  targets, or a target is not a qubit of this
+	 *                                  state.
+	 */
+	public StateVector applyGate(ComplexMatrix gate, int... targets) {
+		int k = targets.length;
+		if (gate.rows() != 1L << k || gate.cols() != 1L << k) {
+			throw new IllegalArgumentException("A " + gate.rows() + "x" + gate.cols()
+					+ " matrix cannot be applied to " + k + " qubits.");
+		}
+		int[] offsets = new int[1 << k];
+		for (int i = 0; i < k; i++) {
+			this.checkQubit(targets[i]);
+			for (int j = 0; j < offsets.length; j++) {
+				if ((j & (1 << i)) != 0) {
+					offsets[j] |= 1 << targets[i];
+				}
+			}
+		}
+		int[] sorted = targets.clone();
+		Arrays.sort(sorted);
+
+		CSRMatrix csr = gate.freeze();
+		double[] resultReal = new double[this.real.length];
+		double[] resultImag = new double[this.imag.length];
+		forEachBlock(this.real.length >> k, (from, to) -> {
+			double[] inRe = new double[offsets.length];
+			double[] inIm = new double[offsets.length];
+			double[] outRe = new double[offsets.length];
+			double[] outIm = new double[offsets.length];
+			for (int g = from; g < to; g++) {
+				int base = g;
+				for (int bit : sorted) {
+					base = insertZero(base, bit);
+				}
+				for (int j = 0; j < offsets.length; j++) {
+					inRe[j] = this.real[base | offsets[j]];
+					inIm[j] = this.imag[base | offsets[j]];
+				}
+				csr.multVector(inRe, inIm, outRe, outIm);
+				for (int j = 0; j < offsets.length; j++) {
+					resultReal[base | offsets[j]] = outRe[j];
+					resultImag[base | offsets[j]] = outIm[j];
+				}
+			}
+		});
+		return this.derive(resultReal, resultImag);
+	}
+
+	/**
+	 * Checks that q is a qubit of this state.
+	 */
+	private void checkQubit(int q) {
+		if (q < 0 || q >= this.numBits) {
+			throw new IllegalArgumentException(
+					"Cannot access qubit " + q + " of a state of " + this.numBits + " qubits");
+		}
+	}
+
+	/**
+	 * Inserts a zero bit at position q of the given index, shifting the higher
+	 * bits up by one.
+	 */
+	private static int insertZero(int index, int q) {
+		int lowMask = (1 << q) - 1;
+		return ((index & ~lowMask) << 1) | (index & lowMask);
+	}
+
+	/**
+	 * Runs a task over the range [0, count), split into blocks that are processed
+	 * in parallel when the range is large.
+	 */
+	private static void forEachBlock(int count, BlockTask task) {
+		if (count < PARALLEL_THRESHOLD) {
+			task.run(0, count);
+		} else {
+			int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			IntStream.range(0, blocks).parallel()
+					.forEach(b -> task.run(b * BLOCK_SIZE, Math.min(count, (b + 1) * BLOCK_SIZE)));
+		}
+	}
+
+	/**
+	 * A task that processes the range [from, to) of some index space.
+	 */
+	@FunctionalInterface
+	private interface BlockTask {
+		void run(int from, int to);
 	}
 
 	/**
@@ -211,54 +526,439 @@ public class StateVector {
 	 * @return The result of the projection.
 	 */
 	public StateVector project(int q, boolean s) {
-
-		StateVector unnormed = this.projectUnnormed(q, s);
-		if (unnormed.inner(unnormed).equals(ComplexNumber.ZERO)) {
+		this.checkQubit(q);
+		double chanceOfTrue = this.chanceOfTrue(q);
+		double chance = s ? chanceOfTrue : 1 - chanceOfTrue;
+		if (chance < ZERO_CHANCE) {
 			return null;
 		}
-		return unnormed.norm();
+		StateVector projected = this.derive(this.real.clone(), this.imag.clone());
+		projected.collapse(q, s, chance);
+		return projected;
 	}
 
 	/**
-	 * Returns the normalized projection of the state vector onto the specified
-	 * qubit state. Returns null if the state vector is orthogonal to the specified
-	 * state.
+	 * Computes the probability that the specified qubit is measured as |1⟩, in one
+	 * pass over the half of the state in which it is set. The state is assumed to
+	 * be normalized.
 	 * 
-	 * @param n The number of qubits in the system.
-	 * @param q The qubit to project onto.
-	 * @param s The qubit state to project onto.
-	 * @return The result of the projection.
+	 * @param q The qubit.
+	 * @return The probability of measuring the qubit as |1⟩.
 	 */
-	private StateVector projectUnnormed(int q, boolean s) {
-		return this.applyMatrix(StateVector.projector(this.numBits, q, s));
+	private double chanceOfTrue(int q) {
+		int bit = 1 << q;
+		double chance = 0;
+		for (int block = bit; block < this.real.length; block += bit << 1) {
+			for (int i = block; i < block + bit; i++) {
+				chance += ComplexMath.magSquared(this.real[i], this.imag[i]);
+			}
+		}
+		return chance;
 	}
 
 	/**
-	 * Measures the specified qubit q with the number x as the random value,
-	 * returning the resulting state. This collapses the state.
+	 * Collapses the specified qubit onto the given value in place: the amplitudes
+	 * in which the qubit has the other value are zeroed, and the rest are
+	 * rescaled to keep the state normalized.
+	 * 
+	 * @param q      The qubit.
+	 * @param s      The value to collapse onto.
+	 * @param chance The probability of the value, which must be positive.
+	 */
+	private void collapse(int q, boolean s, double chance) {
+		this.unshare();
+		int bit = 1 << q;
+		int kept = s ? bit : 0;
+		double scale = 1 / Math.sqrt(chance);
+		for (int block = 0; block < this.real.length; block += bit << 1) {
+			for (int i = block; i < block + bit; i++) {
+				this.real[i ^ kept ^ bit] = 0;
+				this.imag[i ^ kept ^ bit] = 0;
+				this.real[i | kept] *= scale;
+				this.imag[i | kept] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * Measures the specified qubit q with the number x as the random value. This
+	 * collapses the state in place, in a single pass to find the probability of
+	 * the qubit and a second to zero the rejected half and rescale the kept half,
+	 * without allocating unless the amplitudes are shared with a
+	 * {@link StateSnapshot}.
 	 * 
 	 * @param q The qubit to measure
 	 * 
 	 * @param x The random number that was generated to determine whether the state
 	 *          collapses to true or false.
 	 * 
-	 * @return The collapsed state.
+	 * @return This state, after the collapse.
+	 * @throws IllegalArgumentException If q is not a qubit of this state.
 	 */
 	public StateVector measure(int q, double x) {
-		// Get the projections of the state.
-		StateVector ifTrue = projectUnnormed(q, true);
-		StateVector ifFalse = projectUnnormed(q, false);
-
-		// Get the probabilities of the states.
-		double chanceOfTrue = ifTrue.inner(ifTrue).real();
+		this.checkQubit(q);
+		double chanceOfTrue = this.chanceOfTrue(q);
 
 		// If this is larger than x, collapse to the measurement of true.
 		// If not, collapse to the measurement of false.
 		if (chanceOfTrue > x) {
-			return ifTrue.norm();
+			this.collapse(q, true, chanceOfTrue);
 		} else {
-			return ifFalse.norm();
+			this.collapse(q, false, 1 - chanceOfTrue);
+		}
+		return this;
+	}
+
+	/**
+	 * Measures several qubits at once with the number x as the single random
+	 * value, returning the resulting state. The probability of every combination
+	 * of outcomes is gathered in one pass over the state, one combination is
+	 * drawn from them, and the state collapses onto it in place. This has the
+	 * same outcome distribution as measuring the qubits one at a time.
+	 * 
+	 * @param qubits The qubits to measure.
+	 * @param x      The random number, in [0, 1), that determines which
+	 *               combination of outcomes the state collapses to.
+	 * @return This state, after the collapse.
+	 * @throws IllegalArgumentException If a qubit is not a qubit of this state.
+	 */
+	public StateVector measure(int[] qubits, double x) {
+		// Gather the probability of every combination of outcomes.
+		double[] chances = this.marginal(qubits);
+
+		// Draw one, falling back on the last possible combination if rounding
+		// leaves the total just short of x.
+		int outcome = -1;
+		double cumulative = 0;
+		for (int k = 0; k < chances.length; k++) {
+			if (chances[k] > 0) {
+				outcome = k;
+				cumulative += chances[k];
+				if (cumulative > x) {
+					break;
+				}
+			}
+		}
+
+		// Keep the amplitudes consistent with it.
+		this.unshare();
+		double scale = 1 / Math.sqrt(chances[outcome]);
+		for (int i = 0; i < this.real.length; i++) {
+			if (StateVector.extractBits(i, qubits) == outcome) {
+				this.real[i] *= scale;
+				this.imag[i] *= scale;
+			} else {
+				this.real[i] = 0;
+				this.imag[i] = 0;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Computes the marginal probability distribution of some of the qubits,
+	 * without collapsing or copying the state. Entry k of the result is the
+	 * probability that qubit qubits[j] is measured as bit j of k, for every j.
+	 * 
+	 * The distribution is gathered in one pass over the state. Large states are
+	 * split into blocks that are reduced in parallel, each worker adding into a
+	 * partial histogram of its own, and the partial histograms are summed at the
+	 * end.
+	 * 
+	 * @param qubits The qubits whose distribution to compute.
+	 * @return The probability of each combination of outcomes, an array of
+	 *         2<sup>k</sup> entries for k qubits.
+	 * @throws IllegalArgumentException If a qubit is not a qubit of this state.
+	 */
+	public double[] marginal(int... qubits) {
+		for (int q : qubits) {
+			this.checkQubit(q);
+		}
+		int size = 1 << qubits.length;
+		int length = this.real.length;
+		if (length < PARALLEL_THRESHOLD) {
+			double[] histogram = new double[size];
+			this.addMarginal(histogram, qubits, 0, length);
+			return histogram;
+		}
+		int blocks = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		return IntStream.range(0, blocks).parallel().collect(() -> new double[size],
+				(histogram, b) -> this.addMarginal(histogram, qubits, b * BLOCK_SIZE,
+						Math.min(length, (b + 1) * BLOCK_SIZE)),
+				(a, b) -> {
+					for (int k = 0; k < size; k++) {
+						a[k] += b[k];
+					}
+				});
+	}
+
+	/**
+	 * Adds the probabilities of the basis states in [from, to) into a histogram
+	 * of the outcomes of the given qubits.
+	 */
+	private void addMarginal(double[] histogram, int[] qubits, int from, int to) {
+		for (int i = from; i < to; i++) {
+			histogram[StateVector.extractBits(i, qubits)] += ComplexMath.magSquared(this.real[i], this.imag[i]);
+		}
+	}
+
+	/**
+	 * Draws outcomes of some of the qubits from their marginal distribution,
+	 * without collapsing the state. The distribution is computed once with
+	 * {@link #marginal(int...)}, after which each shot is drawn in constant time.
+	 * 
+	 * @param shots  The number of outcomes to draw.
+	 * @param random The random source.
+	 * @param qubits The qubits to read.
+	 * @return The counts of the outcomes, bit j of each outcome holding the value
+	 *         of qubit qubits[j].
+	 * @throws IllegalArgumentException If a qubit is not a qubit of this state,
+	 *                                  or the number of shots is negative.
+	 */
+	public ShotCounts sampleMarginal(int shots, Random random, int... qubits) {
+		if (shots < 0) {
+			throw new IllegalArgumentException("Cannot draw " + shots + " shots");
+		}
+		AliasTable table = new AliasTable(this.marginal(qubits));
+		ShotCounts counts = new ShotCounts(qubits.length);
+		for (int s = 0; s < shots; s++) {
+			counts.add(table.sample(random));
+		}
+		return counts;
+	}
+
+	/**
+	 * Gathers the bits of an index at the given qubits into a compact integer,
+	 * whose bit k is the bit of qubit qubits[k].
+	 */
+	private static int extractBits(int index, int[] qubits) {
+		int bits = 0;
+		for (int k = 0; k < qubits.length; k++) {
+			bits |= ((index >>> qubits[k]) & 1) << k;
+		}
+		return bits;
+	}
+
+	/**
+	 * Resets the specified qubit q to |0>, using the number x as the random value
+	 * for the measurement this implies. The qubit is collapsed in place exactly as
+	 * by {@link #measure(int, double)}, and if it collapsed to |1> it is then
+	 * flipped back to |0>.
+	 * 
+	 * @param q The qubit to reset.
+	 * @param x The random number that was generated to determine whether the state
+	 *          collapses to true or false before the reset.
+	 * @return This state, with the qubit reset to |0>.
+	 * @throws IllegalArgumentException If q is not a qubit of this state.
+	 */
+	public StateVector reset(int q, double x) {
+		this.checkQubit(q);
+		double chanceOfTrue = this.chanceOfTrue(q);
+		boolean outcome = chanceOfTrue > x;
+		this.collapse(q, outcome, outcome ? chanceOfTrue : 1 - chanceOfTrue);
+		if (outcome) {
+			this.moveToZero(q);
+		}
+		return this;
+	}
+
+	/**
+	 * Postselects the specified qubit on a value: the state is projected in place
+	 * onto the part in which the qubit has that value and renormalized, as if the
+	 * qubit had been measured and every run with the other outcome discarded.
+	 * The probability of the value is multiplied into the acceptance probability
+	 * of the state, so that no run has to be thrown away to find it.
+	 * 
+	 * @param q     The qubit to postselect.
+	 * @param value The value to keep.
+	 * @return This state, after the projection.
+	 * @throws IllegalArgumentException If q is not a qubit of this state.
+	 * @throws IllegalStateException    If the qubit cannot have the value: its
+	 *                                  probability is zero, or every amplitude
+	 *                                  with the value is rounding error.
+	 * 
+	 * @see #getAcceptance()
+	 */
+	public StateVector postselect(int q, boolean value) {
+		double chance = this.chanceOf(q, value);
+		if (!(chance > 0)) {
+			throw new IllegalStateException(
+					"Cannot postselect qubit " + q + " on " + value + ", which has probability " + chance);
 		}
+		this.collapse(q, value, chance);
+		this.acceptance *= chance;
+		return this;
+	}
+
+	/**
+	 * Computes the probability that the specified qubit is measured with the
+	 * given value, as {@link #postselect(int, boolean)} does before projecting.
+	 * The probability is summed over the amplitudes with the value rather than
+	 * taken from the other value's, so that a small probability keeps its
+	 * precision. It is zero if every one of those amplitudes is rounding error,
+	 * at most {@link #ROUNDOFF} times the norm of the state.
+	 * 
+	 * @param q     The qubit.
+	 * @param value The value.
+	 * @return The probability of the value, or zero if it is impossible.
+	 * @throws IllegalArgumentException If q is not a qubit of this state.
+	 */
+	double chanceOf(int q, boolean value) {
+		this.checkQubit(q);
+		int bit = 1 << q;
+		int kept = value ? bit : 0;
+		double chance = 0;
+		double rest = 0;
+		double largest = 0;
+		for (int block = 0; block < this.real.length; block += bit << 1) {
+			for (int i = block; i < block + bit; i++) {
+				double amplitude = ComplexMath.magSquared(this.real[i | kept], this.imag[i | kept]);
+				chance += amplitude;
+				largest = Math.max(largest, amplitude);
+				rest += ComplexMath.magSquared(this.real[i ^ kept ^ bit], this.imag[i ^ kept ^ bit]);
+			}
+		}
+		return largest > ROUNDOFF * ROUNDOFF * (chance + rest) ? chance : 0;
+	}
+
+	/**
+	 * Gets the probability that every postselection applied on the way to this
+	 * state succeeded, which is 1 if there were none. This is the fraction of
+	 * runs that rejection sampling would have kept.
+	 * 
+	 * @return The acceptance probability.
+	 * 
+	 * @see #postselect(int, boolean)
+	 */
+	public double getAcceptance() {
+		return this.acceptance;
+	}
+
+	/**
+	 * Takes a read-only snapshot of this state, which any number of threads can
+	 * sample, marginalize and evaluate observables against at once. The snapshot
+	 * shares the amplitudes of this state instead of copying them; this state
+	 * and the states handed out by the snapshot copy the amplitudes the first
+	 * time they collapse in place, so the snapshot never changes.
+	 * 
+	 * @return The snapshot of this state.
+	 */
+	public StateSnapshot snapshot() {
+		this.shared = true;
+		return new StateSnapshot(this.view());
+	}
+
+	/**
+	 * Creates a state that shares the amplitudes of this one and copies them
+	 * before changing them in place.
+	 */
+	StateVector view() {
+		StateVector view = this.derive(this.real, this.imag);
+		view.shared = true;
+		return view;
+	}
+
+	/**
+	 * Takes a private copy of the amplitudes if they are shared with a snapshot,
+	 * before they are changed in place.
+	 */
+	private void unshare() {
+		if (this.shared) {
+			this.real = this.real.clone();
+			this.imag = this.imag.clone();
+			this.shared = false;
+		}
+	}
+
+	/**
+	 * Moves the amplitudes of a qubit that has collapsed to |1⟩ onto |0⟩ in
+	 * place, completing a reset.
+	 * 
+	 * @param q The qubit, which must have collapsed to |1⟩.
+	 */
+	void moveToZero(int q) {
+		this.unshare();
+		int bit = 1 << q;
+		for (int block = 0; block < this.real.length; block += bit << 1) {
+			for (int i = block; i < block + bit; i++) {
+				this.real[i] = this.real[i | bit];
+				this.imag[i] = this.imag[i | bit];
+				this.real[i | bit] = 0;
+				this.imag[i | bit] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of this state collapsed onto one combination of outcomes of
+	 * some qubits, leaving this state unchanged. This is one branch of a
+	 * measurement of the qubits.
+	 * 
+	 * @param qubits  The measured qubits.
+	 * @param outcome The outcome to collapse onto, whose bit j is the value of
+	 *                qubit qubits[j]. It must have a positive probability.
+	 * @return The collapsed copy.
+	 */
+	StateVector branch(int[] qubits, int outcome) {
+		StateVector branch = this.derive(this.real.clone(), this.imag.clone());
+		for (int j = 0; j < qubits.length; j++) {
+			boolean value = ((outcome >>> j) & 1) == 1;
+			double chanceOfTrue = branch.chanceOfTrue(qubits[j]);
+			branch.collapse(qubits[j], value, value ? chanceOfTrue : 1 - chanceOfTrue);
+		}
+		return branch;
+	}
+
+	/**
+	 * Draws a basis state from the probability distribution of this state, using
+	 * the number x as the random value, in one cumulative pass over the state. The
+	 * state is left unchanged.
+	 * 
+	 * @param x The random number, in [0, 1), that determines the basis state.
+	 * @return The index of the basis state drawn.
+	 */
+	public int sampleIndex(double x) {
+		// Fall back on the last possible basis state if rounding leaves the total
+		// just short of x.
+		int index = 0;
+		double cumulative = 0;
+		for (int i = 0; i < this.real.length; i++) {
+			double chance = ComplexMath.magSquared(this.real[i], this.imag[i]);
+			if (chance > 0) {
+				index = i;
+				cumulative += chance;
+				if (cumulative > x) {
+					break;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Reads out the specified qubits at the end of a circuit, using the number x
+	 * as the random value. A single basis state is drawn with
+	 * {@link #sampleIndex(double)}, and the value of each qubit is read from its
+	 * bits, so all qubits are read in one pass over the state instead of one
+	 * measurement each. The state is left unchanged.
+	 * 
+	 * @param x      The random number, in [0, 1), that determines the outcome.
+	 * @param qubits The qubits to read. If none are given, every qubit is read.
+	 * @return The value of each qubit, in the order the qubits were given, or
+	 *         indexed by qubit if none were given.
+	 * @throws IllegalArgumentException If a qubit is not a qubit of this state.
+	 */
+	public boolean[] readOut(double x, int... qubits) {
+		for (int q : qubits) {
+			this.checkQubit(q);
+		}
+		int index = this.sampleIndex(x);
+		boolean[] vals = new boolean[qubits.length == 0 ? this.numBits : qubits.length];
+		for (int i = 0; i < vals.length; i++) {
+			int q = qubits.length == 0 ? i : qubits[i];
+			vals[i] = ((index >>> q) & 1) == 1;
+		}
+		return vals;
 	}
 
 	/**
@@ -270,16 +970,14 @@ public class StateVector {
 	 *         it is unmeasured.
 	 */
 	public Boolean getMeasurement(int q) {
+		this.checkQubit(q);
 
-		// Get the projections of the state.
-		StateVector ifTrue = projectUnnormed(q, true);
-
-		// Get the probabilities of the states.
-		ComplexNumber chanceOfTrue = ifTrue.inner(ifTrue);
+		// Get the probability of the qubit being true, in a single pass.
+		double chanceOfTrue = this.chanceOfTrue(q);
 
-		if (chanceOfTrue.equals(ComplexNumber.ONE)) {
+		if (chanceOfTrue > 1 - ZERO_CHANCE) {
 			return true;
-		} else if (chanceOfTrue.equals(ComplexNumber.ZERO)) {
+		} else if (chanceOfTrue < ZERO_CHANCE) {
 			return false;
 		} else {
 			// It hasn't been measured yet.
@@ -294,7 +992,12 @@ public class StateVector {
 	 */
 	@Override
 	public String toString() {
-		return this.amplitudes.toString();
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < this.real.length; i++) {
+			ComplexNumber amplitude = new ComplexNumber(this.real[i], this.imag[i]);
+			result.append(amplitude.equals(ComplexNumber.ZERO) ? ComplexNumber.ZERO : amplitude).append("\t\n");
+		}
+		return result.toString();
 	}
 
 }
@@ -1,14 +1,27 @@
 package squire.circuit.components;
 
+import java.util.List;
+
+import squire.circuit.CircuitModifier;
+import squire.circuit.Component;
 import squire.circuit.QuantumCircuitSimulator;
-import squire.circuit.StateVector;
-import squire.circuit.UncombinableCircuitModifier;
 
-public class QuantumFourierTransform implements UncombinableCircuitModifier {
+/**
+ * The QuantumFourierTransform class represents the quantum Fourier transform on
+ * a register of qubits, built from Hadamard and controlled phase gates. It is a
+ * {@link Component}, so it is compiled once per placement and reused wherever
+ * it is applied. Two transforms on the same number of qubits are equal.
+ */
+public final class QuantumFourierTransform implements Component {
 
-	private QuantumCircuitSimulator qft;
+	private final QuantumCircuitSimulator qft;
 
-	QuantumFourierTransform(int numQubits) {
+	/**
+	 * Constructs the quantum Fourier transform on the given number of qubits.
+	 *
+	 * @param numQubits The number of qubits the transform acts on.
+	 */
+	public QuantumFourierTransform(int numQubits) {
 		this.qft = new QuantumCircuitSimulator(numQubits);
 		// Construct the QuantumFourierTransform
 		for (int i = numQubits - 1; i >= 0; i--) {
@@ -24,12 +37,22 @@ public class QuantumFourierTransform implements UncombinableCircuitModifier {
 	}
 
 	@Override
-	public StateVector apply(StateVector state) {
-		return qft.apply(state);
+	public List<CircuitModifier> circuit() {
+		return qft.getCircuit();
 	}
 
 	@Override
 	public int numQubits() {
 		return qft.numQubits();
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof QuantumFourierTransform that && this.numQubits() == that.numQubits();
+	}
+
+	@Override
+	public int hashCode() {
+		return QuantumFourierTransform.class.hashCode() * 31 + this.numQubits();
+	}
 }
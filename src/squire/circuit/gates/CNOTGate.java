@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix4;
 
 /**
  * The CNOTGate class represents a controlled NOT gate, a two-qubit quantum gate
@@ -21,7 +20,6 @@ public class CNOTGate extends QuantumGate {
 	 * @param control   The index of the control qubit.
 	 */
 	public CNOTGate(int numQubits, int target, int control) {
-		super(ComplexMatrix.zero(4).set(0, 0, ComplexNumber.ONE).set(1, 1, ComplexNumber.ONE)
-				.set(2, 3, ComplexNumber.ONE).set(3, 2, ComplexNumber.ONE), numQubits, target, control);
+		super(ComplexMatrix4.permutation(0, 1, 3, 2), numQubits, target, control);
 	}
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix4;
 import squire.complex.ComplexNumber;
 
 /**
@@ -12,6 +12,11 @@ import squire.complex.ComplexNumber;
  */
 public class CPGate extends QuantumGate {
 
+	/**
+	 * The relative phase angle of this gate, in radians.
+	 */
+	private final double theta;
+
 	/**
 	 * Constructs a CZGate with the specified number of qubits, target qubit index,
 	 * and control qubit index.
@@ -24,7 +29,17 @@ public class CPGate extends QuantumGate {
 	 * @param theta     The phase angle to be conditionally applied.
 	 */
 	public CPGate(int numQubits, int target, int control, double theta) {
-		super(ComplexMatrix.zero(4).set(0, 0, ComplexNumber.ONE).set(1, 1, ComplexNumber.ONE)
-				.set(2, 2, ComplexNumber.ONE).set(3, 3, new ComplexNumber(0, theta).exp()), numQubits, target, control);
+		super(ComplexMatrix4.diagonal(ComplexNumber.ONE, ComplexNumber.ONE, ComplexNumber.ONE,
+				new ComplexNumber(0, theta).exp()), numQubits, target, control);
+		this.theta = theta;
+	}
+
+	/**
+	 * Gets the relative phase angle of this gate.
+	 *
+	 * @return The angle in radians.
+	 */
+	public double getTheta() {
+		return this.theta;
 	}
-}
\ No newline at end of file
+}
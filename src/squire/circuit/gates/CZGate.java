@@ -1,7 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix4;
 import squire.complex.ComplexNumber;
 
 /**
@@ -23,7 +23,7 @@ public class CZGate extends QuantumGate {
 	 *                  gate.
 	 */
 	public CZGate(int numQubits, int target, int control) {
-		super(ComplexMatrix.zero(4).set(0, 0, ComplexNumber.ONE).set(1, 1, ComplexNumber.ONE)
-				.set(2, 2, ComplexNumber.ONE).set(3, 3, ComplexNumber.ONE.neg()), numQubits, target, control);
+		super(ComplexMatrix4.diagonal(ComplexNumber.ONE, ComplexNumber.ONE, ComplexNumber.ONE,
+				ComplexNumber.ONE.neg()), numQubits, target, control);
 	}
 }
\ No newline at end of file
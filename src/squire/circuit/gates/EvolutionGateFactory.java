@@ -0,0 +1,198 @@
+package squire.circuit.gates;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import squire.complex.ComplexMatrix;
+import squire.complex.ComplexNumber;
+import squire.complex.DenseComplexMatrix;
+
+/**
+ * The EvolutionGateFactory class builds the time evolution gates exp(-iHt) of a
+ * fixed Hermitian generator H. The generator is validated and converted to a
+ * dense matrix once, and each unitary is exponentiated the first time its time
+ * step is requested and cached afterwards, so time-stepping loops that reuse
+ * the same step only pay for the exponential once. The cache is bounded and
+ * evicts the least recently used unitary once it is full, so loops whose time
+ * changes on every step do not hold on to every unitary they have used.
+ *
+ * Instances are safe to share between threads.
+ *
+ * @see UnitaryGate
+ * @see ComplexMatrix#expm()
+ */
+public class EvolutionGateFactory {
+
+	/**
+	 * The largest deviation from Hermitian symmetry accepted in a generator.
+	 */
+	private static final double HERMITIAN_TOLERANCE = 1e-10;
+
+	/**
+	 * The number of unitaries cached by a factory whose capacity is not given.
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final ComplexMatrix generator;
+	/**
+	 * The dense form of -iH, scaled by t for each exponential.
+	 */
+	private final DenseComplexMatrix exponent;
+	private final int numTargets;
+	private final int capacity;
+	/**
+	 * The most recently used unitaries, keyed by the exact bits of their time
+	 * step, in access order.
+	 */
+	private final Map<Long, ComplexMatrix> unitaries;
+
+	/**
+	 * Constructs a factory for the evolution gates of the given generator, which
+	 * caches up to {@link #DEFAULT_CAPACITY} unitaries.
+	 *
+	 * @param generator The Hermitian generator H, a
+	 *                  2<sup>k</sup>x2<sup>k</sup> matrix acting on k qubits.
+	 * @throws IllegalArgumentException If the generator is not Hermitian or its
+	 *                                  size is not a power of two.
+	 */
+	public EvolutionGateFactory(ComplexMatrix generator) {
+		this(generator, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a factory for the evolution gates of the given generator, which
+	 * caches up to the given number of unitaries.
+	 *
+	 * @param generator The Hermitian generator H, a
+	 *                  2<sup>k</sup>x2<sup>k</sup> matrix acting on k qubits.
+	 * @param capacity  The largest number of unitaries to keep.
+	 * @throws IllegalArgumentException If the generator is not Hermitian, its
+	 *                                  size is not a power of two, or the
+	 *                                  capacity is not positive.
+	 */
+	public EvolutionGateFactory(ComplexMatrix generator, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity of a cache must be positive, not " + capacity);
+		}
+		long size = generator.rows();
+		if (size != generator.cols() || size < 2 || Long.bitCount(size) != 1) {
+			throw new IllegalArgumentException("The generator of an evolution gate must be a square matrix whose "
+					+ "size is a power of two, this matrix is " + generator.rows() + "x" + generator.cols());
+		}
+		DenseComplexMatrix dense = generator.toDense();
+		if (!dense.isHermitian(HERMITIAN_TOLERANCE)) {
+			throw new IllegalArgumentException("The generator of an evolution gate must be Hermitian.");
+		}
+		this.generator = generator.copy();
+		this.exponent = dense.mult(new ComplexNumber(0, -1));
+		this.numTargets = Long.numberOfTrailingZeros(size);
+		this.capacity = capacity;
+		this.unitaries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ComplexMatrix> eldest) {
+				return this.size() > EvolutionGateFactory.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the generator of the gates built by this factory.
+	 *
+	 * @return A copy of the generator H.
+	 */
+	public ComplexMatrix getGenerator() {
+		return this.generator.copy();
+	}
+
+	/**
+	 * Gets the number of qubits that the gates built by this factory act on.
+	 *
+	 * @return The number of target qubits.
+	 */
+	public int numTargets() {
+		return this.numTargets;
+	}
+
+	/**
+	 * Gets the unitary exp(-iHt) for the given time, computing it if it is not
+	 * cached. Times are cached by their exact bits, with 0.0 and -0.0 taken as
+	 * equal. The exponential is computed outside the lock, so two threads that
+	 * request the same new time at once may both compute it.
+	 *
+	 * @param t The evolution time.
+	 * @return The unitary matrix exp(-iHt).
+	 * @throws IllegalArgumentException If the time is infinite or NaN.
+	 */
+	public ComplexMatrix unitary(double t) {
+		if (!Double.isFinite(t)) {
+			throw new IllegalArgumentException("Cannot evolve for a time of " + t);
+		}
+		// Adding 0.0 turns -0.0 into 0.0, so that the two share a key.
+		double time = t + 0.0;
+		Long key = Double.doubleToLongBits(time);
+		ComplexMatrix unitary;
+		synchronized (this.unitaries) {
+			unitary = this.unitaries.get(key);
+		}
+		if (unitary == null) {
+			ComplexMatrix computed = this.exponent.mult(new ComplexNumber(time, 0)).expm().toComplexMatrix();
+			synchronized (this.unitaries) {
+				ComplexMatrix existing = this.unitaries.putIfAbsent(key, computed);
+				unitary = existing != null ? existing : computed;
+			}
+		}
+		return unitary.copy();
+	}
+
+	/**
+	 * Creates the gate exp(-iHt) acting on the given target qubits.
+	 *
+	 * @param t          The evolution time.
+	 * @param numQubits  The total number of qubits in the quantum system.
+	 * @param targetBits The indices of the qubits to which the gate is applied,
+	 *                   where {@code targetBits[i]} corresponds to bit i of the
+	 *                   generator's index.
+	 * @return The evolution gate.
+	 * @throws IllegalArgumentException If the number of target qubits does not
+	 *                                  match the generator, or the time is
+	 *                                  infinite or NaN.
+	 */
+	public UnitaryGate gate(double t, int numQubits, int... targetBits) {
+		if (targetBits.length != this.numTargets) {
+			throw new IllegalArgumentException("The generator acts on " + this.numTargets + " qubits, but "
+					+ targetBits.length + " targets were given.");
+		}
+		return new UnitaryGate(this.unitary(t), numQubits, targetBits);
+	}
+
+	/**
+	 * Gets the number of distinct time steps whose unitaries have been cached.
+	 *
+	 * @return The number of cached unitaries.
+	 */
+	public int cacheSize() {
+		synchronized (this.unitaries) {
+			return this.unitaries.size();
+		}
+	}
+
+	/**
+	 * Gets the largest number of unitaries the factory will cache.
+	 *
+	 * @return The capacity.
+	 */
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Removes every cached unitary.
+	 */
+	public void clear() {
+		synchronized (this.unitaries) {
+			this.unitaries.clear();
+		}
+	}
+}
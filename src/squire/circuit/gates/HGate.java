@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix2;
 
 /**
  * The HGate class represents a Hadamard gate, a single-qubit quantum gate that
@@ -12,6 +11,11 @@ import squire.complex.ComplexNumber;
  */
 public class HGate extends QuantumGate {
 
+	/**
+	 * The magnitude of every entry of the Hadamard matrix, 1/√2.
+	 */
+	private static final double H = 1 / Math.sqrt(2);
+
 	/**
 	 * Constructs an HGate with the specified number of qubits and target qubit
 	 * index.
@@ -21,7 +25,6 @@ public class HGate extends QuantumGate {
 	 *                  applied.
 	 */
 	public HGate(int numQubits, int target) {
-		super(ComplexMatrix.zero(2).add(ComplexNumber.ONE).set(1, 1, ComplexNumber.ONE.neg())
-				.mult(new ComplexNumber(1 / Math.sqrt(2), 0)), numQubits, target);
+		super(new ComplexMatrix2(H, 0, H, 0, H, 0, -H, 0), numQubits, target);
 	}
 }
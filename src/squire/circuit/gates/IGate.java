@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix2;
 
 /**
  * The IGate class represents an identity gate, a single-qubit quantum gate that
@@ -20,6 +19,6 @@ public class IGate extends QuantumGate {
 	 *                  applied.
 	 */
 	public IGate(int numQubits, int target) {
-		super(ComplexMatrix.zero(2).set(0, 0, ComplexNumber.ONE).set(1, 1, ComplexNumber.ONE), numQubits, target);
+		super(ComplexMatrix2.IDENTITY, numQubits, target);
 	}
 }
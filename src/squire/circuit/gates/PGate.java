@@ -1,7 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix2;
 import squire.complex.ComplexNumber;
 
 /**
@@ -11,6 +11,11 @@ import squire.complex.ComplexNumber;
  */
 public class PGate extends QuantumGate {
 
+	/**
+	 * The relative phase angle of this gate, in radians.
+	 */
+	private final double theta;
+
 	/**
 	 * Constructs an PGate with the specified number of qubits, target qubit index,
 	 * and rotation angle. Transforms a|0> + b|1> to a|0> + (e^it)b|1>.
@@ -20,6 +25,16 @@ public class PGate extends QuantumGate {
 	 * @param theta     The relative phase angle to apply.
 	 */
 	public PGate(int numQubits, int target, double theta) {
-		super(ComplexMatrix.zero(2).set(0, 0, ComplexNumber.ONE).set(1, 1, new ComplexNumber(0, theta).exp()), numQubits, target);
+		super(ComplexMatrix2.diagonal(ComplexNumber.ONE, new ComplexNumber(0, theta).exp()), numQubits, target);
+		this.theta = theta;
+	}
+
+	/**
+	 * Gets the relative phase angle of this gate.
+	 *
+	 * @return The angle in radians.
+	 */
+	public double getTheta() {
+		return this.theta;
 	}
 }
@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix2;
 
 /**
  * The RXGate class represents a quantum gate that performs a rotation around
@@ -11,6 +10,11 @@ import squire.complex.ComplexNumber;
  */
 public class RYGate extends QuantumGate {
 
+	/**
+	 * The rotation angle around the Y-axis of this gate, in radians.
+	 */
+	private final double theta;
+
 	/**
 	 * Constructs an RYGate with the specified number of qubits, target qubit index,
 	 * and rotation angle.
@@ -20,9 +24,17 @@ public class RYGate extends QuantumGate {
 	 * @param theta     The rotation angle around the Y-axis in radians.
 	 */
 	public RYGate(int numQubits, int target, double theta) {
-		super(ComplexMatrix.zero(2).set(0, 0, new ComplexNumber(Math.cos(theta / 2), 0))
-				.set(1, 1, new ComplexNumber(Math.cos(theta / 2), 0))
-				.set(1, 0, new ComplexNumber(Math.sin(theta / 2), 0))
-				.set(0, 1, new ComplexNumber(-Math.sin(theta / 2), 0)), numQubits, target);
+		super(new ComplexMatrix2(Math.cos(theta / 2), 0, -Math.sin(theta / 2), 0, Math.sin(theta / 2), 0,
+				Math.cos(theta / 2), 0), numQubits, target);
+		this.theta = theta;
+	}
+
+	/**
+	 * Gets the rotation angle around the Y-axis of this gate.
+	 *
+	 * @return The angle in radians.
+	 */
+	public double getTheta() {
+		return this.theta;
 	}
 }
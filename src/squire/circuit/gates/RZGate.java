@@ -1,7 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix2;
 import squire.complex.ComplexNumber;
 
 /**
@@ -11,6 +11,11 @@ import squire.complex.ComplexNumber;
  */
 public class RZGate extends QuantumGate {
 
+	/**
+	 * The rotation angle around the Z-axis of this gate, in radians.
+	 */
+	private final double theta;
+
 	/**
 	 * Constructs an RZGate with the specified number of qubits, target qubit index,
 	 * and rotation angle.
@@ -20,7 +25,17 @@ public class RZGate extends QuantumGate {
 	 * @param theta     The rotation angle around the X-axis in radians.
 	 */
 	public RZGate(int numQubits, int target, double theta) {
-		super(ComplexMatrix.zero(2).set(0, 0, new ComplexNumber(0, -theta / 2).exp()).set(1, 1,
+		super(ComplexMatrix2.diagonal(new ComplexNumber(0, -theta / 2).exp(),
 				new ComplexNumber(0, theta / 2).exp()), numQubits, target);
+		this.theta = theta;
+	}
+
+	/**
+	 * Gets the rotation angle around the Z-axis of this gate.
+	 *
+	 * @return The angle in radians.
+	 */
+	public double getTheta() {
+		return this.theta;
 	}
 }
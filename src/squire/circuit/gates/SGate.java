@@ -1,7 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix2;
 import squire.complex.ComplexNumber;
 
 /**
@@ -19,6 +19,6 @@ public class SGate extends QuantumGate {
 	 * @param target    The index of the qubit to which the S gate is applied.
 	 */
 	public SGate(int numQubits, int target) {
-		super(ComplexMatrix.zero(2).set(0, 0, ComplexNumber.ONE).set(1, 1, ComplexNumber.I), numQubits, target);
+		super(ComplexMatrix2.diagonal(ComplexNumber.ONE, ComplexNumber.I), numQubits, target);
 	}
 }
@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix4;
 
 /**
  * The SwapGate class represents a quantum gate applying the SWAP operation on
@@ -21,7 +20,6 @@ public class SwapGate extends QuantumGate {
 	 * @param control   The index of the control qubit for the SWAP gate.
 	 */
 	public SwapGate(int numQubits, int target, int control) {
-		super(ComplexMatrix.zero(4).set(0, 0, ComplexNumber.ONE).set(1, 2, ComplexNumber.ONE)
-				.set(2, 1, ComplexNumber.ONE).set(3, 3, ComplexNumber.ONE), numQubits, target, control);
+		super(ComplexMatrix4.permutation(0, 2, 1, 3), numQubits, target, control);
 	}
 }
\ No newline at end of file
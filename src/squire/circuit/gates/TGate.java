@@ -1,7 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix2;
 import squire.complex.ComplexNumber;
 
 /**
@@ -19,7 +19,6 @@ public class TGate extends QuantumGate {
 	 * @param target    The index of the target qubit for the T gate.
 	 */
 	public TGate(int numQubits, int target) {
-		super(ComplexMatrix.zero(2).set(0, 0, ComplexNumber.ONE).set(1, 1,
-				new ComplexNumber(Math.sqrt(2), Math.sqrt(2))), numQubits, target);
+		super(ComplexMatrix2.diagonal(ComplexNumber.ONE, ComplexNumber.fromPolar(1, Math.PI / 4)), numQubits, target);
 	}
 }
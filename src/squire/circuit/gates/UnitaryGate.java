@@ -0,0 +1,52 @@
+package squire.circuit.gates;
+
+import squire.circuit.QuantumGate;
+import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix2;
+import squire.complex.ComplexMatrix4;
+
+/**
+ * The UnitaryGate class represents a quantum gate defined directly by an
+ * arbitrary unitary matrix acting on a chosen set of qubits. It extends the
+ * QuantumGate class and is used for custom gates and for gates produced by
+ * combining other gates.
+ */
+public class UnitaryGate extends QuantumGate {
+
+	/**
+	 * Constructs a UnitaryGate from a matrix acting on the given target qubits.
+	 *
+	 * @param matrix     The 2<sup>k</sup>x2<sup>k</sup> matrix of the gate, where
+	 *                   k is the number of target qubits.
+	 * @param numQubits  The total number of qubits in the quantum system.
+	 * @param targetBits The indices of the qubits to which the gate is applied.
+	 */
+	public UnitaryGate(ComplexMatrix matrix, int numQubits, int... targetBits) {
+		super(matrix, numQubits, targetBits);
+	}
+
+	/**
+	 * Constructs a single-qubit UnitaryGate from a dense 2x2 matrix.
+	 *
+	 * @param matrix    The 2x2 matrix of the gate.
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param target    The index of the qubit to which the gate is applied.
+	 */
+	public UnitaryGate(ComplexMatrix2 matrix, int numQubits, int target) {
+		super(matrix, numQubits, target);
+	}
+
+	/**
+	 * Constructs a two-qubit UnitaryGate from a dense 4x4 matrix.
+	 *
+	 * @param matrix    The 4x4 matrix of the gate.
+	 * @param numQubits The total number of qubits in the quantum system.
+	 * @param target    The index of the qubit corresponding to bit 0 of the
+	 *                  matrix index.
+	 * @param control   The index of the qubit corresponding to bit 1 of the
+	 *                  matrix index.
+	 */
+	public UnitaryGate(ComplexMatrix4 matrix, int numQubits, int target, int control) {
+		super(matrix, numQubits, target, control);
+	}
+}
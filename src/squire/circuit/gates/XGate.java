@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix2;
 
 /**
  * The XGate class represents a quantum gate applying the Pauli-X (NOT)
@@ -20,6 +19,6 @@ public class XGate extends QuantumGate {
 	 * @param target    The index of the target qubit for the X gate.
 	 */
 	public XGate(int numQubits, int target) {
-		super(ComplexMatrix.zero(2).set(1, 0, ComplexNumber.ONE).set(0, 1, ComplexNumber.ONE), numQubits, target);
+		super(new ComplexMatrix2(0, 0, 1, 0, 1, 0, 0, 0), numQubits, target);
 	}
 }
@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-import squire.complex.ComplexMatrix;
-import squire.complex.ComplexNumber;
+import squire.complex.ComplexMatrix2;
 
 /**
  * The YGate class represents a quantum gate applying the Pauli-Y operation on a
@@ -20,6 +19,6 @@ public class YGate extends QuantumGate {
 	 * @param target    The index of the target qubit for the Y gate.
 	 */
 	public YGate(int numQubits, int target) {
-		super(ComplexMatrix.zero(2).set(0, 1, ComplexNumber.I.neg()).set(1, 0, ComplexNumber.I), numQubits, target);
+		super(new ComplexMatrix2(0, 0, 0, -1, 0, 1, 0, 0), numQubits, target);
 	}
 }
@@ -1,8 +1,7 @@
 package squire.circuit.gates;
 
 import squire.circuit.QuantumGate;
-
-import squire.complex.ComplexMatrix;
+import squire.complex.ComplexMatrix2;
 import squire.complex.ComplexNumber;
 
 /**
@@ -21,6 +20,6 @@ public class ZGate extends QuantumGate {
 	 * @param target    The index of the target qubit for the Z gate.
 	 */
 	public ZGate(int numQubits, int target) {
-		super(ComplexMatrix.zero(2).set(0, 0, ComplexNumber.ONE).set(1, 1, ComplexNumber.ONE.neg()), numQubits, target);
+		super(ComplexMatrix2.diagonal(ComplexNumber.ONE, ComplexNumber.ONE.neg()), numQubits, target);
 	}
 }
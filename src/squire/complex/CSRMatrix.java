@@ -0,0 +1,336 @@
+package squire.complex;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a frozen complex matrix in compressed sparse row (CSR) form. The
+ * non-zero entries of each row are stored contiguously, sorted by column, in
+ * parallel primitive arrays, with {@code rowStart[r]} giving the offset of the
+ * first entry of row {@code r}. Instances are immutable and are obtained from
+ * {@link ComplexMatrix#freeze()}.
+ *
+ * Matrix-vector and matrix-matrix products only visit the stored entries, so
+ * their cost scales with the number of non-zeros rather than with the
+ * dimensions of the matrix. Large products are split into blocks of rows that
+ * are processed in parallel.
+ *
+ * @see ComplexMatrix
+ */
+public final class CSRMatrix {
+
+	/**
+	 * The number of rows above which products are computed in parallel.
+	 */
+	static final int PARALLEL_THRESHOLD = 1 << 12;
+
+	/**
+	 * The number of rows handled by each parallel task.
+	 */
+	private static final int BLOCK_SIZE = 1 << 10;
+
+	private final int rows;
+	private final int cols;
+	private final int[] rowStart;
+	private final int[] colIndex;
+	private final double[] real;
+	private final double[] imag;
+
+	/**
+	 * Constructs a CSR matrix directly from its arrays. The arrays are not copied.
+	 */
+	private CSRMatrix(int rows, int cols, int[] rowStart, int[] colIndex, double[] real, double[] imag) {
+		this.rows = rows;
+		this.cols = cols;
+		this.rowStart = rowStart;
+		this.colIndex = colIndex;
+		this.real = real;
+		this.imag = imag;
+	}
+
+	/**
+	 * Builds the CSR form of the given matrix.
+	 *
+	 * @param matrix The matrix to compress.
+	 * @return The CSR form of the matrix.
+	 * @throws IllegalArgumentException If the matrix has too many rows or columns
+	 *                                  to be indexed by an {@code int}.
+	 */
+	static CSRMatrix of(ComplexMatrix matrix) {
+		if (matrix.rows() >= Integer.MAX_VALUE || matrix.cols() >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"Cannot compress a " + matrix.rows() + "x" + matrix.cols() + " matrix into CSR form.");
+		}
+		int rows = (int) matrix.rows();
+		int nnz = matrix.nonZeroCount();
+
+		// Count the entries in each row, then turn the counts into offsets.
+		int[] rowStart = new int[rows + 1];
+		matrix.forEachNonZero((i, j, re, im) -> rowStart[(int) i + 1]++);
+		for (int r = 0; r < rows; r++) {
+			rowStart[r + 1] += rowStart[r];
+		}
+
+		int[] colIndex = new int[nnz];
+		double[] real = new double[nnz];
+		double[] imag = new double[nnz];
+		int[] next = Arrays.copyOf(rowStart, rows);
+		matrix.forEachNonZero((i, j, re, im) -> {
+			int slot = next[(int) i]++;
+			colIndex[slot] = (int) j;
+			real[slot] = re;
+			imag[slot] = im;
+		});
+
+		for (int r = 0; r < rows; r++) {
+			sortRow(colIndex, real, imag, rowStart[r], rowStart[r + 1]);
+		}
+
+		return new CSRMatrix(rows, (int) matrix.cols(), rowStart, colIndex, real, imag);
+	}
+
+	/**
+	 * Sorts the entries of a single row by column using insertion sort, since
+	 * rows of the matrices used here hold only a handful of entries.
+	 */
+	private static void sortRow(int[] colIndex, double[] real, double[] imag, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int col = colIndex[i];
+			double re = real[i];
+			double im = imag[i];
+			int j = i - 1;
+			while (j >= from && colIndex[j] > col) {
+				colIndex[j + 1] = colIndex[j];
+				real[j + 1] = real[j];
+				imag[j + 1] = imag[j];
+				j--;
+			}
+			colIndex[j + 1] = col;
+			real[j + 1] = re;
+			imag[j + 1] = im;
+		}
+	}
+
+	/**
+	 * Gets the number of rows in the matrix.
+	 *
+	 * @return The number of rows.
+	 */
+	public int rows() {
+		return this.rows;
+	}
+
+	/**
+	 * Gets the number of columns in the matrix.
+	 *
+	 * @return The number of columns.
+	 */
+	public int cols() {
+		return this.cols;
+	}
+
+	/**
+	 * Gets the number of non-zero entries stored in the matrix.
+	 *
+	 * @return The number of non-zero entries.
+	 */
+	public int nonZeroCount() {
+		return this.colIndex.length;
+	}
+
+	/**
+	 * Multiplies this matrix by a vector given as separate real and imaginary
+	 * arrays, writing the result into the output arrays. The output arrays must
+	 * not be the same arrays as the input.
+	 *
+	 * @param xReal The real parts of the input vector.
+	 * @param xImag The imaginary parts of the input vector.
+	 * @param yReal The array to receive the real parts of the result.
+	 * @param yImag The array to receive the imaginary parts of the result.
+	 * @throws IllegalArgumentException If the vector lengths do not match the
+	 *                                  matrix dimensions.
+	 */
+	public void multVector(double[] xReal, double[] xImag, double[] yReal, double[] yImag) {
+		if (xReal.length != this.cols || xImag.length != this.cols) {
+			throw new IllegalArgumentException("Vector of length " + xReal.length
+					+ " cannot be multiplied by a matrix with " + this.cols + " columns.");
+		}
+		if (yReal.length != this.rows || yImag.length != this.rows) {
+			throw new IllegalArgumentException(
+					"Result vector of length " + yReal.length + " does not match " + this.rows + " rows.");
+		}
+
+		if (this.rows < PARALLEL_THRESHOLD) {
+			this.multRows(0, this.rows, xReal, xImag, yReal, yImag);
+		} else {
+			int blocks = (this.rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			IntStream.range(0, blocks).parallel().forEach(b -> this.multRows(b * BLOCK_SIZE,
+					Math.min(this.rows, (b + 1) * BLOCK_SIZE), xReal, xImag, yReal, yImag));
+		}
+	}
+
+	/**
+	 * Computes the rows [from, to) of a matrix-vector product.
+	 */
+	private void multRows(int from, int to, double[] xReal, double[] xImag, double[] yReal, double[] yImag) {
+		ComplexAccumulator sum = new ComplexAccumulator();
+		for (int r = from; r < to; r++) {
+			sum.reset();
+			for (int k = this.rowStart[r]; k < this.rowStart[r + 1]; k++) {
+				int c = this.colIndex[k];
+				sum.fma(this.real[k], this.imag[k], xReal[c], xImag[c]);
+			}
+			yReal[r] = sum.real();
+			yImag[r] = sum.imag();
+		}
+	}
+
+	/**
+	 * Multiplies this matrix by another CSR matrix using Gustavson's row-by-row
+	 * algorithm. Each row of the result is accumulated from the rows of the other
+	 * matrix selected by the non-zero entries of this matrix, so only products of
+	 * non-zero entries are ever computed.
+	 *
+	 * @param that The matrix to multiply by.
+	 * @return The product, in CSR form.
+	 * @throws IllegalArgumentException If the inner dimensions do not match.
+	 */
+	public CSRMatrix mult(CSRMatrix that) {
+		if (this.cols != that.rows) {
+			throw new IllegalArgumentException("Number of columns in the first matrix (" + this.cols
+					+ ") must be equal to the number of rows in the second matrix (" + that.rows
+					+ ") for multiplication.");
+		}
+
+		int blocks = Math.max(1, (this.rows + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		RowBlock[] parts = new RowBlock[blocks];
+		if (this.rows < PARALLEL_THRESHOLD) {
+			for (int b = 0; b < blocks; b++) {
+				parts[b] = this.multBlock(that, b * BLOCK_SIZE, Math.min(this.rows, (b + 1) * BLOCK_SIZE));
+			}
+		} else {
+			IntStream.range(0, blocks).parallel().forEach(b -> parts[b] = this.multBlock(that, b * BLOCK_SIZE,
+					Math.min(this.rows, (b + 1) * BLOCK_SIZE)));
+		}
+
+		// Stitch the blocks together.
+		int nnz = 0;
+		for (RowBlock part : parts) {
+			nnz += part.size;
+		}
+		int[] rowStart = new int[this.rows + 1];
+		int[] colIndex = new int[nnz];
+		double[] real = new double[nnz];
+		double[] imag = new double[nnz];
+		int offset = 0;
+		int row = 0;
+		for (RowBlock part : parts) {
+			for (int r = 0; r < part.rowSize.length; r++) {
+				rowStart[row + 1] = rowStart[row] + part.rowSize[r];
+				row++;
+			}
+			System.arraycopy(part.colIndex, 0, colIndex, offset, part.size);
+			System.arraycopy(part.real, 0, real, offset, part.size);
+			System.arraycopy(part.imag, 0, imag, offset, part.size);
+			offset += part.size;
+		}
+
+		return new CSRMatrix(this.rows, that.cols, rowStart, colIndex, real, imag);
+	}
+
+	/**
+	 * Computes the rows [from, to) of a matrix-matrix product.
+	 */
+	private RowBlock multBlock(CSRMatrix that, int from, int to) {
+		RowBlock block = new RowBlock(to - from);
+
+		// A dense accumulator for one row of the result, plus the list of columns
+		// touched so far. marker[c] holds the last row that touched column c.
+		double[] accRe = new double[that.cols];
+		double[] accIm = new double[that.cols];
+		int[] marker = new int[that.cols];
+		Arrays.fill(marker, -1);
+		int[] touched = new int[Math.min(that.cols, 16)];
+
+		for (int r = from; r < to; r++) {
+			int count = 0;
+			for (int k = this.rowStart[r]; k < this.rowStart[r + 1]; k++) {
+				int mid = this.colIndex[k];
+				double aRe = this.real[k];
+				double aIm = this.imag[k];
+				for (int l = that.rowStart[mid]; l < that.rowStart[mid + 1]; l++) {
+					int c = that.colIndex[l];
+					double bRe = that.real[l];
+					double bIm = that.imag[l];
+					if (marker[c] != r) {
+						marker[c] = r;
+						accRe[c] = 0;
+						accIm[c] = 0;
+						if (count == touched.length) {
+							touched = Arrays.copyOf(touched, Math.min(that.cols, count * 2));
+						}
+						touched[count++] = c;
+					}
+					accRe[c] += ComplexMath.multReal(aRe, aIm, bRe, bIm);
+					accIm[c] += ComplexMath.multImag(aRe, aIm, bRe, bIm);
+				}
+			}
+
+			Arrays.sort(touched, 0, count);
+			int kept = 0;
+			for (int t = 0; t < count; t++) {
+				int c = touched[t];
+				if (Math.abs(accRe[c]) >= 1e-10 || Math.abs(accIm[c]) >= 1e-10) {
+					block.append(c, accRe[c], accIm[c]);
+					kept++;
+				}
+			}
+			block.rowSize[r - from] = kept;
+		}
+
+		return block;
+	}
+
+	/**
+	 * Converts this matrix back into a mutable {@link ComplexMatrix}.
+	 *
+	 * @return A new matrix with the same entries.
+	 */
+	public ComplexMatrix toComplexMatrix() {
+		ComplexMatrix result = new ComplexMatrix(this.rows, this.cols);
+		for (int r = 0; r < this.rows; r++) {
+			for (int k = this.rowStart[r]; k < this.rowStart[r + 1]; k++) {
+				result.set(r, this.colIndex[k], this.real[k], this.imag[k]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Holds the rows of a product computed by a single task.
+	 */
+	private static final class RowBlock {
+		private final int[] rowSize;
+		private int[] colIndex = new int[16];
+		private double[] real = new double[16];
+		private double[] imag = new double[16];
+		private int size;
+
+		private RowBlock(int rows) {
+			this.rowSize = new int[rows];
+		}
+
+		private void append(int col, double re, double im) {
+			if (this.size == this.colIndex.length) {
+				int capacity = this.size * 2;
+				this.colIndex = Arrays.copyOf(this.colIndex, capacity);
+				this.real = Arrays.copyOf(this.real, capacity);
+				this.imag = Arrays.copyOf(this.imag, capacity);
+			}
+			this.colIndex[this.size] = col;
+			this.real[this.size] = re;
+			this.imag[this.size] = im;
+			this.size++;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package squire.complex;
+
+/**
+ * A mutable complex number used to accumulate sums, and in particular sums of
+ * products, without allocating a {@link ComplexNumber} for every term. An
+ * accumulator is not thread-safe and is meant to be confined to a single loop.
+ *
+ * @see ComplexMath
+ */
+public final class ComplexAccumulator {
+
+	private double real;
+	private double imag;
+
+	/**
+	 * Constructs an accumulator holding zero.
+	 */
+	public ComplexAccumulator() {
+	}
+
+	/**
+	 * Gets the real part of the accumulated value.
+	 *
+	 * @return The real part.
+	 */
+	public double real() {
+		return this.real;
+	}
+
+	/**
+	 * Gets the imaginary part of the accumulated value.
+	 *
+	 * @return The imaginary part.
+	 */
+	public double imag() {
+		return this.imag;
+	}
+
+	/**
+	 * Resets the accumulated value to zero.
+	 *
+	 * @return This accumulator.
+	 */
+	public ComplexAccumulator reset() {
+		this.real = 0;
+		this.imag = 0;
+		return this;
+	}
+
+	/**
+	 * Adds a complex number to the accumulated value.
+	 *
+	 * @param re The real part of the number to add.
+	 * @param im The imaginary part of the number to add.
+	 * @return This accumulator.
+	 */
+	public ComplexAccumulator add(double re, double im) {
+		this.real += re;
+		this.imag += im;
+		return this;
+	}
+
+	/**
+	 * Adds the product (aRe + i aIm)(bRe + i bIm) to the accumulated value.
+	 *
+	 * @param aRe The real part of the first factor.
+	 * @param aIm The imaginary part of the first factor.
+	 * @param bRe The real part of the second factor.
+	 * @param bIm The imaginary part of the second factor.
+	 * @return This accumulator.
+	 */
+	public ComplexAccumulator fma(double aRe, double aIm, double bRe, double bIm) {
+		this.real += aRe * bRe - aIm * bIm;
+		this.imag += aRe * bIm + aIm * bRe;
+		return this;
+	}
+
+	/**
+	 * Adds the product of the conjugate of (aRe + i aIm) with (bRe + i bIm) to the
+	 * accumulated value, as used by inner products.
+	 *
+	 * @param aRe The real part of the factor to conjugate.
+	 * @param aIm The imaginary part of the factor to conjugate.
+	 * @param bRe The real part of the second factor.
+	 * @param bIm The imaginary part of the second factor.
+	 * @return This accumulator.
+	 */
+	public ComplexAccumulator fmaConj(double aRe, double aIm, double bRe, double bIm) {
+		this.real += aRe * bRe + aIm * bIm;
+		this.imag += aRe * bIm - aIm * bRe;
+		return this;
+	}
+
+	/**
+	 * Returns the accumulated value as an immutable complex number.
+	 *
+	 * @return The accumulated value, as a new object.
+	 */
+	public ComplexNumber toComplexNumber() {
+		return new ComplexNumber(this.real, this.imag);
+	}
+
+	/**
+	 * Returns a human-readable string representation of the accumulated value.
+	 *
+	 * @return The string representation of the accumulated value.
+	 */
+	@Override
+	public String toString() {
+		return this.toComplexNumber().toString();
+	}
+}
@@ -0,0 +1,135 @@
+package squire.complex;
+
+/**
+ * Provides allocation-free complex arithmetic on numbers given as separate real
+ * and imaginary parts, and on vectors given as parallel arrays of real and
+ * imaginary parts. These are the primitive counterparts of the methods of
+ * {@link ComplexNumber}, for use in loops that would otherwise allocate a new
+ * object per operation.
+ *
+ * Scalar operations return the real and imaginary parts of their result
+ * through separate methods, which the JIT compiler inlines into the caller. To
+ * accumulate a sum of products, use a {@link ComplexAccumulator}.
+ *
+ * @see ComplexNumber
+ * @see ComplexAccumulator
+ */
+public final class ComplexMath {
+
+	private ComplexMath() {
+	}
+
+	/**
+	 * Returns the real part of the product (aRe + i aIm)(bRe + i bIm).
+	 *
+	 * @param aRe The real part of the first factor.
+	 * @param aIm The imaginary part of the first factor.
+	 * @param bRe The real part of the second factor.
+	 * @param bIm The imaginary part of the second factor.
+	 * @return The real part of the product.
+	 */
+	public static double multReal(double aRe, double aIm, double bRe, double bIm) {
+		return aRe * bRe - aIm * bIm;
+	}
+
+	/**
+	 * Returns the imaginary part of the product (aRe + i aIm)(bRe + i bIm).
+	 *
+	 * @param aRe The real part of the first factor.
+	 * @param aIm The imaginary part of the first factor.
+	 * @param bRe The real part of the second factor.
+	 * @param bIm The imaginary part of the second factor.
+	 * @return The imaginary part of the product.
+	 */
+	public static double multImag(double aRe, double aIm, double bRe, double bIm) {
+		return aRe * bIm + aIm * bRe;
+	}
+
+	/**
+	 * Returns the real part of the quotient (aRe + i aIm) / (bRe + i bIm).
+	 *
+	 * @param aRe The real part of the dividend.
+	 * @param aIm The imaginary part of the dividend.
+	 * @param bRe The real part of the divisor.
+	 * @param bIm The imaginary part of the divisor.
+	 * @return The real part of the quotient.
+	 */
+	public static double divReal(double aRe, double aIm, double bRe, double bIm) {
+		return (aRe * bRe + aIm * bIm) / magSquared(bRe, bIm);
+	}
+
+	/**
+	 * Returns the imaginary part of the quotient (aRe + i aIm) / (bRe + i bIm).
+	 *
+	 * @param aRe The real part of the dividend.
+	 * @param aIm The imaginary part of the dividend.
+	 * @param bRe The real part of the divisor.
+	 * @param bIm The imaginary part of the divisor.
+	 * @return The imaginary part of the quotient.
+	 */
+	public static double divImag(double aRe, double aIm, double bRe, double bIm) {
+		return (aIm * bRe - aRe * bIm) / magSquared(bRe, bIm);
+	}
+
+	/**
+	 * Returns the squared magnitude of a complex number, avoiding the square root
+	 * taken by {@link ComplexNumber#mag()}.
+	 *
+	 * @param re The real part.
+	 * @param im The imaginary part.
+	 * @return The squared magnitude.
+	 */
+	public static double magSquared(double re, double im) {
+		return re * re + im * im;
+	}
+
+	/**
+	 * Returns the sum of the squared magnitudes of the elements of a vector.
+	 *
+	 * @param re The real parts of the vector.
+	 * @param im The imaginary parts of the vector.
+	 * @return The squared Euclidean norm of the vector.
+	 */
+	public static double normSquared(double[] re, double[] im) {
+		double sum = 0;
+		for (int i = 0; i < re.length; i++) {
+			sum += re[i] * re[i] + im[i] * im[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Computes the inner product of two vectors, conjugating the first, and adds
+	 * it to the accumulator.
+	 *
+	 * @param aRe    The real parts of the vector to conjugate.
+	 * @param aIm    The imaginary parts of the vector to conjugate.
+	 * @param bRe    The real parts of the second vector.
+	 * @param bIm    The imaginary parts of the second vector.
+	 * @param result The accumulator to add the inner product to.
+	 * @throws IllegalArgumentException If the vectors have different lengths.
+	 */
+	public static void inner(double[] aRe, double[] aIm, double[] bRe, double[] bIm, ComplexAccumulator result) {
+		if (aRe.length != bRe.length) {
+			throw new IllegalArgumentException(
+					"Cannot take the inner product of vectors of length " + aRe.length + " and " + bRe.length);
+		}
+		for (int i = 0; i < aRe.length; i++) {
+			result.fmaConj(aRe[i], aIm[i], bRe[i], bIm[i]);
+		}
+	}
+
+	/**
+	 * Multiplies every element of a vector in place by a real factor.
+	 *
+	 * @param re     The real parts of the vector.
+	 * @param im     The imaginary parts of the vector.
+	 * @param factor The factor to multiply by.
+	 */
+	public static void scale(double[] re, double[] im, double factor) {
+		for (int i = 0; i < re.length; i++) {
+			re[i] *= factor;
+			im[i] *= factor;
+		}
+	}
+}
@@ -12,9 +12,19 @@ import squire.circuit.StateVector;
  */
 public class ComplexMatrix implements CombinableCircuitModifier {
 
-	private final BigInteger rows;
-	private final BigInteger cols;
+	/**
+	 * The number of entries below which matrices are always multiplied sparsely.
+	 */
+	private static final long DENSE_MIN_ENTRIES = 1 << 10;
+
+	private final long rows;
+	private final long cols;
 	private final SparseMatrix matrix;
+	/**
+	 * The cached CSR form of this matrix, or null if it has not been built since
+	 * the matrix was last modified.
+	 */
+	private CSRMatrix frozen;
 
 	/**
 	 * Constructs a complex matrix with the given number of rows and columns.
@@ -23,9 +33,7 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @param cols The number of columns in the matrix.
 	 */
 	public ComplexMatrix(int rows, int cols) {
-		this.rows = BigInteger.valueOf(rows);
-		this.cols = BigInteger.valueOf(cols);
-		this.matrix = new SparseMatrix();
+		this((long) rows, (long) cols);
 	}
 
 	/**
@@ -35,6 +43,16 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @param cols The number of columns in the matrix.
 	 */
 	public ComplexMatrix(BigInteger rows, BigInteger cols) {
+		this(rows.longValueExact(), cols.longValueExact());
+	}
+
+	/**
+	 * Constructs a complex matrix with the given number of rows and columns.
+	 *
+	 * @param rows The number of rows in the matrix.
+	 * @param cols The number of columns in the matrix.
+	 */
+	public ComplexMatrix(long rows, long cols) {
 		this.rows = rows;
 		this.cols = cols;
 		this.matrix = new SparseMatrix();
@@ -48,9 +66,8 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 */
 	public static ComplexMatrix ident(int size) {
 		ComplexMatrix identityMatrix = new ComplexMatrix(size, size);
-		BigInteger bsize = BigInteger.valueOf(size);
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(bsize) < 0; i = i.add(BigInteger.ONE)) {
-			identityMatrix.set(i, i, ComplexNumber.ONE);
+		for (long i = 0; i < size; i++) {
+			identityMatrix.set(i, i, 1, 0);
 		}
 		return identityMatrix;
 	}
@@ -77,9 +94,9 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 
 		ComplexMatrix result = new ComplexMatrix(arr.length, arr[0].length);
 
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(result.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(result.cols) < 0; j = j.add(BigInteger.ONE)) {
-				result.set(i, j, result.get(i, j).add(arr[i.intValue()][j.intValue()].intValue()));
+		for (int i = 0; i < arr.length; i++) {
+			for (int j = 0; j < arr[i].length; j++) {
+				result.set(i, j, arr[i][j].doubleValue(), 0);
 			}
 		}
 
@@ -92,6 +109,15 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @return The number of rows.
 	 */
 	public BigInteger getRows() {
+		return BigInteger.valueOf(this.rows);
+	}
+
+	/**
+	 * Gets the number of rows in the matrix.
+	 *
+	 * @return The number of rows.
+	 */
+	public long rows() {
 		return this.rows;
 	}
 
@@ -101,9 +127,27 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @return The number of columns.
 	 */
 	public BigInteger getCols() {
+		return BigInteger.valueOf(this.cols);
+	}
+
+	/**
+	 * Gets the number of columns in the matrix.
+	 *
+	 * @return The number of columns.
+	 */
+	public long cols() {
 		return this.cols;
 	}
 
+	/**
+	 * Gets the number of non-zero entries stored in the matrix.
+	 *
+	 * @return The number of non-zero entries.
+	 */
+	public int nonZeroCount() {
+		return this.matrix.size();
+	}
+
 	/**
 	 * Gets the complex number at the specified row and column.
 	 *
@@ -115,6 +159,39 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 		return this.matrix.get(row, col);
 	}
 
+	/**
+	 * Gets the complex number at the specified row and column.
+	 *
+	 * @param row The row index.
+	 * @param col The column index.
+	 * @return The complex number at the specified position.
+	 */
+	public ComplexNumber get(long row, long col) {
+		return this.matrix.get(row, col);
+	}
+
+	/**
+	 * Gets the real part of the entry at the specified row and column.
+	 *
+	 * @param row The row index.
+	 * @param col The column index.
+	 * @return The real part of the entry.
+	 */
+	public double getReal(long row, long col) {
+		return this.matrix.getReal(row, col);
+	}
+
+	/**
+	 * Gets the imaginary part of the entry at the specified row and column.
+	 *
+	 * @param row The row index.
+	 * @param col The column index.
+	 * @return The imaginary part of the entry.
+	 */
+	public double getImag(long row, long col) {
+		return this.matrix.getImag(row, col);
+	}
+
 	/**
 	 * Sets the complex number at the specified row and column.
 	 *
@@ -123,6 +200,7 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @param value The complex number to set.
 	 */
 	public void set(BigInteger row, BigInteger col, ComplexNumber value) {
+		this.frozen = null;
 		this.matrix.set(row, col, value);
 	}
 
@@ -136,10 +214,94 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @return This matrix, with the value set as specified.
 	 */
 	public ComplexMatrix set(int row, int col, ComplexNumber value) {
-		this.set(BigInteger.valueOf(row), BigInteger.valueOf(col), value);
+		this.frozen = null;
+		this.matrix.set(row, col, value);
 		return this;
 	}
 
+	/**
+	 * Sets the complex number at the specified row and column.
+	 *
+	 * @param row   The row index.
+	 * @param col   The column index.
+	 * @param value The complex number to set.
+	 * 
+	 * @return This matrix, with the value set as specified.
+	 */
+	public ComplexMatrix set(long row, long col, ComplexNumber value) {
+		this.frozen = null;
+		this.matrix.set(row, col, value);
+		return this;
+	}
+
+	/**
+	 * Sets the entry at the specified row and column from its real and imaginary
+	 * parts.
+	 *
+	 * @param row  The row index.
+	 * @param col  The column index.
+	 * @param real The real part of the entry.
+	 * @param imag The imaginary part of the entry.
+	 * 
+	 * @return This matrix, with the value set as specified.
+	 */
+	public ComplexMatrix set(long row, long col, double real, double imag) {
+		this.frozen = null;
+		this.matrix.set(row, col, real, imag);
+		return this;
+	}
+
+	/**
+	 * Calls the given consumer once for every non-zero entry of this matrix, in an
+	 * unspecified order. The matrix must not be modified by the consumer.
+	 *
+	 * @param consumer The consumer to receive each non-zero entry.
+	 */
+	public void forEachNonZero(SparseMatrix.EntryConsumer consumer) {
+		this.matrix.forEachNonZero(consumer);
+	}
+
+	/**
+	 * Returns the frozen compressed sparse row form of this matrix. The CSR form
+	 * is built on the first call and cached until the matrix is next modified, so
+	 * matrices that are applied repeatedly only pay for the conversion once.
+	 *
+	 * @return The CSR form of this matrix.
+	 */
+	public CSRMatrix freeze() {
+		CSRMatrix csr = this.frozen;
+		if (csr == null) {
+			csr = CSRMatrix.of(this);
+			this.frozen = csr;
+		}
+		return csr;
+	}
+
+	/**
+	 * Checks whether enough of this matrix is filled in that dense arithmetic is
+	 * cheaper than sparse arithmetic. Small matrices are never considered dense,
+	 * since the sparse path is already cheap for them.
+	 *
+	 * @return True if at least a quarter of the entries of a matrix with at least
+	 *         1024 entries are non-zero.
+	 */
+	private boolean isDense() {
+		long entries = this.rows * this.cols;
+		return entries >= DENSE_MIN_ENTRIES && entries <= Integer.MAX_VALUE
+				&& this.matrix.size() * 4L >= entries;
+	}
+
+	/**
+	 * Creates a copy of this matrix.
+	 *
+	 * @return A new matrix with the same dimensions and entries as this one.
+	 */
+	public ComplexMatrix copy() {
+		ComplexMatrix result = new ComplexMatrix(this.rows, this.cols);
+		this.forEachNonZero(result::set);
+		return result;
+	}
+
 	/**
 	 * Adds another complex matrix to this matrix.
 	 *
@@ -147,17 +309,12 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @return The result of the addition.
 	 */
 	public ComplexMatrix add(ComplexMatrix other) {
-		if (!this.rows.equals(other.rows) || !this.cols.equals(other.cols)) {
+		if (this.rows != other.rows || this.cols != other.cols) {
 			throw new IllegalArgumentException("Matrix dimensions must be the same for addition.");
 		}
 
-		ComplexMatrix result = new ComplexMatrix(this.rows, this.cols);
-
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-				result.set(i, j, this.get(i, j).add(other.get(i, j)));
-			}
-		}
+		ComplexMatrix result = this.copy();
+		other.forEachNonZero((i, j, re, im) -> result.set(i, j, result.getReal(i, j) + re, result.getImag(i, j) + im));
 
 		return result;
 	}
@@ -169,17 +326,12 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 * @return The result of the subtraction.
 	 */
 	public ComplexMatrix sub(ComplexMatrix other) {
-		if (!this.rows.equals(other.rows) || !this.cols.equals(other.cols)) {
+		if (this.rows != other.rows || this.cols != other.cols) {
 			throw new IllegalArgumentException("Matrix dimensions must be the same for subtraction.");
 		}
 
-		ComplexMatrix result = new ComplexMatrix(this.rows, this.cols);
-
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-				result.set(i, j, this.get(i, j).sub(other.get(i, j)));
-			}
-		}
+		ComplexMatrix result = this.copy();
+		other.forEachNonZero((i, j, re, im) -> result.set(i, j, result.getReal(i, j) - re, result.getImag(i, j) - im));
 
 		return result;
 	}
@@ -192,25 +344,19 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 */
 	public ComplexMatrix mult(ComplexMatrix that) {
 
-		if (!this.cols.equals(that.rows)) {
+		if (this.cols != that.rows) {
 			throw new IllegalArgumentException("Number of columns in the first matrix (" + this.cols
 					+ ") must be equal to the number of rows in the second matrix (" + that.rows
 					+ ") for multiplication.");
 		}
 
-		ComplexMatrix result = new ComplexMatrix(this.rows, that.cols);
-
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(that.cols) < 0; j = j.add(BigInteger.ONE)) {
-				ComplexNumber sum = new ComplexNumber(0, 0);
-				for (BigInteger k = BigInteger.ZERO; k.compareTo(this.cols) < 0; k = k.add(BigInteger.ONE)) {
-					sum = sum.add(this.get(i, k).mult(that.get(k, j)));
-				}
-				result.set(i, j, sum);
-			}
+		// Mostly-filled matrices go through the blocked dense product. Everything
+		// else is multiplied in CSR form so that only products of non-zero entries
+		// are computed.
+		if (this.isDense() && that.isDense()) {
+			return this.toDense().mult(that.toDense()).toComplexMatrix();
 		}
-
-		return result;
+		return this.freeze().mult(that.freeze()).toComplexMatrix();
 	}
 
 	/**
@@ -221,12 +367,11 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	 */
 	public ComplexMatrix mult(ComplexNumber scalar) {
 		ComplexMatrix result = new ComplexMatrix(rows, cols);
+		double sRe = scalar.real();
+		double sIm = scalar.imag();
 
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-				result.set(i, j, this.get(i, j).mult(scalar));
-			}
-		}
+		this.forEachNonZero((i, j, re, im) -> result.set(i, j, ComplexMath.multReal(re, im, sRe, sIm),
+				ComplexMath.multImag(re, im, sRe, sIm)));
 		return result;
 	}
 
@@ -239,9 +384,9 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	public ComplexMatrix add(ComplexNumber scalar) {
 		ComplexMatrix result = new ComplexMatrix(rows, cols);
 
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-				result.set(i, j, this.get(i, j).add(scalar));
+		for (long i = 0; i < this.rows; i++) {
+			for (long j = 0; j < this.cols; j++) {
+				result.set(i, j, this.getReal(i, j) + scalar.real(), this.getImag(i, j) + scalar.imag());
 			}
 		}
 		return result;
@@ -256,135 +401,112 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	public ComplexMatrix sub(ComplexNumber scalar) {
 		ComplexMatrix result = new ComplexMatrix(rows, cols);
 
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-				result.set(i, j, this.get(i, j).sub(scalar));
+		for (long i = 0; i < this.rows; i++) {
+			for (long j = 0; j < this.cols; j++) {
+				result.set(i, j, this.getReal(i, j) - scalar.real(), this.getImag(i, j) - scalar.imag());
 			}
 		}
 		return result;
 	}
 
 	/**
-	 * Computes the tensor product of this matrix with another matrix.
+	 * Computes the tensor product of this matrix with another matrix. The product
+	 * is fully materialised; use {@link KroneckerOperator} to apply or compose
+	 * tensor products without expanding them.
 	 *
 	 * @param other The matrix to tensor product with.
 	 * @return The result of the tensor product.
+	 * @see KroneckerOperator
 	 */
 	public ComplexMatrix tensor(ComplexMatrix other) {
-		ComplexMatrix result = new ComplexMatrix(this.rows.multiply(other.rows), this.cols.multiply(other.cols));
-
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-				for (BigInteger k = BigInteger.ZERO; k.compareTo(other.rows) < 0; k = k.add(BigInteger.ONE)) {
-					for (BigInteger l = BigInteger.ZERO; l.compareTo(other.cols) < 0; l = l.add(BigInteger.ONE)) {
-						ComplexNumber element = this.get(i, j).mult(other.get(k, l));
-						result.set(i.multiply(other.rows).add(k), j.multiply(other.cols).add(l), element);
-					}
-				}
-			}
-		}
+		ComplexMatrix result = new ComplexMatrix(Math.multiplyExact(this.rows, other.rows),
+				Math.multiplyExact(this.cols, other.cols));
+
+		// Each pair of non-zero entries produces exactly one non-zero entry.
+		this.forEachNonZero((i, j, aRe, aIm) -> other.forEachNonZero((k, l, bRe, bIm) -> result.set(
+				i * other.rows + k, j * other.cols + l, ComplexMath.multReal(aRe, aIm, bRe, bIm),
+				ComplexMath.multImag(aRe, aIm, bRe, bIm))));
 
 		return result;
 	}
 
 	/**
-	 * Calculates the determinant of the matrix using LU decomposition.
+	 * Calculates the determinant of the matrix using LU decomposition. The
+	 * decomposition is performed in place on a dense primitive copy of the matrix.
 	 *
 	 * @return The determinant of the matrix.
+	 * @see DenseComplexMatrix#det()
 	 */
 	public ComplexNumber det() {
 		// Check if the matrix is square
-		if (!this.rows.equals(this.cols)) {
+		if (this.rows != this.cols) {
 			throw new UnsupportedOperationException(
 					"Determinant is only defined for square matrices, this matrix is " + this.rows + "x" + this.cols);
 		}
 
-		// Create a copy of the matrix to avoid modifying the original
-		ComplexMatrix copyMatrix = new ComplexMatrix(this.rows, this.cols);
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-				copyMatrix.set(i, j, this.get(i, j));
-			}
-		}
-
-		// Initialize variables
-		ComplexNumber determinant = ComplexNumber.ONE;
-		BigInteger sign = BigInteger.ONE;
-
-		// Perform LU decomposition with partial pivoting
-		for (BigInteger k = BigInteger.ZERO; k.compareTo(this.rows.subtract(BigInteger.ONE)) < 0; k = k
-				.add(BigInteger.ONE)) {
-			// Find pivot element and swap rows if necessary
-			BigInteger pivotRow = findPivotRow(copyMatrix, k);
-			if (!pivotRow.equals(k)) {
-				copyMatrix = swapRows(copyMatrix, k, pivotRow);
-				sign = sign.negate();
-			}
-
-			// Update the determinant with the pivot element
-			determinant = determinant.mult(copyMatrix.get(k, k));
-
-			// Update the lower and upper triangular matrices
-			for (BigInteger i = k.add(BigInteger.ONE); i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-				ComplexNumber factor = copyMatrix.get(i, k).div(copyMatrix.get(k, k));
-				copyMatrix.set(i, k, factor);
-				for (BigInteger j = k.add(BigInteger.ONE); j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-					copyMatrix.set(i, j, copyMatrix.get(i, j).sub(factor.mult(copyMatrix.get(k, j))));
-				}
-			}
-		}
-
-		// Multiply by the last pivot element
-		determinant = determinant
-				.mult(copyMatrix.get(this.rows.subtract(BigInteger.ONE), this.cols.subtract(BigInteger.ONE)));
-
-		return determinant.mult(sign.intValueExact());
+		return this.toDense().det();
 	}
 
 	/**
-	 * Finds the pivot row for LU decomposition with partial pivoting.
+	 * Calculates the inverse of the matrix using LU decomposition.
 	 *
-	 * @param matrix The matrix.
-	 * @param k      The current column index.
-	 * @return The index of the pivot row.
+	 * @return The inverse of the matrix.
+	 * @throws UnsupportedOperationException If the matrix is not square.
+	 * @throws ArithmeticException           If the matrix is singular.
+	 * @see DenseComplexMatrix#inverse()
 	 */
-	private BigInteger findPivotRow(ComplexMatrix matrix, BigInteger k) {
-		BigInteger pivotRow = k;
-		double pivotValue = matrix.get(k, k).mag();
-
-		for (BigInteger i = k.add(BigInteger.ONE); i.compareTo(matrix.rows) < 0; i = i.add(BigInteger.ONE)) {
-			double currentValue = matrix.get(i, k).mag();
-			if (currentValue > pivotValue) {
-				pivotValue = currentValue;
-				pivotRow = i;
-			}
-		}
-
-		return pivotRow;
+	public ComplexMatrix inverse() {
+		return this.toDense().inverse().toComplexMatrix();
 	}
 
 	/**
-	 * Swaps two rows in the matrix.
+	 * Checks whether this matrix is unitary, that is whether its conjugate
+	 * transpose times itself is the identity to within the given tolerance.
 	 *
-	 * @param matrix The matrix.
-	 * @param row1   The index of the first row.
-	 * @param row2   The index of the second row.
-	 * @return The matrix with swapped rows.
+	 * @param tolerance The largest allowed deviation of any entry from the
+	 *                  identity.
+	 * @return True if the matrix is unitary, false otherwise.
+	 * @see DenseComplexMatrix#isUnitary(double)
 	 */
-	private ComplexMatrix swapRows(ComplexMatrix matrix, BigInteger row1, BigInteger row2) {
-		ComplexMatrix swappedMatrix = new ComplexMatrix(matrix.rows, matrix.cols);
+	public boolean isUnitary(double tolerance) {
+		return this.toDense().isUnitary(tolerance);
+	}
 
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(matrix.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(matrix.cols) < 0; j = j.add(BigInteger.ONE)) {
-				ComplexNumber value = (i.equals(row1)) ? matrix.get(row2, j)
-						: ((i.equals(row2)) ? matrix.get(row1, j) : matrix.get(i, j));
-				swappedMatrix.set(i, j, value);
-			}
-		}
+	/**
+	 * Checks whether this matrix is Hermitian, that is whether it equals its
+	 * conjugate transpose to within the given tolerance.
+	 *
+	 * @param tolerance The largest allowed deviation of any entry from the
+	 *                  conjugate of its transposed entry.
+	 * @return True if the matrix is Hermitian, false otherwise.
+	 * @see DenseComplexMatrix#isHermitian(double)
+	 */
+	public boolean isHermitian(double tolerance) {
+		return this.toDense().isHermitian(tolerance);
+	}
 
-		return swappedMatrix;
+	/**
+	 * Computes the matrix exponential using scaling and squaring with Padé
+	 * approximants. The computation is performed on a dense primitive copy of the
+	 * matrix, so this is intended for small matrices such as the generators of
+	 * custom gates.
+	 *
+	 * @return The matrix exponential of this matrix.
+	 * @throws UnsupportedOperationException If the matrix is not square.
+	 * @see DenseComplexMatrix#expm()
+	 */
+	public ComplexMatrix expm() {
+		return this.toDense().expm().toComplexMatrix();
 	}
 
+	/**
+	 * Copies this matrix into a dense primitive-array matrix.
+	 *
+	 * @return The dense copy of this matrix.
+	 */
+	public DenseComplexMatrix toDense() {
+		return DenseComplexMatrix.of(this);
+	}
 	/**
 	 * Checks if two objects are equal. If the superclass implementation of .equals
 	 * returns true, this method will return true.
@@ -405,23 +527,35 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 		}
 
 		if (obj instanceof ComplexMatrix other) {
-			if (!this.rows.equals(other.rows) || !this.cols.equals(other.cols)) {
+			if (this.rows != other.rows || this.cols != other.cols) {
 				return false;
 			}
 
-			for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-				for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
-					if (!this.get(i, j).equals(other.get(i, j))) {
-						return false;
-					}
-				}
-			}
-			return true;
+			// Entries that are zero in both matrices are trivially equal, so only the
+			// non-zero entries of each side need to be compared.
+			return this.matchesNonZeros(other) && other.matchesNonZeros(this);
 		}
 
 		return false;
 	}
 
+	/**
+	 * Checks whether every non-zero entry of this matrix is approximately equal to
+	 * the corresponding entry of the other matrix.
+	 *
+	 * @param other The matrix to compare with.
+	 * @return True if all non-zero entries match, false otherwise.
+	 */
+	private boolean matchesNonZeros(ComplexMatrix other) {
+		boolean[] matches = { true };
+		this.forEachNonZero((i, j, re, im) -> {
+			if (Math.abs(re - other.getReal(i, j)) >= 1e-10 || Math.abs(im - other.getImag(i, j)) >= 1e-10) {
+				matches[0] = false;
+			}
+		});
+		return matches[0];
+	}
+
 	/**
 	 * Returns a human-readable string representation of the complex matrix.
 	 *
@@ -430,8 +564,8 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
-		for (BigInteger i = BigInteger.ZERO; i.compareTo(this.rows) < 0; i = i.add(BigInteger.ONE)) {
-			for (BigInteger j = BigInteger.ZERO; j.compareTo(this.cols) < 0; j = j.add(BigInteger.ONE)) {
+		for (long i = 0; i < this.rows; i++) {
+			for (long j = 0; j < this.cols; j++) {
 				result.append(this.get(i, j)).append("\t");
 			}
 			result.append("\n");
@@ -456,7 +590,7 @@ public class ComplexMatrix implements CombinableCircuitModifier {
 
 	@Override
 	public int numQubits() {
-		return this.getRows().bitLength();
+		return 64 - Long.numberOfLeadingZeros(this.rows);
 	}
 
 }
\ No newline at end of file
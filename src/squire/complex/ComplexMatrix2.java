@@ -0,0 +1,235 @@
+package squire.complex;
+
+/**
+ * Represents a dense 2x2 complex matrix, such as the matrix of a single-qubit
+ * gate. The eight real and imaginary parts are held in fields and every
+ * operation is fully unrolled, so products and adjoints never touch a map or
+ * allocate intermediate {@link ComplexNumber} objects. Instances are
+ * immutable.
+ *
+ * @see ComplexMatrix4
+ * @see ComplexMatrix
+ */
+public final class ComplexMatrix2 {
+
+	/**
+	 * The 2x2 identity matrix.
+	 */
+	public static final ComplexMatrix2 IDENTITY = new ComplexMatrix2(1, 0, 0, 0, 0, 0, 1, 0);
+
+	private final double r00, i00, r01, i01;
+	private final double r10, i10, r11, i11;
+
+	/**
+	 * Constructs a 2x2 matrix from the real and imaginary parts of its entries, in
+	 * row-major order.
+	 *
+	 * @param r00 The real part of the entry at row 0, column 0.
+	 * @param i00 The imaginary part of the entry at row 0, column 0.
+	 * @param r01 The real part of the entry at row 0, column 1.
+	 * @param i01 The imaginary part of the entry at row 0, column 1.
+	 * @param r10 The real part of the entry at row 1, column 0.
+	 * @param i10 The imaginary part of the entry at row 1, column 0.
+	 * @param r11 The real part of the entry at row 1, column 1.
+	 * @param i11 The imaginary part of the entry at row 1, column 1.
+	 */
+	public ComplexMatrix2(double r00, double i00, double r01, double i01, double r10, double i10, double r11,
+			double i11) {
+		this.r00 = r00;
+		this.i00 = i00;
+		this.r01 = r01;
+		this.i01 = i01;
+		this.r10 = r10;
+		this.i10 = i10;
+		this.r11 = r11;
+		this.i11 = i11;
+	}
+
+	/**
+	 * Constructs a 2x2 matrix from its entries, in row-major order.
+	 *
+	 * @param a00 The entry at row 0, column 0.
+	 * @param a01 The entry at row 0, column 1.
+	 * @param a10 The entry at row 1, column 0.
+	 * @param a11 The entry at row 1, column 1.
+	 */
+	public ComplexMatrix2(ComplexNumber a00, ComplexNumber a01, ComplexNumber a10, ComplexNumber a11) {
+		this(a00.real(), a00.imag(), a01.real(), a01.imag(), a10.real(), a10.imag(), a11.real(), a11.imag());
+	}
+
+	/**
+	 * Creates a diagonal 2x2 matrix.
+	 *
+	 * @param a00 The entry at row 0, column 0.
+	 * @param a11 The entry at row 1, column 1.
+	 * @return The diagonal matrix.
+	 */
+	public static ComplexMatrix2 diagonal(ComplexNumber a00, ComplexNumber a11) {
+		return new ComplexMatrix2(a00.real(), a00.imag(), 0, 0, 0, 0, a11.real(), a11.imag());
+	}
+
+	/**
+	 * Copies a 2x2 {@link ComplexMatrix} into a dense 2x2 matrix.
+	 *
+	 * @param matrix The matrix to copy.
+	 * @return The dense copy of the matrix.
+	 * @throws IllegalArgumentException If the matrix is not 2x2.
+	 */
+	public static ComplexMatrix2 of(ComplexMatrix matrix) {
+		if (matrix.rows() != 2 || matrix.cols() != 2) {
+			throw new IllegalArgumentException("Cannot copy a " + matrix.rows() + "x" + matrix.cols()
+					+ " matrix into a 2x2 matrix.");
+		}
+		return new ComplexMatrix2(matrix.getReal(0, 0), matrix.getImag(0, 0), matrix.getReal(0, 1),
+				matrix.getImag(0, 1), matrix.getReal(1, 0), matrix.getImag(1, 0), matrix.getReal(1, 1),
+				matrix.getImag(1, 1));
+	}
+
+	/**
+	 * Gets the complex number at the specified row and column.
+	 *
+	 * @param row The row index, 0 or 1.
+	 * @param col The column index, 0 or 1.
+	 * @return The complex number at the specified position.
+	 */
+	public ComplexNumber get(int row, int col) {
+		return new ComplexNumber(this.getReal(row, col), this.getImag(row, col));
+	}
+
+	/**
+	 * Gets the real part of the entry at the specified row and column.
+	 *
+	 * @param row The row index, 0 or 1.
+	 * @param col The column index, 0 or 1.
+	 * @return The real part of the entry.
+	 */
+	public double getReal(int row, int col) {
+		return switch ((row << 1) | col) {
+		case 0 -> this.r00;
+		case 1 -> this.r01;
+		case 2 -> this.r10;
+		case 3 -> this.r11;
+		default -> throw new IndexOutOfBoundsException("Cannot access (" + row + ", " + col + ") in a 2x2 matrix");
+		};
+	}
+
+	/**
+	 * Gets the imaginary part of the entry at the specified row and column.
+	 *
+	 * @param row The row index, 0 or 1.
+	 * @param col The column index, 0 or 1.
+	 * @return The imaginary part of the entry.
+	 */
+	public double getImag(int row, int col) {
+		return switch ((row << 1) | col) {
+		case 0 -> this.i00;
+		case 1 -> this.i01;
+		case 2 -> this.i10;
+		case 3 -> this.i11;
+		default -> throw new IndexOutOfBoundsException("Cannot access (" + row + ", " + col + ") in a 2x2 matrix");
+		};
+	}
+
+	/**
+	 * Multiplies this matrix by another 2x2 matrix.
+	 *
+	 * @param that The matrix to multiply by.
+	 * @return The product {@code this * that}.
+	 */
+	public ComplexMatrix2 mult(ComplexMatrix2 that) {
+		return new ComplexMatrix2(
+				this.r00 * that.r00 - this.i00 * that.i00 + this.r01 * that.r10 - this.i01 * that.i10,
+				this.r00 * that.i00 + this.i00 * that.r00 + this.r01 * that.i10 + this.i01 * that.r10,
+				this.r00 * that.r01 - this.i00 * that.i01 + this.r01 * that.r11 - this.i01 * that.i11,
+				this.r00 * that.i01 + this.i00 * that.r01 + this.r01 * that.i11 + this.i01 * that.r11,
+				this.r10 * that.r00 - this.i10 * that.i00 + this.r11 * that.r10 - this.i11 * that.i10,
+				this.r10 * that.i00 + this.i10 * that.r00 + this.r11 * that.i10 + this.i11 * that.r10,
+				this.r10 * that.r01 - this.i10 * that.i01 + this.r11 * that.r11 - this.i11 * that.i11,
+				this.r10 * that.i01 + this.i10 * that.r01 + this.r11 * that.i11 + this.i11 * that.r11);
+	}
+
+	/**
+	 * Composes this matrix with the operation applied after it.
+	 *
+	 * @param next The matrix applied after this one.
+	 * @return The product {@code next * this}.
+	 */
+	public ComplexMatrix2 compose(ComplexMatrix2 next) {
+		return next.mult(this);
+	}
+
+	/**
+	 * Returns the conjugate transpose of this matrix.
+	 *
+	 * @return The adjoint of this matrix.
+	 */
+	public ComplexMatrix2 adjoint() {
+		return new ComplexMatrix2(this.r00, -this.i00, this.r10, -this.i10, this.r01, -this.i01, this.r11, -this.i11);
+	}
+
+	/**
+	 * Computes the tensor product of this matrix with another 2x2 matrix. This
+	 * matrix acts on the more significant bit of the resulting 4x4 index.
+	 *
+	 * @param other The matrix to tensor product with.
+	 * @return The result of the tensor product.
+	 */
+	public ComplexMatrix4 tensor(ComplexMatrix2 other) {
+		double[] real = new double[16];
+		double[] imag = new double[16];
+		for (int i = 0; i < 2; i++) {
+			for (int j = 0; j < 2; j++) {
+				double aRe = this.getReal(i, j);
+				double aIm = this.getImag(i, j);
+				for (int k = 0; k < 2; k++) {
+					for (int l = 0; l < 2; l++) {
+						int index = (((i << 1) | k) << 2) | ((j << 1) | l);
+						real[index] = aRe * other.getReal(k, l) - aIm * other.getImag(k, l);
+						imag[index] = aRe * other.getImag(k, l) + aIm * other.getReal(k, l);
+					}
+				}
+			}
+		}
+		return new ComplexMatrix4(real, imag);
+	}
+
+	/**
+	 * Applies this matrix in place to the pair of amplitudes at indices i0 and i1
+	 * of a vector, treating them as the components of a 2-vector.
+	 *
+	 * @param real The real parts of the vector.
+	 * @param imag The imaginary parts of the vector.
+	 * @param i0   The index of the first component.
+	 * @param i1   The index of the second component.
+	 */
+	public void apply(double[] real, double[] imag, int i0, int i1) {
+		double xr0 = real[i0];
+		double xi0 = imag[i0];
+		double xr1 = real[i1];
+		double xi1 = imag[i1];
+		real[i0] = this.r00 * xr0 - this.i00 * xi0 + this.r01 * xr1 - this.i01 * xi1;
+		imag[i0] = this.r00 * xi0 + this.i00 * xr0 + this.r01 * xi1 + this.i01 * xr1;
+		real[i1] = this.r10 * xr0 - this.i10 * xi0 + this.r11 * xr1 - this.i11 * xi1;
+		imag[i1] = this.r10 * xi0 + this.i10 * xr0 + this.r11 * xi1 + this.i11 * xr1;
+	}
+
+	/**
+	 * Copies this matrix into a {@link ComplexMatrix}.
+	 *
+	 * @return The matrix as a {@link ComplexMatrix}.
+	 */
+	public ComplexMatrix toComplexMatrix() {
+		return new ComplexMatrix(2, 2).set(0, 0, this.r00, this.i00).set(0, 1, this.r01, this.i01)
+				.set(1, 0, this.r10, this.i10).set(1, 1, this.r11, this.i11);
+	}
+
+	/**
+	 * Returns a human-readable string representation of the matrix.
+	 *
+	 * @return The string representation of the matrix.
+	 */
+	@Override
+	public String toString() {
+		return this.toComplexMatrix().toString();
+	}
+}
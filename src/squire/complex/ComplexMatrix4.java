@@ -0,0 +1,284 @@
+package squire.complex;
+
+import java.util.Arrays;
+
+/**
+ * Represents a dense 4x4 complex matrix, such as the matrix of a two-qubit
+ * gate. The entries are held in two short row-major primitive arrays and the
+ * products are unrolled over the inner dimension, so no map lookups or
+ * intermediate {@link ComplexNumber} objects are involved. Instances are
+ * immutable.
+ *
+ * @see ComplexMatrix2
+ * @see ComplexMatrix
+ */
+public final class ComplexMatrix4 {
+
+	/**
+	 * The 4x4 identity matrix.
+	 */
+	public static final ComplexMatrix4 IDENTITY = ComplexMatrix4.diagonal(ComplexNumber.ONE, ComplexNumber.ONE,
+			ComplexNumber.ONE, ComplexNumber.ONE);
+
+	/**
+	 * The real parts of the entries, in row-major order.
+	 */
+	private final double[] real;
+	/**
+	 * The imaginary parts of the entries, in row-major order.
+	 */
+	private final double[] imag;
+
+	/**
+	 * Constructs a 4x4 matrix that takes ownership of the given row-major arrays.
+	 */
+	ComplexMatrix4(double[] real, double[] imag) {
+		this.real = real;
+		this.imag = imag;
+	}
+
+	/**
+	 * Constructs a 4x4 matrix from the given row-major real and imaginary parts.
+	 * The arrays are copied.
+	 *
+	 * @param real The 16 real parts of the entries, in row-major order.
+	 * @param imag The 16 imaginary parts of the entries, in row-major order.
+	 * @return The matrix.
+	 * @throws IllegalArgumentException If either array does not have 16 elements.
+	 */
+	public static ComplexMatrix4 of(double[] real, double[] imag) {
+		if (real.length != 16 || imag.length != 16) {
+			throw new IllegalArgumentException("A 4x4 matrix needs 16 real and 16 imaginary parts.");
+		}
+		return new ComplexMatrix4(Arrays.copyOf(real, 16), Arrays.copyOf(imag, 16));
+	}
+
+	/**
+	 * Creates a diagonal 4x4 matrix.
+	 *
+	 * @param a00 The entry at row 0, column 0.
+	 * @param a11 The entry at row 1, column 1.
+	 * @param a22 The entry at row 2, column 2.
+	 * @param a33 The entry at row 3, column 3.
+	 * @return The diagonal matrix.
+	 */
+	public static ComplexMatrix4 diagonal(ComplexNumber a00, ComplexNumber a11, ComplexNumber a22,
+			ComplexNumber a33) {
+		double[] real = new double[16];
+		double[] imag = new double[16];
+		real[0] = a00.real();
+		imag[0] = a00.imag();
+		real[5] = a11.real();
+		imag[5] = a11.imag();
+		real[10] = a22.real();
+		imag[10] = a22.imag();
+		real[15] = a33.real();
+		imag[15] = a33.imag();
+		return new ComplexMatrix4(real, imag);
+	}
+
+	/**
+	 * Creates a 4x4 permutation matrix that maps basis state {@code i} to basis
+	 * state {@code perm[i]}.
+	 *
+	 * @param perm The permutation of {0, 1, 2, 3}.
+	 * @return The permutation matrix.
+	 */
+	public static ComplexMatrix4 permutation(int... perm) {
+		double[] real = new double[16];
+		for (int i = 0; i < 4; i++) {
+			real[(perm[i] << 2) | i] = 1;
+		}
+		return new ComplexMatrix4(real, new double[16]);
+	}
+
+	/**
+	 * Copies a 4x4 {@link ComplexMatrix} into a dense 4x4 matrix.
+	 *
+	 * @param matrix The matrix to copy.
+	 * @return The dense copy of the matrix.
+	 * @throws IllegalArgumentException If the matrix is not 4x4.
+	 */
+	public static ComplexMatrix4 of(ComplexMatrix matrix) {
+		if (matrix.rows() != 4 || matrix.cols() != 4) {
+			throw new IllegalArgumentException("Cannot copy a " + matrix.rows() + "x" + matrix.cols()
+					+ " matrix into a 4x4 matrix.");
+		}
+		double[] real = new double[16];
+		double[] imag = new double[16];
+		matrix.forEachNonZero((i, j, re, im) -> {
+			real[(int) (i << 2 | j)] = re;
+			imag[(int) (i << 2 | j)] = im;
+		});
+		return new ComplexMatrix4(real, imag);
+	}
+
+	/**
+	 * Gets the complex number at the specified row and column.
+	 *
+	 * @param row The row index, from 0 to 3.
+	 * @param col The column index, from 0 to 3.
+	 * @return The complex number at the specified position.
+	 */
+	public ComplexNumber get(int row, int col) {
+		return new ComplexNumber(this.getReal(row, col), this.getImag(row, col));
+	}
+
+	/**
+	 * Gets the real part of the entry at the specified row and column.
+	 *
+	 * @param row The row index, from 0 to 3.
+	 * @param col The column index, from 0 to 3.
+	 * @return The real part of the entry.
+	 */
+	public double getReal(int row, int col) {
+		return this.real[index(row, col)];
+	}
+
+	/**
+	 * Gets the imaginary part of the entry at the specified row and column.
+	 *
+	 * @param row The row index, from 0 to 3.
+	 * @param col The column index, from 0 to 3.
+	 * @return The imaginary part of the entry.
+	 */
+	public double getImag(int row, int col) {
+		return this.imag[index(row, col)];
+	}
+
+	private static int index(int row, int col) {
+		if (row < 0 || row > 3 || col < 0 || col > 3) {
+			throw new IndexOutOfBoundsException("Cannot access (" + row + ", " + col + ") in a 4x4 matrix");
+		}
+		return (row << 2) | col;
+	}
+
+	/**
+	 * Multiplies this matrix by another 4x4 matrix.
+	 *
+	 * @param that The matrix to multiply by.
+	 * @return The product {@code this * that}.
+	 */
+	public ComplexMatrix4 mult(ComplexMatrix4 that) {
+		double[] ar = this.real, ai = this.imag, br = that.real, bi = that.imag;
+		double[] real = new double[16];
+		double[] imag = new double[16];
+		for (int i = 0; i < 16; i += 4) {
+			for (int j = 0; j < 4; j++) {
+				real[i + j] = ar[i] * br[j] - ai[i] * bi[j] + ar[i + 1] * br[4 + j] - ai[i + 1] * bi[4 + j]
+						+ ar[i + 2] * br[8 + j] - ai[i + 2] * bi[8 + j] + ar[i + 3] * br[12 + j]
+						- ai[i + 3] * bi[12 + j];
+				imag[i + j] = ar[i] * bi[j] + ai[i] * br[j] + ar[i + 1] * bi[4 + j] + ai[i + 1] * br[4 + j]
+						+ ar[i + 2] * bi[8 + j] + ai[i + 2] * br[8 + j] + ar[i + 3] * bi[12 + j]
+						+ ai[i + 3] * br[12 + j];
+			}
+		}
+		return new ComplexMatrix4(real, imag);
+	}
+
+	/**
+	 * Composes this matrix with the operation applied after it.
+	 *
+	 * @param next The matrix applied after this one.
+	 * @return The product {@code next * this}.
+	 */
+	public ComplexMatrix4 compose(ComplexMatrix4 next) {
+		return next.mult(this);
+	}
+
+	/**
+	 * Returns the conjugate transpose of this matrix.
+	 *
+	 * @return The adjoint of this matrix.
+	 */
+	public ComplexMatrix4 adjoint() {
+		double[] real = new double[16];
+		double[] imag = new double[16];
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) {
+				real[(j << 2) | i] = this.real[(i << 2) | j];
+				imag[(j << 2) | i] = -this.imag[(i << 2) | j];
+			}
+		}
+		return new ComplexMatrix4(real, imag);
+	}
+
+	/**
+	 * Returns this matrix with its two qubits exchanged, that is
+	 * {@code SWAP * this * SWAP}. This is the same operator acting on the target
+	 * qubits listed in the opposite order.
+	 *
+	 * @return The matrix with its qubits exchanged.
+	 */
+	public ComplexMatrix4 swapQubits() {
+		double[] real = new double[16];
+		double[] imag = new double[16];
+		for (int i = 0; i < 4; i++) {
+			int si = ((i & 1) << 1) | (i >> 1);
+			for (int j = 0; j < 4; j++) {
+				int sj = ((j & 1) << 1) | (j >> 1);
+				real[(si << 2) | sj] = this.real[(i << 2) | j];
+				imag[(si << 2) | sj] = this.imag[(i << 2) | j];
+			}
+		}
+		return new ComplexMatrix4(real, imag);
+	}
+
+	/**
+	 * Applies this matrix in place to the four amplitudes at the given indices of
+	 * a vector, treating them as the components of a 4-vector.
+	 *
+	 * @param real The real parts of the vector.
+	 * @param imag The imaginary parts of the vector.
+	 * @param i0   The index of the first component.
+	 * @param i1   The index of the second component.
+	 * @param i2   The index of the third component.
+	 * @param i3   The index of the fourth component.
+	 */
+	public void apply(double[] real, double[] imag, int i0, int i1, int i2, int i3) {
+		double[] ar = this.real, ai = this.imag;
+		double xr0 = real[i0], xi0 = imag[i0];
+		double xr1 = real[i1], xi1 = imag[i1];
+		double xr2 = real[i2], xi2 = imag[i2];
+		double xr3 = real[i3], xi3 = imag[i3];
+		real[i0] = ar[0] * xr0 - ai[0] * xi0 + ar[1] * xr1 - ai[1] * xi1 + ar[2] * xr2 - ai[2] * xi2 + ar[3] * xr3
+				- ai[3] * xi3;
+		imag[i0] = ar[0] * xi0 + ai[0] * xr0 + ar[1] * xi1 + ai[1] * xr1 + ar[2] * xi2 + ai[2] * xr2 + ar[3] * xi3
+				+ ai[3] * xr3;
+		real[i1] = ar[4] * xr0 - ai[4] * xi0 + ar[5] * xr1 - ai[5] * xi1 + ar[6] * xr2 - ai[6] * xi2 + ar[7] * xr3
+				- ai[7] * xi3;
+		imag[i1] = ar[4] * xi0 + ai[4] * xr0 + ar[5] * xi1 + ai[5] * xr1 + ar[6] * xi2 + ai[6] * xr2 + ar[7] * xi3
+				+ ai[7] * xr3;
+		real[i2] = ar[8] * xr0 - ai[8] * xi0 + ar[9] * xr1 - ai[9] * xi1 + ar[10] * xr2 - ai[10] * xi2
+				+ ar[11] * xr3 - ai[11] * xi3;
+		imag[i2] = ar[8] * xi0 + ai[8] * xr0 + ar[9] * xi1 + ai[9] * xr1 + ar[10] * xi2 + ai[10] * xr2
+				+ ar[11] * xi3 + ai[11] * xr3;
+		real[i3] = ar[12] * xr0 - ai[12] * xi0 + ar[13] * xr1 - ai[13] * xi1 + ar[14] * xr2 - ai[14] * xi2
+				+ ar[15] * xr3 - ai[15] * xi3;
+		imag[i3] = ar[12] * xi0 + ai[12] * xr0 + ar[13] * xi1 + ai[13] * xr1 + ar[14] * xi2 + ai[14] * xr2
+				+ ar[15] * xi3 + ai[15] * xr3;
+	}
+
+	/**
+	 * Copies this matrix into a {@link ComplexMatrix}.
+	 *
+	 * @return The matrix as a {@link ComplexMatrix}.
+	 */
+	public ComplexMatrix toComplexMatrix() {
+		ComplexMatrix result = new ComplexMatrix(4, 4);
+		for (int i = 0; i < 16; i++) {
+			result.set(i >> 2, i & 3, this.real[i], this.imag[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a human-readable string representation of the matrix.
+	 *
+	 * @return The string representation of the matrix.
+	 */
+	@Override
+	public String toString() {
+		return this.toComplexMatrix().toString();
+	}
+}
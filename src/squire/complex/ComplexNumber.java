@@ -144,8 +144,8 @@ public class ComplexNumber {
 	 * @return The result of the division, as a new object.
 	 */
 	public ComplexNumber div(ComplexNumber that) {
-		double mag = this.mag();
-		return that.mult(this.conj()).div(mag * mag);
+		return new ComplexNumber(ComplexMath.divReal(this.real, this.imag, that.real, that.imag),
+				ComplexMath.divImag(this.real, this.imag, that.real, that.imag));
 	}
 
 	/**
@@ -165,8 +165,8 @@ public class ComplexNumber {
 	 * @return The result of the multiplication, as a new object.
 	 */
 	public ComplexNumber mult(ComplexNumber that) {
-		double newReal = this.real * that.real - this.imag * that.imag;
-		double newImag = this.real * that.imag + this.imag * that.real;
+		double newReal = ComplexMath.multReal(this.real, this.imag, that.real, that.imag);
+		double newImag = ComplexMath.multImag(this.real, this.imag, that.real, that.imag);
 		return new ComplexNumber(newReal, newImag);
 	}
 
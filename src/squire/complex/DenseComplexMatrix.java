@@ -0,0 +1,663 @@
+package squire.complex;
+
+import java.util.stream.IntStream;
+
+/**
+ * Represents a dense matrix of complex numbers stored as two row-major
+ * primitive arrays, one for the real parts and one for the imaginary parts.
+ * This is the representation used for linear algebra on matrices that are not
+ * sparse, such as fused gates and the blocks used for unitarity checks.
+ *
+ * Products use a cache-blocked kernel whose row blocks are computed in
+ * parallel, and the determinant and inverse are computed from an in-place LU
+ * decomposition with partial pivoting.
+ *
+ * @see ComplexMatrix
+ */
+public final class DenseComplexMatrix {
+
+	/**
+	 * The edge length of the square tiles used by the blocked product.
+	 */
+	private static final int BLOCK = 64;
+
+	/**
+	 * The number of scalar multiply-adds above which products run in parallel.
+	 */
+	private static final long PARALLEL_WORK = 1L << 18;
+
+	/**
+	 * The degrees of the diagonal Padé approximants used by {@link #expm()}.
+	 */
+	private static final int[] PADE_DEGREES = { 3, 5, 7, 9, 13 };
+
+	/**
+	 * The largest 1-norm for which each approximant is accurate to double
+	 * precision.
+	 */
+	private static final double[] PADE_THETA = { 1.495585217958292e-2, 2.539398330063230e-1,
+			9.504178996162932e-1, 2.097847961257068e0, 5.371920351148152e0 };
+
+	/**
+	 * The coefficients of the numerator of each approximant, from the constant
+	 * term upwards.
+	 */
+	private static final double[][] PADE_COEFFICIENTS = { { 120, 60, 12, 1 },
+			{ 30240, 15120, 3360, 420, 30, 1 }, { 17297280, 8648640, 1995840, 277200, 25200, 1512, 56, 1 },
+			{ 17643225600d, 8821612800d, 2075673600, 302702400, 30270240, 2162160, 110880, 3960, 90, 1 },
+			{ 64764752532480000d, 32382376266240000d, 7771770303897600d, 1187353796428800d, 129060195264000d,
+					10559470521600d, 670442572800d, 33522128640d, 1323241920, 40840800, 960960, 16380, 182, 1 } };
+
+	private final int rows;
+	private final int cols;
+	private final double[] real;
+	private final double[] imag;
+
+	/**
+	 * Constructs a zero matrix with the given number of rows and columns.
+	 *
+	 * @param rows The number of rows in the matrix.
+	 * @param cols The number of columns in the matrix.
+	 */
+	public DenseComplexMatrix(int rows, int cols) {
+		this(rows, cols, new double[Math.multiplyExact(rows, cols)], new double[Math.multiplyExact(rows, cols)]);
+	}
+
+	/**
+	 * Constructs a matrix that takes ownership of the given row-major arrays.
+	 */
+	private DenseComplexMatrix(int rows, int cols, double[] real, double[] imag) {
+		this.rows = rows;
+		this.cols = cols;
+		this.real = real;
+		this.imag = imag;
+	}
+
+	/**
+	 * Creates an identity matrix of the specified size.
+	 *
+	 * @param size The size of the identity matrix (number of rows and columns).
+	 * @return The identity matrix.
+	 */
+	public static DenseComplexMatrix ident(int size) {
+		DenseComplexMatrix result = new DenseComplexMatrix(size, size);
+		for (int i = 0; i < size; i++) {
+			result.real[i * size + i] = 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Copies a {@link ComplexMatrix} into a dense matrix.
+	 *
+	 * @param matrix The matrix to copy.
+	 * @return The dense copy of the matrix.
+	 */
+	public static DenseComplexMatrix of(ComplexMatrix matrix) {
+		DenseComplexMatrix result = new DenseComplexMatrix(Math.toIntExact(matrix.rows()),
+				Math.toIntExact(matrix.cols()));
+		matrix.forEachNonZero((i, j, re, im) -> {
+			result.real[(int) i * result.cols + (int) j] = re;
+			result.imag[(int) i * result.cols + (int) j] = im;
+		});
+		return result;
+	}
+
+	/**
+	 * Copies this matrix into a sparse {@link ComplexMatrix}.
+	 *
+	 * @return The matrix as a {@link ComplexMatrix}.
+	 */
+	public ComplexMatrix toComplexMatrix() {
+		ComplexMatrix result = new ComplexMatrix(this.rows, this.cols);
+		for (int i = 0; i < this.rows; i++) {
+			for (int j = 0; j < this.cols; j++) {
+				result.set(i, j, this.real[i * this.cols + j], this.imag[i * this.cols + j]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of rows in the matrix.
+	 *
+	 * @return The number of rows.
+	 */
+	public int rows() {
+		return this.rows;
+	}
+
+	/**
+	 * Gets the number of columns in the matrix.
+	 *
+	 * @return The number of columns.
+	 */
+	public int cols() {
+		return this.cols;
+	}
+
+	/**
+	 * Gets the complex number at the specified row and column.
+	 *
+	 * @param row The row index.
+	 * @param col The column index.
+	 * @return The complex number at the specified position.
+	 */
+	public ComplexNumber get(int row, int col) {
+		return new ComplexNumber(this.getReal(row, col), this.getImag(row, col));
+	}
+
+	/**
+	 * Gets the real part of the entry at the specified row and column.
+	 *
+	 * @param row The row index.
+	 * @param col The column index.
+	 * @return The real part of the entry.
+	 */
+	public double getReal(int row, int col) {
+		return this.real[this.index(row, col)];
+	}
+
+	/**
+	 * Gets the imaginary part of the entry at the specified row and column.
+	 *
+	 * @param row The row index.
+	 * @param col The column index.
+	 * @return The imaginary part of the entry.
+	 */
+	public double getImag(int row, int col) {
+		return this.imag[this.index(row, col)];
+	}
+
+	/**
+	 * Sets the entry at the specified row and column from its real and imaginary
+	 * parts.
+	 *
+	 * @param row  The row index.
+	 * @param col  The column index.
+	 * @param real The real part of the entry.
+	 * @param imag The imaginary part of the entry.
+	 * @return This matrix, with the value set as specified.
+	 */
+	public DenseComplexMatrix set(int row, int col, double real, double imag) {
+		int index = this.index(row, col);
+		this.real[index] = real;
+		this.imag[index] = imag;
+		return this;
+	}
+
+	private int index(int row, int col) {
+		if (row < 0 || row >= this.rows || col < 0 || col >= this.cols) {
+			throw new IndexOutOfBoundsException(
+					"Cannot access (" + row + ", " + col + ") in a " + this.rows + "x" + this.cols + " matrix");
+		}
+		return row * this.cols + col;
+	}
+
+	/**
+	 * Creates a copy of this matrix.
+	 *
+	 * @return A new matrix with the same dimensions and entries as this one.
+	 */
+	public DenseComplexMatrix copy() {
+		return new DenseComplexMatrix(this.rows, this.cols, this.real.clone(), this.imag.clone());
+	}
+
+	/**
+	 * Returns the conjugate transpose of this matrix.
+	 *
+	 * @return The adjoint of this matrix.
+	 */
+	public DenseComplexMatrix adjoint() {
+		DenseComplexMatrix result = new DenseComplexMatrix(this.cols, this.rows);
+		for (int i = 0; i < this.rows; i++) {
+			for (int j = 0; j < this.cols; j++) {
+				result.real[j * this.rows + i] = this.real[i * this.cols + j];
+				result.imag[j * this.rows + i] = -this.imag[i * this.cols + j];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Multiplies this matrix by another dense matrix. The product is computed in
+	 * square tiles so that the rows of both operands being combined stay in cache,
+	 * and tiles of result rows are computed in parallel for large products.
+	 *
+	 * @param that The matrix to multiply by.
+	 * @return The product {@code this * that}.
+	 * @throws IllegalArgumentException If the inner dimensions do not match.
+	 */
+	public DenseComplexMatrix mult(DenseComplexMatrix that) {
+		if (this.cols != that.rows) {
+			throw new IllegalArgumentException("Number of columns in the first matrix (" + this.cols
+					+ ") must be equal to the number of rows in the second matrix (" + that.rows
+					+ ") for multiplication.");
+		}
+
+		DenseComplexMatrix result = new DenseComplexMatrix(this.rows, that.cols);
+		int rowBlocks = (this.rows + BLOCK - 1) / BLOCK;
+		if ((long) this.rows * this.cols * that.cols < PARALLEL_WORK) {
+			for (int b = 0; b < rowBlocks; b++) {
+				this.multBlock(that, result, b * BLOCK);
+			}
+		} else {
+			IntStream.range(0, rowBlocks).parallel().forEach(b -> this.multBlock(that, result, b * BLOCK));
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the rows [i0, i0 + BLOCK) of a product, tile by tile.
+	 */
+	private void multBlock(DenseComplexMatrix that, DenseComplexMatrix result, int i0) {
+		int iEnd = Math.min(i0 + BLOCK, this.rows);
+		int n = this.cols;
+		int p = that.cols;
+		for (int k0 = 0; k0 < n; k0 += BLOCK) {
+			int kEnd = Math.min(k0 + BLOCK, n);
+			for (int j0 = 0; j0 < p; j0 += BLOCK) {
+				int jEnd = Math.min(j0 + BLOCK, p);
+				for (int i = i0; i < iEnd; i++) {
+					int cRow = i * p;
+					for (int k = k0; k < kEnd; k++) {
+						double aRe = this.real[i * n + k];
+						double aIm = this.imag[i * n + k];
+						if (aRe == 0 && aIm == 0) {
+							continue;
+						}
+						int bRow = k * p;
+						for (int j = j0; j < jEnd; j++) {
+							double bRe = that.real[bRow + j];
+							double bIm = that.imag[bRow + j];
+							result.real[cRow + j] += ComplexMath.multReal(aRe, aIm, bRe, bIm);
+							result.imag[cRow + j] += ComplexMath.multImag(aRe, aIm, bRe, bIm);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculates the determinant of the matrix using LU decomposition.
+	 *
+	 * @return The determinant of the matrix.
+	 * @throws UnsupportedOperationException If the matrix is not square.
+	 */
+	public ComplexNumber det() {
+		LU lu = this.decompose();
+		double detRe = lu.sign;
+		double detIm = 0;
+		for (int k = 0; k < this.rows; k++) {
+			double pRe = lu.real[k * this.rows + k];
+			double pIm = lu.imag[k * this.rows + k];
+			double re = ComplexMath.multReal(detRe, detIm, pRe, pIm);
+			detIm = ComplexMath.multImag(detRe, detIm, pRe, pIm);
+			detRe = re;
+		}
+		return new ComplexNumber(detRe, detIm);
+	}
+
+	/**
+	 * Calculates the inverse of the matrix by solving against each column of the
+	 * identity with its LU decomposition.
+	 *
+	 * @return The inverse of the matrix.
+	 * @throws UnsupportedOperationException If the matrix is not square.
+	 * @throws ArithmeticException           If the matrix is singular.
+	 */
+	public DenseComplexMatrix inverse() {
+		return this.solve(DenseComplexMatrix.ident(this.rows));
+	}
+
+	/**
+	 * Solves {@code this * X = rhs} for X, one column of the right-hand side at a
+	 * time, using the LU decomposition of this matrix.
+	 *
+	 * @param rhs The right-hand side, with as many rows as this matrix.
+	 * @return The solution X.
+	 * @throws UnsupportedOperationException If the matrix is not square.
+	 * @throws ArithmeticException           If the matrix is singular.
+	 */
+	private DenseComplexMatrix solve(DenseComplexMatrix rhs) {
+		LU lu = this.decompose();
+		int n = this.rows;
+		for (int k = 0; k < n; k++) {
+			if (lu.real[k * n + k] == 0 && lu.imag[k * n + k] == 0) {
+				throw new ArithmeticException("Cannot invert a singular matrix.");
+			}
+		}
+
+		int m = rhs.cols;
+		DenseComplexMatrix result = new DenseComplexMatrix(n, m);
+		double[] colRe = new double[n];
+		double[] colIm = new double[n];
+		for (int c = 0; c < m; c++) {
+			// Solve L * U * x = P * b_c.
+			for (int i = 0; i < n; i++) {
+				colRe[i] = rhs.real[lu.pivot[i] * m + c];
+				colIm[i] = rhs.imag[lu.pivot[i] * m + c];
+			}
+			lu.solve(colRe, colIm);
+			for (int i = 0; i < n; i++) {
+				result.real[i * m + c] = colRe[i];
+				result.imag[i * m + c] = colIm[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Multiplies every entry of this matrix by a complex scalar.
+	 *
+	 * @param scalar The scalar to multiply by.
+	 * @return A new matrix with every entry multiplied by the scalar.
+	 */
+	public DenseComplexMatrix mult(ComplexNumber scalar) {
+		double sRe = scalar.real();
+		double sIm = scalar.imag();
+		DenseComplexMatrix result = new DenseComplexMatrix(this.rows, this.cols);
+		for (int i = 0; i < this.real.length; i++) {
+			result.real[i] = ComplexMath.multReal(this.real[i], this.imag[i], sRe, sIm);
+			result.imag[i] = ComplexMath.multImag(this.real[i], this.imag[i], sRe, sIm);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the matrix exponential using scaling and squaring with a diagonal
+	 * Padé approximant, following Higham (2005). The degree of the approximant is
+	 * chosen from the 1-norm of the matrix so that the truncation error stays
+	 * below double precision, and matrices whose norm is too large for the
+	 * highest degree are first scaled down by a power of two and the result
+	 * squared back up.
+	 *
+	 * @return The matrix exponential of this matrix.
+	 * @throws UnsupportedOperationException If the matrix is not square.
+	 */
+	public DenseComplexMatrix expm() {
+		if (this.rows != this.cols) {
+			throw new UnsupportedOperationException(
+					"The exponential is only defined for square matrices, this matrix is " + this.rows + "x"
+							+ this.cols);
+		}
+		double norm = this.norm1();
+		for (int d = 0; d < PADE_DEGREES.length - 1; d++) {
+			if (norm <= PADE_THETA[d]) {
+				return this.pade(PADE_COEFFICIENTS[d]);
+			}
+		}
+
+		int last = PADE_DEGREES.length - 1;
+		int squarings = Math.max(0, Math.getExponent(norm / PADE_THETA[last]) + 1);
+		DenseComplexMatrix scaled = this.mult(new ComplexNumber(Math.scalb(1.0, -squarings), 0));
+		DenseComplexMatrix result = scaled.pade13();
+		for (int k = 0; k < squarings; k++) {
+			result = result.mult(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Evaluates a low-degree Padé approximant r(A) = (V - U)<sup>-1</sup> (V + U),
+	 * where U holds the odd powers of A and V the even powers.
+	 */
+	private DenseComplexMatrix pade(double[] b) {
+		int n = this.rows;
+		DenseComplexMatrix a2 = this.mult(this);
+		DenseComplexMatrix power = DenseComplexMatrix.ident(n);
+		DenseComplexMatrix odd = new DenseComplexMatrix(n, n);
+		DenseComplexMatrix even = new DenseComplexMatrix(n, n);
+		for (int k = 0; k < b.length; k += 2) {
+			if (k > 0) {
+				power = power.mult(a2);
+			}
+			even.addScaled(b[k], power);
+			odd.addScaled(b[k + 1], power);
+		}
+		return padeQuotient(this.mult(odd), even);
+	}
+
+	/**
+	 * Evaluates the degree 13 Padé approximant, grouping the powers so that only
+	 * six matrix products are needed.
+	 */
+	private DenseComplexMatrix pade13() {
+		double[] b = PADE_COEFFICIENTS[PADE_COEFFICIENTS.length - 1];
+		int n = this.rows;
+		DenseComplexMatrix a2 = this.mult(this);
+		DenseComplexMatrix a4 = a2.mult(a2);
+		DenseComplexMatrix a6 = a4.mult(a2);
+
+		DenseComplexMatrix high = new DenseComplexMatrix(n, n);
+		high.addScaled(b[13], a6).addScaled(b[11], a4).addScaled(b[9], a2);
+		DenseComplexMatrix odd = a6.mult(high);
+		odd.addScaled(b[7], a6).addScaled(b[5], a4).addScaled(b[3], a2).addScaled(b[1], DenseComplexMatrix.ident(n));
+
+		high = new DenseComplexMatrix(n, n);
+		high.addScaled(b[12], a6).addScaled(b[10], a4).addScaled(b[8], a2);
+		DenseComplexMatrix even = a6.mult(high);
+		even.addScaled(b[6], a6).addScaled(b[4], a4).addScaled(b[2], a2).addScaled(b[0], DenseComplexMatrix.ident(n));
+
+		return padeQuotient(this.mult(odd), even);
+	}
+
+	/**
+	 * Computes (V - U)<sup>-1</sup> (V + U) by solving against V + U.
+	 */
+	private static DenseComplexMatrix padeQuotient(DenseComplexMatrix u, DenseComplexMatrix v) {
+		DenseComplexMatrix numerator = v.copy().addScaled(1, u);
+		DenseComplexMatrix denominator = v.copy().addScaled(-1, u);
+		return denominator.solve(numerator);
+	}
+
+	/**
+	 * Adds a real multiple of another matrix of the same size to this matrix in
+	 * place.
+	 */
+	private DenseComplexMatrix addScaled(double factor, DenseComplexMatrix that) {
+		for (int i = 0; i < this.real.length; i++) {
+			this.real[i] += factor * that.real[i];
+			this.imag[i] += factor * that.imag[i];
+		}
+		return this;
+	}
+
+	/**
+	 * Computes the 1-norm of the matrix, the largest sum of the magnitudes of the
+	 * entries in any column.
+	 */
+	private double norm1() {
+		double best = 0;
+		for (int j = 0; j < this.cols; j++) {
+			double sum = 0;
+			for (int i = 0; i < this.rows; i++) {
+				sum += Math.hypot(this.real[i * this.cols + j], this.imag[i * this.cols + j]);
+			}
+			best = Math.max(best, sum);
+		}
+		return best;
+	}
+
+	/**
+	 * Checks whether this matrix is unitary, that is whether its adjoint times
+	 * itself is the identity to within the given tolerance in every entry.
+	 *
+	 * @param tolerance The largest allowed deviation of any entry of
+	 *                  {@code A* A} from the identity.
+	 * @return True if the matrix is unitary, false otherwise.
+	 */
+	public boolean isUnitary(double tolerance) {
+		if (this.rows != this.cols) {
+			return false;
+		}
+		DenseComplexMatrix product = this.adjoint().mult(this);
+		int n = this.rows;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double expected = (i == j) ? 1 : 0;
+				if (Math.abs(product.real[i * n + j] - expected) > tolerance
+						|| Math.abs(product.imag[i * n + j]) > tolerance) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether this matrix is Hermitian, that is whether it equals its
+	 * conjugate transpose to within the given tolerance in every entry.
+	 *
+	 * @param tolerance The largest allowed deviation of any entry from the
+	 *                  conjugate of its transposed entry.
+	 * @return True if the matrix is Hermitian, false otherwise.
+	 */
+	public boolean isHermitian(double tolerance) {
+		if (this.rows != this.cols) {
+			return false;
+		}
+		int n = this.rows;
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				if (Math.abs(this.real[i * n + j] - this.real[j * n + i]) > tolerance
+						|| Math.abs(this.imag[i * n + j] + this.imag[j * n + i]) > tolerance) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Performs an LU decomposition with partial pivoting on a copy of this matrix.
+	 * Rows are swapped in place, and the multipliers of L are stored below the
+	 * diagonal of U.
+	 *
+	 * @return The decomposition.
+	 */
+	private LU decompose() {
+		if (this.rows != this.cols) {
+			throw new UnsupportedOperationException(
+					"Determinant is only defined for square matrices, this matrix is " + this.rows + "x" + this.cols);
+		}
+		int n = this.rows;
+		double[] re = this.real.clone();
+		double[] im = this.imag.clone();
+		int[] pivot = new int[n];
+		for (int i = 0; i < n; i++) {
+			pivot[i] = i;
+		}
+		int sign = 1;
+
+		for (int k = 0; k < n; k++) {
+			// Find the row with the largest entry in column k.
+			int p = k;
+			double best = ComplexMath.magSquared(re[k * n + k], im[k * n + k]);
+			for (int i = k + 1; i < n; i++) {
+				double mag = ComplexMath.magSquared(re[i * n + k], im[i * n + k]);
+				if (mag > best) {
+					best = mag;
+					p = i;
+				}
+			}
+			if (p != k) {
+				swapRows(re, n, k, p);
+				swapRows(im, n, k, p);
+				int t = pivot[k];
+				pivot[k] = pivot[p];
+				pivot[p] = t;
+				sign = -sign;
+			}
+			if (best == 0) {
+				// The column is already zero below the diagonal.
+				continue;
+			}
+
+			double pRe = re[k * n + k];
+			double pIm = im[k * n + k];
+			for (int i = k + 1; i < n; i++) {
+				// factor = a[i][k] / a[k][k]
+				double aRe = re[i * n + k];
+				double aIm = im[i * n + k];
+				double fRe = ComplexMath.divReal(aRe, aIm, pRe, pIm);
+				double fIm = ComplexMath.divImag(aRe, aIm, pRe, pIm);
+				re[i * n + k] = fRe;
+				im[i * n + k] = fIm;
+				if (fRe == 0 && fIm == 0) {
+					continue;
+				}
+				for (int j = k + 1; j < n; j++) {
+					double uRe = re[k * n + j];
+					double uIm = im[k * n + j];
+					re[i * n + j] -= ComplexMath.multReal(fRe, fIm, uRe, uIm);
+					im[i * n + j] -= ComplexMath.multImag(fRe, fIm, uRe, uIm);
+				}
+			}
+		}
+		return new LU(n, re, im, pivot, sign);
+	}
+
+	/**
+	 * Swaps two rows of a row-major array in place.
+	 */
+	private static void swapRows(double[] data, int n, int row1, int row2) {
+		for (int j = 0; j < n; j++) {
+			double t = data[row1 * n + j];
+			data[row1 * n + j] = data[row2 * n + j];
+			data[row2 * n + j] = t;
+		}
+	}
+
+	/**
+	 * Holds an LU decomposition with partial pivoting, where row i of L * U is row
+	 * {@code pivot[i]} of the original matrix.
+	 */
+	private record LU(int n, double[] real, double[] imag, int[] pivot, int sign) {
+
+		/**
+		 * Solves L * U * x = b in place, where b has already been permuted.
+		 */
+		private void solve(double[] bRe, double[] bIm) {
+			// Forward substitution with the unit lower triangle.
+			for (int i = 0; i < this.n; i++) {
+				double sRe = bRe[i];
+				double sIm = bIm[i];
+				for (int j = 0; j < i; j++) {
+					double lRe = this.real[i * this.n + j];
+					double lIm = this.imag[i * this.n + j];
+					sRe -= ComplexMath.multReal(lRe, lIm, bRe[j], bIm[j]);
+					sIm -= ComplexMath.multImag(lRe, lIm, bRe[j], bIm[j]);
+				}
+				bRe[i] = sRe;
+				bIm[i] = sIm;
+			}
+			// Back substitution with the upper triangle.
+			for (int i = this.n - 1; i >= 0; i--) {
+				double sRe = bRe[i];
+				double sIm = bIm[i];
+				for (int j = i + 1; j < this.n; j++) {
+					double uRe = this.real[i * this.n + j];
+					double uIm = this.imag[i * this.n + j];
+					sRe -= ComplexMath.multReal(uRe, uIm, bRe[j], bIm[j]);
+					sIm -= ComplexMath.multImag(uRe, uIm, bRe[j], bIm[j]);
+				}
+				double dRe = this.real[i * this.n + i];
+				double dIm = this.imag[i * this.n + i];
+				bRe[i] = ComplexMath.divReal(sRe, sIm, dRe, dIm);
+				bIm[i] = ComplexMath.divImag(sRe, sIm, dRe, dIm);
+			}
+		}
+	}
+
+	/**
+	 * Returns a human-readable string representation of the matrix.
+	 *
+	 * @return The string representation of the matrix.
+	 */
+	@Override
+	public String toString() {
+		return this.toComplexMatrix().toString();
+	}
+}
@@ -0,0 +1,300 @@
+package squire.complex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a square operator that is the tensor (Kronecker) product of a
+ * sequence of square factors, without ever expanding the product. The first
+ * factor acts on the most significant part of the index, matching
+ * {@link ComplexMatrix#tensor(ComplexMatrix)}, so that
+ * {@code KroneckerOperator.of(a, b).asMatrix()} equals {@code a.tensor(b)}.
+ *
+ * Identity factors are stored only by their size, so padding a small gate with
+ * an identity on the remaining qubits costs constant memory. The operator can
+ * be applied to a vector, composed with another Kronecker operator factor by
+ * factor, or expanded into a {@link ComplexMatrix} on demand with
+ * {@link #asMatrix()}. Instances are immutable.
+ *
+ * @see ComplexMatrix
+ */
+public final class KroneckerOperator {
+
+	/**
+	 * The factors of the product, or null for identity factors.
+	 */
+	private final ComplexMatrix[] factors;
+	/**
+	 * The dimension of each factor.
+	 */
+	private final long[] dims;
+	/**
+	 * The dimension of the whole operator.
+	 */
+	private final long size;
+
+	/**
+	 * Constructs an operator from its factors and their dimensions. The arrays are
+	 * not copied.
+	 */
+	private KroneckerOperator(ComplexMatrix[] factors, long[] dims) {
+		this.factors = factors;
+		this.dims = dims;
+		long size = 1;
+		for (long dim : dims) {
+			size = Math.multiplyExact(size, dim);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Creates the Kronecker product of the given square matrices.
+	 *
+	 * @param factors The factors, the first of which acts on the most significant
+	 *                part of the index.
+	 * @return The Kronecker product of the factors.
+	 * @throws IllegalArgumentException If any factor is not square.
+	 */
+	public static KroneckerOperator of(ComplexMatrix... factors) {
+		long[] dims = new long[factors.length];
+		for (int i = 0; i < factors.length; i++) {
+			if (factors[i].rows() != factors[i].cols()) {
+				throw new IllegalArgumentException("The factors of a Kronecker operator must be square, factor " + i
+						+ " is " + factors[i].rows() + "x" + factors[i].cols());
+			}
+			dims[i] = factors[i].rows();
+		}
+		return new KroneckerOperator(Arrays.copyOf(factors, factors.length), dims);
+	}
+
+	/**
+	 * Creates an identity operator of the specified size without storing any of
+	 * its entries.
+	 *
+	 * @param size The size of the identity operator (number of rows and columns).
+	 * @return The identity operator.
+	 */
+	public static KroneckerOperator identity(long size) {
+		return new KroneckerOperator(new ComplexMatrix[] { null }, new long[] { size });
+	}
+
+	/**
+	 * Computes the tensor product of this operator with another, keeping the
+	 * factors of both.
+	 *
+	 * @param other The operator to tensor product with.
+	 * @return The result of the tensor product.
+	 */
+	public KroneckerOperator tensor(KroneckerOperator other) {
+		int n = this.factors.length;
+		ComplexMatrix[] factors = Arrays.copyOf(this.factors, n + other.factors.length);
+		long[] dims = Arrays.copyOf(this.dims, n + other.dims.length);
+		System.arraycopy(other.factors, 0, factors, n, other.factors.length);
+		System.arraycopy(other.dims, 0, dims, n, other.dims.length);
+		return new KroneckerOperator(factors, dims);
+	}
+
+	/**
+	 * Computes the tensor product of this operator with a square matrix.
+	 *
+	 * @param other The matrix to tensor product with.
+	 * @return The result of the tensor product.
+	 */
+	public KroneckerOperator tensor(ComplexMatrix other) {
+		return this.tensor(KroneckerOperator.of(other));
+	}
+
+	/**
+	 * Gets the number of rows (and columns) of the operator.
+	 *
+	 * @return The dimension of the operator.
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Applies this operator to a vector given as separate real and imaginary
+	 * arrays, writing the result into the output arrays. Each non-identity factor
+	 * is applied along its own axis of the index in turn, so the cost is
+	 * proportional to the vector length times the number of non-zero entries per
+	 * row of each factor, and the full product is never formed. The output arrays
+	 * may be the same arrays as the input.
+	 *
+	 * @param xReal The real parts of the input vector.
+	 * @param xImag The imaginary parts of the input vector.
+	 * @param yReal The array to receive the real parts of the result.
+	 * @param yImag The array to receive the imaginary parts of the result.
+	 * @throws IllegalArgumentException If the vector lengths do not match the
+	 *                                  operator size.
+	 */
+	public void multVector(double[] xReal, double[] xImag, double[] yReal, double[] yImag) {
+		if (xReal.length != this.size || xImag.length != this.size || yReal.length != this.size
+				|| yImag.length != this.size) {
+			throw new IllegalArgumentException(
+					"Vector of length " + xReal.length + " cannot be multiplied by an operator of size " + this.size);
+		}
+		if (yReal != xReal) {
+			System.arraycopy(xReal, 0, yReal, 0, xReal.length);
+		}
+		if (yImag != xImag) {
+			System.arraycopy(xImag, 0, yImag, 0, xImag.length);
+		}
+
+		// The stride of factor k is the product of the dimensions after it.
+		long stride = this.size;
+		for (int k = 0; k < this.factors.length; k++) {
+			stride /= this.dims[k];
+			if (this.factors[k] != null) {
+				applyFactor(this.factors[k].freeze(), (int) stride, yReal, yImag);
+			}
+		}
+	}
+
+	/**
+	 * Applies a single factor in place along the axis with the given stride.
+	 */
+	private static void applyFactor(CSRMatrix factor, int stride, double[] real, double[] imag) {
+		int dim = factor.rows();
+		int fibers = real.length / dim;
+		if (real.length < CSRMatrix.PARALLEL_THRESHOLD) {
+			applyFibers(factor, stride, 0, fibers, real, imag);
+		} else {
+			int chunk = Math.max(1, CSRMatrix.PARALLEL_THRESHOLD / dim);
+			int tasks = (fibers + chunk - 1) / chunk;
+			IntStream.range(0, tasks).parallel().forEach(
+					t -> applyFibers(factor, stride, t * chunk, Math.min(fibers, (t + 1) * chunk), real, imag));
+		}
+	}
+
+	/**
+	 * Applies a factor to the fibers [from, to) along the axis with the given
+	 * stride. Fiber f starts at the index formed by splitting f into the parts of
+	 * the index above and below that axis.
+	 */
+	private static void applyFibers(CSRMatrix factor, int stride, int from, int to, double[] real,
+			double[] imag) {
+		int dim = factor.rows();
+		double[] inRe = new double[dim];
+		double[] inIm = new double[dim];
+		double[] outRe = new double[dim];
+		double[] outIm = new double[dim];
+		for (int f = from; f < to; f++) {
+			int base = (f / stride) * stride * dim + (f % stride);
+			for (int i = 0; i < dim; i++) {
+				inRe[i] = real[base + i * stride];
+				inIm[i] = imag[base + i * stride];
+			}
+			factor.multVector(inRe, inIm, outRe, outIm);
+			for (int i = 0; i < dim; i++) {
+				real[base + i * stride] = outRe[i];
+				imag[base + i * stride] = outIm[i];
+			}
+		}
+	}
+
+	/**
+	 * Composes this operator with another operator of the same size, returning
+	 * the product {@code this * that} as a Kronecker operator. Where the factor
+	 * boundaries of the two operators line up the factors are multiplied pairwise,
+	 * so the result stays factored. Where they do not, only the misaligned
+	 * factors are tensored together into a single larger factor.
+	 *
+	 * @param that The operator to multiply by.
+	 * @return The composition of the two operators.
+	 * @throws IllegalArgumentException If the operators have different sizes.
+	 */
+	public KroneckerOperator mult(KroneckerOperator that) {
+		if (this.size != that.size) {
+			throw new IllegalArgumentException(
+					"Cannot compose Kronecker operators of size " + this.size + " and " + that.size);
+		}
+
+		List<ComplexMatrix> factors = new ArrayList<>();
+		List<Long> dims = new ArrayList<>();
+
+		int i = 0;
+		int j = 0;
+		while (i < this.factors.length || j < that.factors.length) {
+			// Grow a segment on each side until both cover the same dimension.
+			int iStart = i;
+			int jStart = j;
+			long left = this.dims[i++];
+			long right = that.dims[j++];
+			while (left != right) {
+				if (left < right) {
+					left *= this.dims[i++];
+				} else {
+					right *= that.dims[j++];
+				}
+			}
+			ComplexMatrix a = this.segment(iStart, i);
+			ComplexMatrix b = that.segment(jStart, j);
+			factors.add(a == null ? b : (b == null ? a : a.mult(b)));
+			dims.add(left);
+		}
+
+		long[] dimArray = new long[dims.size()];
+		for (int k = 0; k < dimArray.length; k++) {
+			dimArray[k] = dims.get(k);
+		}
+		return new KroneckerOperator(factors.toArray(new ComplexMatrix[0]), dimArray);
+	}
+
+	/**
+	 * Expands the factors [from, to) into a single matrix, or returns null if they
+	 * are all identities.
+	 */
+	private ComplexMatrix segment(int from, int to) {
+		ComplexMatrix result = null;
+		long identity = 1;
+		for (int k = from; k < to; k++) {
+			if (this.factors[k] == null) {
+				identity *= this.dims[k];
+				continue;
+			}
+			if (result == null) {
+				result = ComplexMatrix.ident(Math.toIntExact(identity)).tensor(this.factors[k]);
+			} else {
+				result = result.tensor(ComplexMatrix.ident(Math.toIntExact(identity))).tensor(this.factors[k]);
+			}
+			identity = 1;
+		}
+		if (result != null && identity != 1) {
+			result = result.tensor(ComplexMatrix.ident(Math.toIntExact(identity)));
+		}
+		return result;
+	}
+
+	/**
+	 * Expands this operator into an explicit matrix. This materialises every
+	 * non-zero entry of the product and should only be used when the full matrix
+	 * is actually needed.
+	 *
+	 * @return The matrix representation of this operator.
+	 */
+	public ComplexMatrix asMatrix() {
+		ComplexMatrix result = this.segment(0, this.factors.length);
+		return result == null ? ComplexMatrix.ident(Math.toIntExact(this.size)) : result;
+	}
+
+	/**
+	 * Returns a human-readable string representation of the factors of this
+	 * operator.
+	 *
+	 * @return The string representation of the operator.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (int k = 0; k < this.factors.length; k++) {
+			if (k > 0) {
+				result.append("⊗\n");
+			}
+			result.append(this.factors[k] == null ? "I(" + this.dims[k] + ")\n" : this.factors[k].toString());
+		}
+		return result.toString();
+	}
+}
@@ -1,30 +1,72 @@
 package squire.complex;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Arrays;
 
 /**
  * Represents a sparse matrix with complex number entries. Sparse matrices
  * efficiently store and operate on matrices with a significant number of zero
  * elements. This class provides methods to set and retrieve values at specific
- * row and column indices. Non-zero values are stored in a map to conserve
- * memory and enhance performance.
+ * row and column indices. Non-zero values are stored in a primitive
+ * open-addressing hash table to conserve memory and enhance performance.
+ *
+ * Each entry is keyed by its row and column packed into a single {@code long},
+ * and the real and imaginary parts are held in parallel {@code double} arrays,
+ * so reading or writing an entry through the primitive accessors never
+ * allocates. Row and column indices must lie in the range [0, 2<sup>32</sup>).
  */
 public class SparseMatrix {
 
 	/**
-	 * A map storing non-zero entries of the sparse matrix along with their indices.
+	 * Values whose real and imaginary parts are both smaller than this are treated
+	 * as zero and are not stored. This matches the tolerance used by
+	 * {@link ComplexNumber#equals(Object)}.
 	 */
-	private Map<MatrixIndex, ComplexNumber> matrix;
+	private static final double EPSILON = 1e-10;
 
 	/**
-	 * Constructs an empty sparse matrix. The sparse matrix is initialized as an
-	 * empty map.
+	 * Marks an unused slot in the key table. Packed keys are never negative.
+	 */
+	private static final long EMPTY = -1L;
+
+	/**
+	 * The largest row or column index (exclusive) that can be packed into a key.
+	 */
+	private static final long MAX_INDEX = 1L << 32;
+
+	/**
+	 * The packed (row, col) keys of the stored entries, or {@link #EMPTY}.
+	 */
+	private long[] keys;
+	/**
+	 * The real parts of the stored entries, parallel to {@link #keys}.
+	 */
+	private double[] real;
+	/**
+	 * The imaginary parts of the stored entries, parallel to {@link #keys}.
+	 */
+	private double[] imag;
+	/**
+	 * The number of non-zero entries currently stored.
+	 */
+	private int size;
+
+	/**
+	 * Constructs an empty sparse matrix.
 	 */
 	public SparseMatrix() {
-		matrix = new HashMap<>();
+		this(8);
+	}
+
+	/**
+	 * Constructs an empty sparse matrix with room for the given number of non-zero
+	 * entries before the table needs to grow.
+	 *
+	 * @param expectedEntries The expected number of non-zero entries.
+	 */
+	public SparseMatrix(int expectedEntries) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedEntries) * 2 - 1) << 1;
+		this.allocate(capacity);
 	}
 
 	/**
@@ -37,16 +79,53 @@ public class SparseMatrix {
 	 * @param value The complex number value to be set.
 	 */
 	public void set(BigInteger row, BigInteger col, ComplexNumber value) {
-		MatrixIndex index = new MatrixIndex(row, col);
+		this.set(row.longValueExact(), col.longValueExact(), value);
+	}
+
+	/**
+	 * Sets the value at the specified row and column indices in the sparse matrix.
+	 * If the value is null, the entry is removed. If the value is zero, the entry
+	 * is removed to save space.
+	 *
+	 * @param row   The row index at which to set the value.
+	 * @param col   The column index at which to set the value.
+	 * @param value The complex number value to be set.
+	 */
+	public void set(long row, long col, ComplexNumber value) {
 		if (value == null) {
-			matrix.remove(index);
+			this.remove(pack(row, col));
+			return;
+		}
+		this.set(row, col, value.real(), value.imag());
+	}
+
+	/**
+	 * Sets the value at the specified row and column indices in the sparse matrix
+	 * from its real and imaginary parts. If the value is zero, the entry is removed
+	 * to save space.
+	 *
+	 * @param row  The row index at which to set the value.
+	 * @param col  The column index at which to set the value.
+	 * @param real The real part of the value.
+	 * @param imag The imaginary part of the value.
+	 */
+	public void set(long row, long col, double real, double imag) {
+		long key = pack(row, col);
+		if (Math.abs(real) < EPSILON && Math.abs(imag) < EPSILON) {
+			this.remove(key);
 			return;
 		}
 
-		if (value.equals(ComplexNumber.ZERO)) {
-			matrix.remove(index);
-		} else {
-			matrix.put(index, value);
+		int slot = this.find(key);
+		if (this.keys[slot] == EMPTY) {
+			this.keys[slot] = key;
+			this.size++;
+		}
+		this.real[slot] = real;
+		this.imag[slot] = imag;
+
+		if (this.size * 2 > this.keys.length) {
+			this.rehash(this.keys.length << 1);
 		}
 	}
 
@@ -60,29 +139,199 @@ public class SparseMatrix {
 	 * @return The complex number value at the specified indices.
 	 */
 	public ComplexNumber get(BigInteger row, BigInteger col) {
-		MatrixIndex index = new MatrixIndex(row, col);
-		return matrix.getOrDefault(index, ComplexNumber.ZERO);
+		return this.get(row.longValueExact(), col.longValueExact());
+	}
+
+	/**
+	 * Retrieves the complex number value at the specified row and column indices in
+	 * the sparse matrix. If the entry is not present, it returns
+	 * ComplexNumber.ZERO.
+	 *
+	 * @param row The row index from which to retrieve the value.
+	 * @param col The column index from which to retrieve the value.
+	 * @return The complex number value at the specified indices.
+	 */
+	public ComplexNumber get(long row, long col) {
+		int slot = this.find(pack(row, col));
+		if (this.keys[slot] == EMPTY) {
+			return ComplexNumber.ZERO;
+		}
+		return new ComplexNumber(this.real[slot], this.imag[slot]);
+	}
+
+	/**
+	 * Retrieves the real part of the value at the specified row and column indices.
+	 *
+	 * @param row The row index from which to retrieve the value.
+	 * @param col The column index from which to retrieve the value.
+	 * @return The real part of the value, or 0 if the entry is not present.
+	 */
+	public double getReal(long row, long col) {
+		int slot = this.find(pack(row, col));
+		return this.keys[slot] == EMPTY ? 0 : this.real[slot];
+	}
+
+	/**
+	 * Retrieves the imaginary part of the value at the specified row and column
+	 * indices.
+	 *
+	 * @param row The row index from which to retrieve the value.
+	 * @param col The column index from which to retrieve the value.
+	 * @return The imaginary part of the value, or 0 if the entry is not present.
+	 */
+	public double getImag(long row, long col) {
+		int slot = this.find(pack(row, col));
+		return this.keys[slot] == EMPTY ? 0 : this.imag[slot];
+	}
+
+	/**
+	 * Returns the number of non-zero entries stored in this matrix.
+	 *
+	 * @return The number of non-zero entries.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Calls the given consumer once for every non-zero entry in this matrix. The
+	 * order of iteration is unspecified. The matrix must not be modified by the
+	 * consumer.
+	 *
+	 * @param consumer The consumer to receive each non-zero entry.
+	 */
+	public void forEachNonZero(EntryConsumer consumer) {
+		long[] keys = this.keys;
+		for (int slot = 0; slot < keys.length; slot++) {
+			long key = keys[slot];
+			if (key != EMPTY) {
+				consumer.accept(key >>> 32, key & (MAX_INDEX - 1), this.real[slot], this.imag[slot]);
+			}
+		}
 	}
 
 	/**
-	 * A record representing the index of a non-zero element in the sparse matrix.
-	 * This record is used as a key in the map to uniquely identify matrix entries.
+	 * Receives the non-zero entries of a sparse matrix without boxing them into
+	 * {@link ComplexNumber} objects.
 	 */
-	private record MatrixIndex(BigInteger row, BigInteger col) {
+	@FunctionalInterface
+	public interface EntryConsumer {
+		/**
+		 * Accepts a single non-zero entry.
+		 *
+		 * @param row  The row index of the entry.
+		 * @param col  The column index of the entry.
+		 * @param real The real part of the entry.
+		 * @param imag The imaginary part of the entry.
+		 */
+		public void accept(long row, long col, double real, double imag);
+	}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null || getClass() != obj.getClass())
-				return false;
-			MatrixIndex that = (MatrixIndex) obj;
-			return this.row.equals(that.row) && this.col.equals(that.col);
+	/**
+	 * Packs a row and column index into a single key.
+	 *
+	 * @param row The row index.
+	 * @param col The column index.
+	 * @return The packed key.
+	 */
+	private static long pack(long row, long col) {
+		if (row < 0 || col < 0 || row >= MAX_INDEX || col >= MAX_INDEX) {
+			throw new IndexOutOfBoundsException("Cannot index entry (" + row + ", " + col + ") in a sparse matrix");
 		}
+		return (row << 32) | col;
+	}
 
-		@Override
-		public int hashCode() {
-			return Objects.hash(this.row, this.col);
+	/**
+	 * Scrambles a packed key so that neighbouring indices spread over the table.
+	 *
+	 * @param key The packed key.
+	 * @return The hash of the key.
+	 */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Finds the slot holding the given key, or the empty slot where it would be
+	 * inserted.
+	 *
+	 * @param key The packed key.
+	 * @return The slot index.
+	 */
+	private int find(long key) {
+		int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Removes the entry with the given key, if present, shifting later entries of
+	 * the same probe run back so that lookups never need tombstones.
+	 *
+	 * @param key The packed key.
+	 */
+	private void remove(long key) {
+		int slot = this.find(key);
+		if (this.keys[slot] == EMPTY) {
+			return;
+		}
+		this.size--;
+
+		int mask = this.keys.length - 1;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			long nextKey = this.keys[next];
+			if (nextKey == EMPTY) {
+				break;
+			}
+			// Only move the entry back if its home slot does not lie cyclically in
+			// (slot, next].
+			int home = hash(nextKey) & mask;
+			if (slot <= next ? (slot < home && home <= next) : (slot < home || home <= next)) {
+				continue;
+			}
+			this.keys[slot] = nextKey;
+			this.real[slot] = this.real[next];
+			this.imag[slot] = this.imag[next];
+			slot = next;
+		}
+		this.keys[slot] = EMPTY;
+	}
+
+	/**
+	 * Allocates empty tables of the given capacity.
+	 *
+	 * @param capacity The capacity, which must be a power of two.
+	 */
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.real = new double[capacity];
+		this.imag = new double[capacity];
+	}
+
+	/**
+	 * Moves every entry into new tables of the given capacity.
+	 *
+	 * @param capacity The new capacity, which must be a power of two.
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		double[] oldReal = this.real;
+		double[] oldImag = this.imag;
+		this.allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = this.find(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.real[slot] = oldReal[i];
+				this.imag[slot] = oldImag[i];
+			}
 		}
 	}
 }